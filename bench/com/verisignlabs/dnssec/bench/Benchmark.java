@@ -0,0 +1,82 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One microbenchmark: an operation, with the parameters it was set up with,
+ * that {@link BenchmarkRunner} runs over and over to measure its throughput.
+ */
+public abstract class Benchmark
+{
+  private String              mName;
+  private Map<String, String> mParams = new LinkedHashMap<String, String>();
+
+  /**
+   * @param name
+   *          the name of the benchmark (the same for all parameter values).
+   * @param params
+   *          the parameter names and values, alternating.
+   */
+  protected Benchmark(String name, Object... params)
+  {
+    mName = name;
+    for (int i = 0; i + 1 < params.length; i += 2)
+    {
+      mParams.put(String.valueOf(params[i]), String.valueOf(params[i + 1]));
+    }
+  }
+
+  public String getName()
+  {
+    return mName;
+  }
+
+  public Map<String, String> getParams()
+  {
+    return mParams;
+  }
+
+  /** @return the name and parameters, like "nsec3hash:iterations=10". */
+  public String getLabel()
+  {
+    StringBuilder sb = new StringBuilder(mName);
+    String sep = ":";
+    for (Map.Entry<String, String> e : mParams.entrySet())
+    {
+      sb.append(sep).append(e.getKey()).append('=').append(e.getValue());
+      sep = ",";
+    }
+    return sb.toString();
+  }
+
+  /** Prepare the data the operation works on. This is not timed. */
+  public void setup() throws Exception
+  {
+  }
+
+  /**
+   * Do the operation once.
+   *
+   * @return the result (or anything that depends on it), so that the work
+   *         can't be optimized away.
+   */
+  public abstract Object run() throws Exception;
+}
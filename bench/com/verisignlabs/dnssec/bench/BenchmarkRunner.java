@@ -0,0 +1,271 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class measures the throughput of {@link Benchmark}s, in the manner of
+ * JMH: some warmup iterations (to get the code compiled), then some
+ * measurement iterations, each running the operation over and over for a
+ * fixed time. The score is the mean operations per second over the
+ * measurement iterations, with a 99.9% confidence interval. Results can be
+ * written as JSON in JMH's format, so the usual JMH tools can compare runs.
+ *
+ * Unlike JMH, everything runs in the one JVM (there are no forks), so the
+ * order benchmarks are run in can make a difference to their scores.
+ */
+public class BenchmarkRunner
+{
+  /** The result of running one benchmark. */
+  public static class Result
+  {
+    public Benchmark benchmark;
+    public double[]  scores;
+    public double    score;
+    public double    error;
+
+    public Result(Benchmark benchmark, double[] scores)
+    {
+      this.benchmark = benchmark;
+      this.scores = scores;
+
+      double sum = 0;
+      for (double s : scores)
+      {
+        sum += s;
+      }
+      score = sum / scores.length;
+
+      if (scores.length > 1)
+      {
+        double ss = 0;
+        for (double s : scores)
+        {
+          ss += (s - score) * (s - score);
+        }
+        double stderr = Math.sqrt(ss / (scores.length - 1)) / Math.sqrt(scores.length);
+        error = studentT999(scores.length - 1) * stderr;
+      }
+      else
+      {
+        error = Double.NaN;
+      }
+    }
+  }
+
+  // Two-sided 99.9% critical values of Student's t distribution, by degrees
+  // of freedom.
+  private static final double[] T_999 = { Double.NaN, 636.62, 31.599, 12.924, 8.610, 6.869,
+      5.959, 5.408, 5.041, 4.781, 4.587, 4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965,
+      3.922, 3.883, 3.850                                       };
+
+  private static double studentT999(int df)
+  {
+    if (df < T_999.length) return T_999[df];
+    if (df <= 30) return 3.646;
+    if (df <= 60) return 3.460;
+    return 3.291;
+  }
+
+  private int             mWarmupIterations = 3;
+  private int             mIterations       = 5;
+  private long            mIterationTime    = 1000;
+  private PrintStream     mOut              = System.out;
+
+  /** Results are stored here so the JIT can't discard the work. */
+  private volatile Object mBlackhole;
+
+  public void setWarmupIterations(int n)
+  {
+    mWarmupIterations = Math.max(0, n);
+  }
+
+  public void setIterations(int n)
+  {
+    mIterations = Math.max(1, n);
+  }
+
+  /** Set how long each iteration runs for, in milliseconds. */
+  public void setIterationTime(long millis)
+  {
+    mIterationTime = Math.max(1, millis);
+  }
+
+  /** Set where progress is reported, or null for nowhere. */
+  public void setOutput(PrintStream out)
+  {
+    mOut = out;
+  }
+
+  /** @return the operations per second over one iteration. */
+  private double iteration(Benchmark b) throws Exception
+  {
+    long ops = 0;
+    long batch = 1;
+    long start = System.nanoTime();
+    long deadline = start + mIterationTime * 1000000L;
+    long now;
+    do
+    {
+      long t0 = System.nanoTime();
+      for (long i = 0; i < batch; i++)
+      {
+        mBlackhole = b.run();
+      }
+      ops += batch;
+      now = System.nanoTime();
+      // Make the batches long enough that reading the clock doesn't matter.
+      if (now - t0 < 1000000L) batch *= 2;
+    }
+    while (now < deadline);
+
+    return ops / ((now - start) / 1e9);
+  }
+
+  public Result run(Benchmark b) throws Exception
+  {
+    if (mOut != null) mOut.println("# " + b.getLabel());
+    b.setup();
+    System.gc();
+
+    for (int i = 0; i < mWarmupIterations; i++)
+    {
+      double s = iteration(b);
+      if (mOut != null) mOut.println(String.format(Locale.ROOT, "  warmup %d: %.3f ops/s",
+                                                   i + 1, s));
+    }
+
+    double[] scores = new double[mIterations];
+    for (int i = 0; i < mIterations; i++)
+    {
+      scores[i] = iteration(b);
+      if (mOut != null) mOut.println(String.format(Locale.ROOT, "  iteration %d: %.3f ops/s",
+                                                   i + 1, scores[i]));
+    }
+    mBlackhole = null;
+    return new Result(b, scores);
+  }
+
+  /** Print a summary table of the results. */
+  public static void printSummary(List<Result> results, PrintStream out)
+  {
+    int width = "Benchmark".length();
+    for (Result r : results)
+    {
+      width = Math.max(width, r.benchmark.getLabel().length());
+    }
+    String fmt = "%-" + width + "s  %5s  %3s  %14s  %12s  %s%n";
+    out.printf(Locale.ROOT, fmt, "Benchmark", "Mode", "Cnt", "Score", "Error", "Units");
+    for (Result r : results)
+    {
+      out.printf(Locale.ROOT, fmt, r.benchmark.getLabel(), "thrpt", r.scores.length,
+                 String.format(Locale.ROOT, "%.3f", r.score),
+                 Double.isNaN(r.error) ? "" : String.format(Locale.ROOT, "+- %.3f", r.error),
+                 "ops/s");
+    }
+  }
+
+  private static String quote(String s)
+  {
+    return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  private static String num(double d)
+  {
+    return Double.isNaN(d) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f", d);
+  }
+
+  /**
+   * Write the results as JSON, in the format of JMH's "-rf json" output.
+   *
+   * @param prefix
+   *          what to put in front of the benchmark names, like a class name.
+   */
+  public void writeJSON(List<Result> results, String prefix, File file) throws IOException
+  {
+    StringBuilder out = new StringBuilder("[\n");
+    String sep = "";
+    for (Result r : results)
+    {
+      out.append(sep).append("  {\n");
+      out.append("    \"benchmark\": ").append(quote(prefix + r.benchmark.getName()))
+          .append(",\n");
+      out.append("    \"mode\": \"thrpt\",\n");
+      out.append("    \"threads\": 1,\n");
+      out.append("    \"forks\": 0,\n");
+      out.append("    \"jvm\": ").append(quote(System.getProperty("java.home"))).append(",\n");
+      out.append("    \"jdkVersion\": ").append(quote(System.getProperty("java.version")))
+          .append(",\n");
+      out.append("    \"warmupIterations\": ").append(mWarmupIterations).append(",\n");
+      out.append("    \"warmupTime\": \"").append(mIterationTime).append(" ms\",\n");
+      out.append("    \"measurementIterations\": ").append(mIterations).append(",\n");
+      out.append("    \"measurementTime\": \"").append(mIterationTime).append(" ms\",\n");
+
+      if (!r.benchmark.getParams().isEmpty())
+      {
+        out.append("    \"params\": {");
+        String psep = "\n";
+        for (Map.Entry<String, String> e : r.benchmark.getParams().entrySet())
+        {
+          out.append(psep).append("      ").append(quote(e.getKey())).append(": ")
+              .append(quote(e.getValue()));
+          psep = ",\n";
+        }
+        out.append("\n    },\n");
+      }
+
+      out.append("    \"primaryMetric\": {\n");
+      out.append("      \"score\": ").append(num(r.score)).append(",\n");
+      out.append("      \"scoreError\": ").append(num(r.error)).append(",\n");
+      out.append("      \"scoreConfidence\": [").append(num(r.score - r.error)).append(", ")
+          .append(num(r.score + r.error)).append("],\n");
+      out.append("      \"scoreUnit\": \"ops/s\",\n");
+      out.append("      \"rawData\": [[");
+      for (int i = 0; i < r.scores.length; i++)
+      {
+        if (i > 0) out.append(", ");
+        out.append(num(r.scores[i]));
+      }
+      out.append("]]\n");
+      out.append("    },\n");
+      out.append("    \"secondaryMetrics\": {}\n");
+      out.append("  }");
+      sep = ",\n";
+    }
+    out.append("\n]\n");
+
+    Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try
+    {
+      w.write(out.toString());
+    }
+    finally
+    {
+      w.close();
+    }
+  }
+}
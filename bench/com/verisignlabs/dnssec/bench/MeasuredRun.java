@@ -0,0 +1,175 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.xbill.DNS.DSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+import com.verisignlabs.dnssec.cl.CLBase;
+import com.verisignlabs.dnssec.security.BINDKeyUtils;
+import com.verisignlabs.dnssec.security.DnsKeyPair;
+import com.verisignlabs.dnssec.security.JCEDnsSecSigner;
+import com.verisignlabs.dnssec.security.ZoneUtils;
+
+/**
+ * This runs one step of the {@link ScalingBenchmarks} in its own JVM, so that
+ * its peak memory use and GC time can be measured on their own. It runs a
+ * command line tool (or, for NSEC Opt-In, which the tools don't offer, the
+ * signer directly) and then writes a line with the exit status, the time the
+ * tool took in nanoseconds, the GC time in milliseconds and the number of
+ * collections, the peak resident set size in kilobytes (-1 where it can't be
+ * determined), and the peak heap use in bytes.
+ *
+ * Usage: MeasuredRun resultfile toolclass [args ...], or MeasuredRun
+ * resultfile optin-sign zonefile outputfile kskbase zskbase.
+ */
+public class MeasuredRun
+{
+  public static final String OPTIN_SIGN = "optin-sign";
+
+  /** @return VmHWM from /proc/self/status, in kilobytes, or -1. */
+  private static long peakRSS()
+  {
+    File status = new File("/proc/self/status");
+    if (!status.exists()) return -1;
+    try
+    {
+      BufferedReader in = new BufferedReader(new FileReader(status));
+      try
+      {
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+          if (line.startsWith("VmHWM:"))
+          {
+            return Long.parseLong(line.substring(6).trim().split("\\s+")[0]);
+          }
+        }
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch (IOException e)
+    {
+      // fall through.
+    }
+    catch (NumberFormatException e)
+    {
+      // fall through.
+    }
+    return -1;
+  }
+
+  private static int signOptIn(String[] args) throws Exception
+  {
+    String zonefile = args[0];
+    String outputfile = args[1];
+
+    List<Record> records = ZoneUtils.readZoneFile(zonefile, null);
+    Name zonename = ZoneUtils.findZoneName(records);
+
+    List<DnsKeyPair> kskpairs = new ArrayList<DnsKeyPair>();
+    kskpairs.add(BINDKeyUtils.loadKeyPair(args[2], null));
+    List<DnsKeyPair> zskpairs = new ArrayList<DnsKeyPair>();
+    zskpairs.add(BINDKeyUtils.loadKeyPair(args[3], null));
+    records.add(kskpairs.get(0).getDNSKEYRecord());
+    records.add(zskpairs.get(0).getDNSKEYRecord());
+
+    Date start = new Date();
+    Date expire = new Date(start.getTime() + 30 * 24 * 3600 * 1000L);
+
+    JCEDnsSecSigner signer = new JCEDnsSecSigner(false);
+    List<Record> signed = signer.signZoneOptIn(zonename, records, kskpairs, zskpairs, start,
+                                               expire, true, false, null,
+                                               DSRecord.SHA256_DIGEST_ID);
+    ZoneUtils.writeZoneFile(signed, outputfile);
+    return 0;
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    File result = new File(args[0]);
+    String tool = args[1];
+    String[] toolArgs = Arrays.copyOfRange(args, 2, args.length);
+
+    long start = System.nanoTime();
+    int status;
+    try
+    {
+      if (tool.equals(OPTIN_SIGN))
+      {
+        status = signOptIn(toolArgs);
+      }
+      else
+      {
+        CLBase t = (CLBase) Class.forName(tool).getDeclaredConstructor().newInstance();
+        status = t.run(toolArgs);
+      }
+    }
+    catch (Exception e)
+    {
+      e.printStackTrace();
+      status = 1;
+    }
+    long nanos = System.nanoTime() - start;
+
+    long gcMillis = 0;
+    long gcCount = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+    {
+      gcMillis += Math.max(0, gc.getCollectionTime());
+      gcCount += Math.max(0, gc.getCollectionCount());
+    }
+
+    long peakHeap = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+    {
+      if (pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+    }
+
+    PrintWriter out = new PrintWriter(new FileWriter(result));
+    try
+    {
+      out.println(status + " " + nanos + " " + gcMillis + " " + gcCount + " " + peakRSS() + " "
+          + peakHeap);
+    }
+    finally
+    {
+      out.close();
+    }
+    System.exit(status);
+  }
+}
@@ -0,0 +1,630 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.DNSKEYRecord;
+import org.xbill.DNS.Name;
+
+import com.verisignlabs.dnssec.cl.CLBase;
+import com.verisignlabs.dnssec.cl.GenZone;
+import com.verisignlabs.dnssec.cl.SignZone;
+import com.verisignlabs.dnssec.cl.VerifyZone;
+import com.verisignlabs.dnssec.cl.ZoneFormat;
+import com.verisignlabs.dnssec.security.BINDKeyUtils;
+import com.verisignlabs.dnssec.security.DnsKeyPair;
+import com.verisignlabs.dnssec.security.JCEDnsSecSigner;
+
+/**
+ * End-to-end benchmarks: zones of increasing size are generated with
+ * jdnssec-genzone, then signed (with NSEC, NSEC3, NSEC3 Opt-Out and NSEC
+ * Opt-In), verified and reformatted with the command line tools. Each step
+ * runs in its own JVM (see {@link MeasuredRun}) and its time, throughput,
+ * peak RSS and GC time are recorded.
+ *
+ * The report shows, for each mode and step, how the time grows with the size
+ * of the zone, as the exponent k in time ~ size^k between one size and the
+ * next: 1 is linear, 2 is quadratic. The run fails (exits with status 1) if a
+ * step fails, if k goes over a limit, or if the throughput falls too far
+ * below that of a baseline run.
+ */
+public class ScalingBenchmarks extends CLBase
+{
+  private static final String   ZONE_NAME = "example.com.";
+
+  private static final String[] ALL_MODES = { "nsec", "nsec3", "optout", "optin" };
+
+  private CLIState              state;
+
+  /**
+   * This is a small inner class used to hold all of the command line option
+   * state.
+   */
+  protected static class CLIState extends CLIStateBase
+  {
+    public long[]   sizes        = { 10000, 100000, 1000000, 10000000 };
+    public String[] modes        = ALL_MODES;
+    public File     workDir      = new File("build/scaling");
+    public int      algorithm    = 8;
+    public int      keySize      = 1024;
+    public String[] jvmArgs      = new String[0];
+    public String[] genzoneArgs  = new String[0];
+    public double   maxExponent  = 1.25;
+    public long     minTime      = 1000;
+    public File     baseline     = null;
+    public double   tolerance    = 0.25;
+    public File     resultFile   = null;
+    public boolean  keep         = false;
+
+    public CLIState()
+    {
+      super("ScalingBenchmarks [..options..]");
+    }
+
+    protected void setupOptions(Options opts)
+    {
+      opts.addOption("k", "keep", false, "keep the generated zones and output files.");
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("sizes");
+      OptionBuilder.withArgName("n,...");
+      OptionBuilder.withDescription("the zone sizes, in records; may end in 'k' or 'M' "
+          + "(default 10k,100k,1M,10M).");
+      opts.addOption(OptionBuilder.create('n'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("modes");
+      OptionBuilder.withArgName("mode,...");
+      OptionBuilder.withDescription("the signing modes: nsec, nsec3, optout and/or optin "
+          + "(default all).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("work-dir");
+      OptionBuilder.withArgName("dir");
+      OptionBuilder.withDescription("where to put the zones, keys and logs (default "
+          + "build/scaling).");
+      opts.addOption(OptionBuilder.create('d'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("algorithm");
+      OptionBuilder.withArgName("alg");
+      OptionBuilder.withDescription("the DNSSEC algorithm of the keys (default 8).");
+      opts.addOption(OptionBuilder.create('a'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("key-size");
+      OptionBuilder.withArgName("bits");
+      OptionBuilder.withDescription("the size of RSA and DSA keys (default 1024).");
+      opts.addOption(OptionBuilder.create('b'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("jvm-args");
+      OptionBuilder.withArgName("args");
+      OptionBuilder.withDescription("arguments for the JVM running each step, such as "
+          + "\"-Xmx8g\".");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("genzone-args");
+      OptionBuilder.withArgName("args");
+      OptionBuilder.withDescription("extra arguments for jdnssec-genzone, such as "
+          + "\"--ent-depth 2\".");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("max-exponent");
+      OptionBuilder.withArgName("k");
+      OptionBuilder.withDescription("fail if a step's time grows faster than size^k "
+          + "(default 1.25).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("min-time");
+      OptionBuilder.withArgName("ms");
+      OptionBuilder.withDescription("only check the growth from sizes whose step took at least "
+          + "this long, as shorter times are mostly startup (default 1000).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("baseline");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("compare the throughput with the results of an earlier run.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("tolerance");
+      OptionBuilder.withArgName("ratio");
+      OptionBuilder.withDescription("fail if the throughput is this much below the baseline "
+          + "(default 0.25).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("result-file");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("write the results to this file (tab separated, usable as "
+          + "a baseline).");
+      opts.addOption(OptionBuilder.create('o'));
+    }
+
+    private static long parseCount(String s)
+    {
+      long mult = 1;
+      if (s.endsWith("k") || s.endsWith("K"))
+      {
+        mult = 1000;
+      }
+      else if (s.endsWith("m") || s.endsWith("M"))
+      {
+        mult = 1000000;
+      }
+      if (mult > 1) s = s.substring(0, s.length() - 1);
+      try
+      {
+        return Long.parseLong(s) * mult;
+      }
+      catch (NumberFormatException e)
+      {
+        return -1;
+      }
+    }
+
+    private double parseDouble(String opt, String s)
+    {
+      try
+      {
+        return Double.parseDouble(s);
+      }
+      catch (NumberFormatException e)
+      {
+        System.err.println("error: bad value for --" + opt + ": " + s);
+        usage();
+        return 0;
+      }
+    }
+
+    protected void processOptions(CommandLine cli)
+    {
+      String optstr = null;
+
+      if (cli.hasOption('k')) keep = true;
+
+      if ((optstr = cli.getOptionValue('n')) != null)
+      {
+        String[] parts = optstr.split(",");
+        sizes = new long[parts.length];
+        for (int i = 0; i < parts.length; i++)
+        {
+          sizes[i] = parseCount(parts[i].trim());
+          if (sizes[i] < 1 || (i > 0 && sizes[i] <= sizes[i - 1]))
+          {
+            System.err.println("error: the sizes must be increasing: " + optstr);
+            usage();
+          }
+        }
+      }
+
+      if ((optstr = cli.getOptionValue("modes")) != null)
+      {
+        modes = optstr.split(",");
+        for (String m : modes)
+        {
+          if (!Arrays.asList(ALL_MODES).contains(m))
+          {
+            System.err.println("error: unknown mode: " + m);
+            usage();
+          }
+        }
+      }
+
+      if ((optstr = cli.getOptionValue('d')) != null) workDir = new File(optstr);
+      if ((optstr = cli.getOptionValue('a')) != null)
+      {
+        algorithm = parseInt(optstr, algorithm);
+      }
+      if ((optstr = cli.getOptionValue('b')) != null) keySize = parseInt(optstr, keySize);
+      if ((optstr = cli.getOptionValue("jvm-args")) != null) jvmArgs = splitArgs(optstr);
+      if ((optstr = cli.getOptionValue("genzone-args")) != null)
+      {
+        genzoneArgs = splitArgs(optstr);
+      }
+      if ((optstr = cli.getOptionValue("max-exponent")) != null)
+      {
+        maxExponent = parseDouble("max-exponent", optstr);
+      }
+      if ((optstr = cli.getOptionValue("min-time")) != null)
+      {
+        minTime = parseInt(optstr, (int) minTime);
+      }
+      if ((optstr = cli.getOptionValue("baseline")) != null) baseline = new File(optstr);
+      if ((optstr = cli.getOptionValue("tolerance")) != null)
+      {
+        tolerance = parseDouble("tolerance", optstr);
+      }
+      if ((optstr = cli.getOptionValue('o')) != null) resultFile = new File(optstr);
+    }
+  }
+
+  /** The measurements of one step. */
+  private static class Result
+  {
+    public String mode;
+    public String step;
+    public long   records;
+    public int    status;
+    public long   nanos;
+    public long   gcMillis;
+    public long   gcCount;
+    public long   peakRSS;
+    public long   peakHeap;
+
+    public double seconds()
+    {
+      return nanos / 1e9;
+    }
+
+    public double throughput()
+    {
+      return nanos > 0 ? records / seconds() : 0.0;
+    }
+
+    public String key()
+    {
+      return mode + "\t" + step + "\t" + records;
+    }
+  }
+
+  private List<Result> mResults  = new ArrayList<Result>();
+  private List<String> mFailures = new ArrayList<String>();
+  private String       mKSK;
+  private String       mZSK;
+
+  private String generateKey(File dir, int flags) throws Exception
+  {
+    JCEDnsSecSigner signer = new JCEDnsSecSigner();
+    DnsKeyPair pair = signer.generateKey(Name.fromString(ZONE_NAME), 3600, DClass.IN,
+                                         state.algorithm, flags, state.keySize, true);
+    BINDKeyUtils.writeKeyFiles(pair, dir);
+    return new File(dir, BINDKeyUtils.keyFileBase(pair)).getPath();
+  }
+
+  /** Run one step in a new JVM, and record its measurements. */
+  private Result runStep(String mode, String step, long records, String tool, String... args)
+      throws Exception
+  {
+    String name = mode + "-" + step + "-" + records;
+    File resultFile = new File(state.workDir, name + ".result");
+    File logFile = new File(state.workDir, name + ".log");
+    resultFile.delete();
+
+    List<String> cmd = new ArrayList<String>();
+    cmd.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+    cmd.addAll(Arrays.asList(state.jvmArgs));
+    cmd.add("-cp");
+    cmd.add(System.getProperty("java.class.path"));
+    cmd.add(MeasuredRun.class.getName());
+    cmd.add(resultFile.getPath());
+    cmd.add(tool);
+    cmd.addAll(Arrays.asList(args));
+
+    ProcessBuilder pb = new ProcessBuilder(cmd);
+    pb.redirectErrorStream(true);
+    pb.redirectOutput(logFile);
+    int rc = pb.start().waitFor();
+
+    Result r = new Result();
+    r.mode = mode;
+    r.step = step;
+    r.records = records;
+    r.status = rc;
+    if (resultFile.exists())
+    {
+      BufferedReader in = new BufferedReader(new FileReader(resultFile));
+      try
+      {
+        String[] f = in.readLine().trim().split(" ");
+        r.status = Integer.parseInt(f[0]);
+        r.nanos = Long.parseLong(f[1]);
+        r.gcMillis = Long.parseLong(f[2]);
+        r.gcCount = Long.parseLong(f[3]);
+        r.peakRSS = Long.parseLong(f[4]);
+        r.peakHeap = Long.parseLong(f[5]);
+      }
+      finally
+      {
+        in.close();
+      }
+      resultFile.delete();
+    }
+    if (r.status == 0) rc = 0;
+
+    if (r.status != 0 || rc != 0)
+    {
+      r.status = r.status != 0 ? r.status : rc;
+      mFailures.add(mode + " " + step + " " + records + ": failed with status " + r.status
+          + ", see " + logFile);
+    }
+    else if (!state.keep)
+    {
+      logFile.delete();
+    }
+
+    System.out.println(String.format(Locale.ROOT,
+                                     "%-7s %-8s %10d  %9.3fs  %12.1f records/s  RSS %s  GC %dms%s",
+                                     mode, step, records, r.seconds(), r.throughput(),
+                                     megabytes(r.peakRSS), r.gcMillis,
+                                     r.status != 0 ? "  FAILED" : ""));
+    mResults.add(r);
+    return r;
+  }
+
+  private static String megabytes(long kb)
+  {
+    return kb < 0 ? "n/a" : String.format(Locale.ROOT, "%.1fMB", kb / 1024.0);
+  }
+
+  private void runSize(long size) throws Exception
+  {
+    File zone = new File(state.workDir, "zone-" + size + ".zone");
+    List<String> gen = new ArrayList<String>();
+    gen.add("-n");
+    gen.add(String.valueOf(size));
+    gen.addAll(Arrays.asList(state.genzoneArgs));
+    gen.add("-f");
+    gen.add(zone.getPath());
+    gen.add(ZONE_NAME);
+    if (runStep("-", "generate", size, GenZone.class.getName(),
+                gen.toArray(new String[gen.size()])).status != 0)
+    {
+      return;
+    }
+
+    for (String mode : state.modes)
+    {
+      File signed = new File(state.workDir, mode + "-" + size + ".signed");
+      File formatted = new File(state.workDir, mode + "-" + size + ".formatted");
+      boolean nsec3 = mode.equals("nsec3") || mode.equals("optout");
+
+      Result r;
+      if (mode.equals("optin"))
+      {
+        // jdnssec-signzone has no Opt-In option, so this calls the signer.
+        r = runStep(mode, "sign", size, MeasuredRun.OPTIN_SIGN, zone.getPath(),
+                    signed.getPath(), mKSK, mZSK);
+      }
+      else
+      {
+        List<String> sign = new ArrayList<String>();
+        if (nsec3) sign.add("-3");
+        if (mode.equals("optout")) sign.add("-O");
+        // the KSK is picked out by its SEP flag.
+        sign.addAll(Arrays.asList("-f", signed.getPath(), zone.getPath(), mKSK, mZSK));
+        r = runStep(mode, "sign", size, SignZone.class.getName(),
+                    sign.toArray(new String[sign.size()]));
+      }
+      if (r.status != 0) continue;
+
+      // ZoneVerifier doesn't understand Opt-In.
+      if (!mode.equals("optin"))
+      {
+        runStep(mode, "verify", size, VerifyZone.class.getName(), signed.getPath());
+      }
+
+      if (nsec3)
+      {
+        runStep(mode, "format", size, ZoneFormat.class.getName(), "-N", "-f",
+                formatted.getPath(), signed.getPath());
+      }
+      else
+      {
+        runStep(mode, "format", size, ZoneFormat.class.getName(), "-f", formatted.getPath(),
+                signed.getPath());
+      }
+
+      if (!state.keep)
+      {
+        signed.delete();
+        formatted.delete();
+      }
+    }
+
+    if (!state.keep) zone.delete();
+  }
+
+  private Map<String, Double> readBaseline(File file) throws IOException
+  {
+    Map<String, Double> baseline = new HashMap<String, Double>();
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    try
+    {
+      String line;
+      while ((line = in.readLine()) != null)
+      {
+        if (line.startsWith("#") || line.trim().length() == 0) continue;
+        String[] f = line.split("\t");
+        if (f.length < 6 || !f[3].equals("0")) continue;
+        baseline.put(f[0] + "\t" + f[1] + "\t" + f[2], Double.parseDouble(f[5]));
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+    return baseline;
+  }
+
+  /** Print the scaling curves, and check them. */
+  private void report(PrintStream out, Map<String, Double> baseline)
+  {
+    Map<String, List<Result>> curves = new LinkedHashMap<String, List<Result>>();
+    for (Result r : mResults)
+    {
+      String key = r.mode.equals("-") ? r.step : r.mode + " " + r.step;
+      List<Result> curve = curves.get(key);
+      if (curve == null)
+      {
+        curve = new ArrayList<Result>();
+        curves.put(key, curve);
+      }
+      curve.add(r);
+    }
+
+    String fmt = "  %10s  %10s  %12s  %10s  %8s  %5s  %8s  %8s%n";
+    for (Map.Entry<String, List<Result>> e : curves.entrySet())
+    {
+      out.println();
+      out.println(e.getKey() + ":");
+      out.printf(Locale.ROOT, fmt, "records", "time(s)", "records/s", "peak RSS", "GC(ms)",
+                 "GC%", "exponent", "baseline");
+
+      Result prev = null;
+      for (Result r : e.getValue())
+      {
+        String exponent = "";
+        if (prev != null && prev.status == 0 && r.status == 0 && prev.nanos > 0)
+        {
+          double k = Math.log((double) r.nanos / prev.nanos)
+              / Math.log((double) r.records / prev.records);
+          exponent = String.format(Locale.ROOT, "%.2f", k);
+          if (k > state.maxExponent && prev.nanos >= state.minTime * 1000000L)
+          {
+            exponent += " !";
+            mFailures.add(String.format(Locale.ROOT, "%s %d -> %d: time grows as size^%.2f "
+                + "(limit %.2f)", e.getKey(), prev.records, r.records, k, state.maxExponent));
+          }
+        }
+
+        String vs = "";
+        Double base = baseline.get(r.key());
+        if (base != null && r.status == 0)
+        {
+          double ratio = r.throughput() / base;
+          vs = String.format(Locale.ROOT, "%+.0f%%", (ratio - 1) * 100);
+          if (ratio < 1 - state.tolerance)
+          {
+            vs += " !";
+            mFailures.add(String.format(Locale.ROOT, "%s %d: %.1f records/s is %.0f%% below "
+                + "the baseline (%.1f)", e.getKey(), r.records, r.throughput(),
+                                        (1 - ratio) * 100, base));
+          }
+        }
+
+        if (r.status != 0)
+        {
+          out.printf(Locale.ROOT, fmt, r.records, "failed", "", "", "", "", "", "");
+        }
+        else
+        {
+          double gcPercent = r.nanos > 0 ? r.gcMillis * 1e8 / r.nanos : 0;
+          out.printf(Locale.ROOT, fmt, r.records,
+                     String.format(Locale.ROOT, "%.3f", r.seconds()),
+                     String.format(Locale.ROOT, "%.1f", r.throughput()),
+                     megabytes(r.peakRSS), r.gcMillis,
+                     String.format(Locale.ROOT, "%.1f", gcPercent), exponent, vs);
+        }
+        prev = r;
+      }
+    }
+  }
+
+  private void writeResults(File file) throws IOException
+  {
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try
+    {
+      out.println("# mode\tstep\trecords\tstatus\twall_ms\trecords_per_sec\tgc_ms\tgc_count"
+          + "\tpeak_rss_kb\tpeak_heap_bytes");
+      for (Result r : mResults)
+      {
+        out.println(String.format(Locale.ROOT, "%s\t%d\t%.3f\t%.3f\t%d\t%d\t%d\t%d", r.key(),
+                                  r.status, r.nanos / 1e6, r.throughput(), r.gcMillis,
+                                  r.gcCount, r.peakRSS, r.peakHeap));
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  public void execute() throws Exception
+  {
+    Map<String, Double> baseline = new HashMap<String, Double>();
+    if (state.baseline != null) baseline = readBaseline(state.baseline);
+
+    File keydir = new File(state.workDir, "keys");
+    keydir.mkdirs();
+    mKSK = generateKey(keydir, DNSKEYRecord.Flags.ZONE_KEY | DNSKEYRecord.Flags.SEP_KEY);
+    mZSK = generateKey(keydir, DNSKEYRecord.Flags.ZONE_KEY);
+
+    for (long size : state.sizes)
+    {
+      runSize(size);
+    }
+
+    report(System.out, baseline);
+
+    if (state.resultFile != null)
+    {
+      writeResults(state.resultFile);
+      System.out.println();
+      System.out.println("results written to " + state.resultFile);
+    }
+
+    if (!mFailures.isEmpty())
+    {
+      System.out.println();
+      for (String f : mFailures)
+      {
+        System.out.println("FAIL: " + f);
+      }
+      exitStatus = 1;
+    }
+  }
+
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
+  public static void main(String[] args)
+  {
+    ScalingBenchmarks tool = new ScalingBenchmarks();
+
+    System.exit(tool.run(args));
+  }
+}
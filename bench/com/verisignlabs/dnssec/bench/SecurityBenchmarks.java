@@ -0,0 +1,492 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.bench;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.security.Signature;
+import java.security.interfaces.DSAPublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.DNSKEYRecord;
+import org.xbill.DNS.DNSSEC;
+import org.xbill.DNS.DSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.NSEC3Record;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+
+import com.verisignlabs.dnssec.cl.CLBase;
+import com.verisignlabs.dnssec.security.DnsKeyAlgorithm;
+import com.verisignlabs.dnssec.security.DnsKeyPair;
+import com.verisignlabs.dnssec.security.DnsSecVerifier;
+import com.verisignlabs.dnssec.security.JCEDnsSecSigner;
+import com.verisignlabs.dnssec.security.RecordComparator;
+import com.verisignlabs.dnssec.security.SignUtils;
+import com.verisignlabs.dnssec.security.TypeMap;
+
+/**
+ * Microbenchmarks for the building blocks of signing and verification in
+ * com.verisignlabs.dnssec.security: NSEC3 hashing, canonical RRset data,
+ * sorting, signature format conversion, DS calculation, type maps, and
+ * signing and verifying with each algorithm and key size. Run it with "ant
+ * bench", or directly, giving regular expressions to pick the benchmarks to
+ * run.
+ */
+public class SecurityBenchmarks extends CLBase
+{
+  private CLIState state;
+
+  /**
+   * This is a small inner class used to hold all of the command line option
+   * state.
+   */
+  protected static class CLIState extends CLIStateBase
+  {
+    public List<Pattern> filters          = new ArrayList<Pattern>();
+    public boolean       list             = false;
+    public int           warmupIterations = 3;
+    public int           iterations       = 5;
+    public int           iterationTime    = 1000;
+    public File          resultFile       = null;
+
+    public CLIState()
+    {
+      super("SecurityBenchmarks [..options..] [regexp ...]");
+    }
+
+    protected void setupOptions(Options opts)
+    {
+      opts.addOption("l", "list", false, "list the benchmarks, and exit.");
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("warmup-iterations");
+      OptionBuilder.withArgName("n");
+      OptionBuilder.withDescription("warmup iterations per benchmark (default 3).");
+      opts.addOption(OptionBuilder.create('w'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("iterations");
+      OptionBuilder.withArgName("n");
+      OptionBuilder.withDescription("measurement iterations per benchmark (default 5).");
+      opts.addOption(OptionBuilder.create('i'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("time");
+      OptionBuilder.withArgName("ms");
+      OptionBuilder.withDescription("how long each iteration runs (default 1000ms).");
+      opts.addOption(OptionBuilder.create('t'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("result-file");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("write the results to this file, as JMH-style JSON.");
+      opts.addOption(OptionBuilder.create('o'));
+    }
+
+    protected void processOptions(CommandLine cli)
+    {
+      String optstr = null;
+
+      if (cli.hasOption('l')) list = true;
+
+      if ((optstr = cli.getOptionValue('w')) != null)
+      {
+        warmupIterations = parseInt(optstr, warmupIterations);
+      }
+      if ((optstr = cli.getOptionValue('i')) != null)
+      {
+        iterations = parseInt(optstr, iterations);
+      }
+      if ((optstr = cli.getOptionValue('t')) != null)
+      {
+        iterationTime = parseInt(optstr, iterationTime);
+      }
+      if ((optstr = cli.getOptionValue('o')) != null)
+      {
+        resultFile = new File(optstr);
+      }
+
+      for (String re : cli.getArgs())
+      {
+        filters.add(Pattern.compile(re));
+      }
+    }
+  }
+
+  private static final Name ZONE = name("example.com.");
+
+  private static Name name(String s)
+  {
+    try
+    {
+      return Name.fromString(s);
+    }
+    catch (Exception e)
+    {
+      throw new IllegalArgumentException(s);
+    }
+  }
+
+  /** @return an RRset of A records. */
+  private static RRset aRRset(Name owner, int size) throws Exception
+  {
+    RRset rrset = new RRset();
+    for (int i = 0; i < size; i++)
+    {
+      byte[] addr = { 10, 0, (byte) (i >> 8), (byte) i };
+      rrset.addRR(new ARecord(owner, DClass.IN, 3600, InetAddress.getByAddress(addr)));
+    }
+    return rrset;
+  }
+
+  private static DnsKeyPair generateKey(int algorithm, int keysize) throws Exception
+  {
+    return new JCEDnsSecSigner().generateKey(ZONE, 3600, DClass.IN, algorithm,
+                                             DNSKEYRecord.Flags.ZONE_KEY, keysize, false);
+  }
+
+  /** @return a raw (ASN.1) signature made with the key. */
+  private static byte[] rawSignature(DnsKeyPair pair) throws Exception
+  {
+    DnsKeyAlgorithm algs = DnsKeyAlgorithm.getInstance();
+    Signature s = algs.getSignature(pair.getDNSKEYAlgorithm());
+    s.initSign(pair.getPrivate());
+    s.update(new byte[100]);
+    return s.sign();
+  }
+
+  // The algorithms and key sizes to sign and verify with.
+  private static final int[][] SIGNING_KEYS = { { DNSSEC.Algorithm.RSASHA256, 1024 },
+      { DNSSEC.Algorithm.RSASHA256, 2048 }, { DNSSEC.Algorithm.RSASHA256, 4096 },
+      { DNSSEC.Algorithm.RSASHA512, 2048 }, { DNSSEC.Algorithm.ECDSAP256SHA256, 256 },
+      { DNSSEC.Algorithm.ECDSAP384SHA384, 384 }, { DNSSEC.Algorithm.DSA, 1024 } };
+
+  /** @return all of the benchmarks. */
+  private static List<Benchmark> benchmarks()
+  {
+    List<Benchmark> l = new ArrayList<Benchmark>();
+
+    for (final int iterations : new int[] { 0, 10, 150 })
+    {
+      for (final int saltLength : new int[] { 0, 8 })
+      {
+        l.add(new Benchmark("nsec3hash", "iterations", iterations, "saltLength", saltLength)
+        {
+          private Name   n    = name("www.example.com.");
+          private byte[] salt = new byte[saltLength];
+
+          public Object run() throws Exception
+          {
+            return SignUtils.nsec3hash(n, NSEC3Record.SHA1_DIGEST_ID, iterations, salt);
+          }
+        });
+      }
+    }
+
+    for (final int size : new int[] { 1, 8, 64 })
+    {
+      l.add(new Benchmark("generateCanonicalRRsetData", "rrsetSize", size)
+      {
+        private RRset rrset;
+
+        public void setup() throws Exception
+        {
+          rrset = aRRset(name("WWW.Example.COM."), size);
+        }
+
+        public Object run()
+        {
+          return SignUtils.generateCanonicalRRsetData(rrset, 0, 0);
+        }
+      });
+    }
+
+    for (final int count : new int[] { 1000, 100000 })
+    {
+      l.add(new Benchmark("recordComparatorSort", "records", count)
+      {
+        private List<Record>     records;
+        private RecordComparator rc = new RecordComparator();
+
+        public void setup() throws Exception
+        {
+          Random r = new Random(count);
+          records = new ArrayList<Record>(count);
+          for (int i = 0; i < count; i++)
+          {
+            Name n = Name.fromString("host" + r.nextInt(count / 2) + ".example.com.");
+            byte[] a4 = new byte[4];
+            byte[] a6 = new byte[16];
+            r.nextBytes(a4);
+            r.nextBytes(a6);
+            records.add(r.nextBoolean()
+                ? new ARecord(n, DClass.IN, 3600, InetAddress.getByAddress(a4))
+                : new AAAARecord(n, DClass.IN, 3600, InetAddress.getByAddress(a6)));
+          }
+        }
+
+        public Object run()
+        {
+          // includes copying the unsorted list, which is small in comparison.
+          List<Record> copy = new ArrayList<Record>(records);
+          Collections.sort(copy, rc);
+          return copy;
+        }
+      });
+    }
+
+    for (final int alg : new int[] { DNSSEC.Algorithm.ECDSAP256SHA256,
+        DNSSEC.Algorithm.ECDSAP384SHA384 })
+    {
+      // ASN.1 to the RFC 6605 wire format, when signing.
+      l.add(new Benchmark("convertECDSASignatureToWire", "algorithm", alg)
+      {
+        private byte[] sig;
+
+        public void setup() throws Exception
+        {
+          sig = rawSignature(generateKey(alg, 0));
+        }
+
+        public Object run() throws Exception
+        {
+          return SignUtils.convertECDSASignature(alg, sig);
+        }
+      });
+
+      // and back, when verifying.
+      l.add(new Benchmark("convertECDSASignatureFromWire", "algorithm", alg)
+      {
+        private byte[] sig;
+
+        public void setup() throws Exception
+        {
+          sig = SignUtils.convertECDSASignature(alg, rawSignature(generateKey(alg, 0)));
+        }
+
+        public Object run() throws Exception
+        {
+          return SignUtils.convertECDSASignature(sig);
+        }
+      });
+    }
+
+    l.add(new Benchmark("convertDSASignatureToWire")
+    {
+      private DSAPublicKey key;
+      private byte[]       sig;
+
+      public void setup() throws Exception
+      {
+        DnsKeyPair pair = generateKey(DNSSEC.Algorithm.DSA, 1024);
+        key = (DSAPublicKey) pair.getPublic();
+        sig = rawSignature(pair);
+      }
+
+      public Object run() throws Exception
+      {
+        return SignUtils.convertDSASignature(key.getParams(), sig);
+      }
+    });
+
+    l.add(new Benchmark("convertDSASignatureFromWire")
+    {
+      private byte[] sig;
+
+      public void setup() throws Exception
+      {
+        DnsKeyPair pair = generateKey(DNSSEC.Algorithm.DSA, 1024);
+        sig = SignUtils.convertDSASignature(((DSAPublicKey) pair.getPublic()).getParams(),
+                                            rawSignature(pair));
+      }
+
+      public Object run() throws Exception
+      {
+        return SignUtils.convertDSASignature(sig);
+      }
+    });
+
+    for (final int digest : new int[] { DSRecord.SHA1_DIGEST_ID, DSRecord.SHA256_DIGEST_ID })
+    {
+      l.add(new Benchmark("calculateDSRecord", "digest", digest)
+      {
+        private DNSKEYRecord key;
+
+        public void setup() throws Exception
+        {
+          key = generateKey(DNSSEC.Algorithm.RSASHA256, 2048).getDNSKEYRecord();
+        }
+
+        public Object run()
+        {
+          return SignUtils.calculateDSRecord(key, digest, 3600);
+        }
+      });
+    }
+
+    // A typical delegation's types, and a busy zone apex's.
+    final int[][] typesets = { { Type.NS, Type.DS, Type.RRSIG, Type.NSEC },
+        { Type.A, Type.NS, Type.SOA, Type.MX, Type.TXT, Type.AAAA, Type.RRSIG, Type.NSEC,
+            Type.DNSKEY, Type.SSHFP, 65534 } };
+    for (final int[] types : typesets)
+    {
+      l.add(new Benchmark("typeMapEncode", "types", types.length)
+      {
+        public Object run()
+        {
+          return TypeMap.fromTypes(types).toWire();
+        }
+      });
+
+      l.add(new Benchmark("typeMapDecode", "types", types.length)
+      {
+        private byte[] wire = TypeMap.fromTypes(types).toWire();
+
+        public Object run()
+        {
+          return TypeMap.fromBytes(wire).getTypes();
+        }
+      });
+    }
+
+    final Date start = new Date(System.currentTimeMillis() - 3600000L);
+    final Date expire = new Date(start.getTime() + 30 * 86400000L);
+    for (final int[] spec : SIGNING_KEYS)
+    {
+      l.add(new Benchmark("signRRset", "algorithm", spec[0], "keySize", spec[1])
+      {
+        private JCEDnsSecSigner  signer = new JCEDnsSecSigner();
+        private RRset            rrset;
+        private List<DnsKeyPair> keys;
+
+        public void setup() throws Exception
+        {
+          rrset = aRRset(name("www.example.com."), 4);
+          keys = Collections.singletonList(generateKey(spec[0], spec[1]));
+        }
+
+        public Object run() throws Exception
+        {
+          return signer.signRRset(rrset, keys, start, expire);
+        }
+      });
+
+      l.add(new Benchmark("verifySignature", "algorithm", spec[0], "keySize", spec[1])
+      {
+        private DnsSecVerifier verifier = new DnsSecVerifier();
+        private RRset          rrset;
+        private RRSIGRecord    sig;
+
+        public void setup() throws Exception
+        {
+          rrset = aRRset(name("www.example.com."), 4);
+          DnsKeyPair pair = generateKey(spec[0], spec[1]);
+          verifier.addTrustedKey(pair);
+          List<DnsKeyPair> keys = Collections.singletonList(pair);
+          sig = new JCEDnsSecSigner().signRRset(rrset, keys, start, expire).get(0);
+        }
+
+        public Object run()
+        {
+          if (!verifier.verifySignature(rrset, sig))
+          {
+            throw new IllegalStateException("signature did not verify");
+          }
+          return sig;
+        }
+      });
+    }
+
+    return l;
+  }
+
+  private boolean selected(Benchmark b)
+  {
+    if (state.filters.isEmpty()) return true;
+    for (Pattern p : state.filters)
+    {
+      if (p.matcher(b.getLabel()).find()) return true;
+    }
+    return false;
+  }
+
+  public void execute() throws Exception
+  {
+    List<Benchmark> selected = new ArrayList<Benchmark>();
+    for (Benchmark b : benchmarks())
+    {
+      if (selected(b)) selected.add(b);
+    }
+
+    if (state.list)
+    {
+      for (Benchmark b : selected)
+      {
+        System.out.println(b.getLabel());
+      }
+      return;
+    }
+
+    BenchmarkRunner runner = new BenchmarkRunner();
+    runner.setWarmupIterations(state.warmupIterations);
+    runner.setIterations(state.iterations);
+    runner.setIterationTime(state.iterationTime);
+
+    List<BenchmarkRunner.Result> results = new ArrayList<BenchmarkRunner.Result>();
+    for (Benchmark b : selected)
+    {
+      results.add(runner.run(b));
+    }
+
+    System.out.println();
+    BenchmarkRunner.printSummary(results, System.out);
+
+    if (state.resultFile != null)
+    {
+      runner.writeJSON(results, getClass().getName() + ".", state.resultFile);
+      System.out.println("results written to " + state.resultFile);
+    }
+  }
+
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
+  public static void main(String[] args)
+  {
+    SecurityBenchmarks tool = new SecurityBenchmarks();
+
+    System.exit(tool.run(args));
+  }
+}
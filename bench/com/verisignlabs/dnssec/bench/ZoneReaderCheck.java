@@ -0,0 +1,97 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+import com.verisignlabs.dnssec.security.ParallelMasterReader;
+
+/**
+ * Checks that {@link ParallelMasterReader} reads the same records as a serial
+ * read, for zone shapes where the TTL of a record depends on state from
+ * earlier in the file. Exits with status 1 if any of them differ.
+ */
+public class ZoneReaderCheck
+{
+  private static final int RECORDS = 240000;
+
+  private static final String SOA =
+      "example.com. IN SOA ns.example.com. admin.example.com. ( 1 3600 600 86400 300 )";
+
+  /** Write a zone alternating explicit and inherited TTL A records. */
+  private static File writeZone(String header) throws IOException
+  {
+    File f = File.createTempFile("zonereadercheck", ".zone");
+    f.deleteOnExit();
+    PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(f)));
+    try
+    {
+      out.println(header);
+      out.println("example.com. 3600 IN NS ns.example.com.");
+      for (int i = 0; i < RECORDS / 2; i++)
+      {
+        out.println("a" + i + ".example.com. 3600 IN A 10.0." + (i >> 8 & 0xFF) + "." + (i & 0xFF));
+        out.println("b" + i + ".example.com. IN A 10.1." + (i >> 8 & 0xFF) + "." + (i & 0xFF));
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+    return f;
+  }
+
+  private static boolean check(String label, String header) throws IOException
+  {
+    File f = writeZone(header);
+    List<Record> serial = new ParallelMasterReader(1, 0).readZoneFile(f.getPath(),
+                                                                      Name.root);
+    List<Record> parallel = new ParallelMasterReader(8, 0).readZoneFile(f.getPath(),
+                                                                        Name.root);
+
+    int diffs = Math.abs(serial.size() - parallel.size());
+    for (int i = 0; i < Math.min(serial.size(), parallel.size()); i++)
+    {
+      Record s = serial.get(i);
+      Record p = parallel.get(i);
+      if (!s.equals(p) || s.getTTL() != p.getTTL()) diffs++;
+    }
+    f.delete();
+
+    System.out.println(label + ": " + serial.size() + " records, "
+        + (diffs == 0 ? "ok" : diffs + " differ"));
+    return diffs == 0;
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    boolean ok = true;
+    ok &= check("no $TTL, SOA without TTL", SOA);
+    ok &= check("no $TTL, SOA with TTL", SOA.replace(" IN SOA", " 7200 IN SOA"));
+    ok &= check("$TTL", "$TTL 900\n" + SOA);
+    if (!ok) System.exit(1);
+  }
+}
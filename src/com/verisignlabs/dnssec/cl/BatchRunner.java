@@ -0,0 +1,456 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.cl;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.StreamHandler;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+
+/**
+ * This class forms the command line implementation of a batch runner for the
+ * other jdnssec tools. It reads a script of tool invocations, one per line,
+ * like:
+ *
+ * <pre>
+ *   jdnssec-keygen -a 13 -k example.com
+ *   signzone -f example.com.signed example.com.zone &amp;
+ *   signzone -f example.net.signed example.net.zone &amp;
+ *   wait
+ *   verifyzone example.com.signed
+ * </pre>
+ *
+ * and runs them all in one JVM, so only the first pays for starting it (and
+ * the later ones reuse the loaded keys and warmed-up code). As in a shell, a
+ * line ending with '&amp;' runs in the background, and "wait" waits for the
+ * background lines to finish. Background lines' output is held until they
+ * finish, so the output of each line stays together.
+ */
+public class BatchRunner extends CLBase
+{
+  private CLIState state;
+
+  /** The tools a script can run, by name. */
+  private static final Map<String, Class<? extends CLBase>> TOOLS = new LinkedHashMap<String, Class<? extends CLBase>>();
+
+  static
+  {
+    TOOLS.put("dstool", DSTool.class);
+    TOOLS.put("genzone", GenZone.class);
+    TOOLS.put("keygen", KeyGen.class);
+    TOOLS.put("keyinfo", KeyInfoTool.class);
+    TOOLS.put("signkeyset", SignKeyset.class);
+    TOOLS.put("signrrset", SignRRset.class);
+    TOOLS.put("signzone", SignZone.class);
+    TOOLS.put("verifyzone", VerifyZone.class);
+    TOOLS.put("zoneformat", ZoneFormat.class);
+  }
+
+  /**
+   * This is a small inner class used to hold all of the command line option
+   * state.
+   */
+  protected static class CLIState extends CLIStateBase
+  {
+    public String  script      = "-";
+    public boolean parallel    = false;
+    public boolean stopOnError = false;
+    public int     threads     = Runtime.getRuntime().availableProcessors();
+
+    public CLIState()
+    {
+      super("jdnssec-batch [..options..] [script_file]");
+    }
+
+    protected void setupOptions(Options opts)
+    {
+      opts.addOption("p", "parallel", false, "run every line in the background, as if it "
+          + "ended with '&'.");
+      opts.addOption("e", "stop-on-error", false, "stop at the first line that fails.");
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("threads");
+      OptionBuilder.withArgName("n");
+      OptionBuilder.withDescription("run up to this many background lines at once (default "
+          + "is the number of processors).");
+      opts.addOption(OptionBuilder.create());
+    }
+
+    protected void processOptions(CommandLine cli)
+    {
+      String optstr = null;
+
+      if (cli.hasOption('p')) parallel = true;
+      if (cli.hasOption('e')) stopOnError = true;
+
+      if ((optstr = cli.getOptionValue("threads")) != null)
+      {
+        threads = Math.max(1, parseInt(optstr, threads));
+      }
+
+      String[] files = cli.getArgs();
+      if (files.length > 1)
+      {
+        System.err.println("error: only one script file may be given");
+        usage();
+      }
+      if (files.length == 1) script = files[0];
+    }
+  }
+
+  /**
+   * Sends each thread's output to that thread's buffer, if it has one, and
+   * otherwise to the real output stream.
+   */
+  private static class SplitOutputStream extends OutputStream
+  {
+    private OutputStream                           mOut;
+    private ThreadLocal<ByteArrayOutputStream>     mBuffer = new ThreadLocal<ByteArrayOutputStream>();
+
+    public SplitOutputStream(OutputStream out)
+    {
+      mOut = out;
+    }
+
+    /** Start buffering this thread's output. */
+    public void capture()
+    {
+      mBuffer.set(new ByteArrayOutputStream());
+    }
+
+    /** @return the thread's buffered output, and stop buffering it. */
+    public byte[] release()
+    {
+      ByteArrayOutputStream buf = mBuffer.get();
+      mBuffer.remove();
+      return buf != null ? buf.toByteArray() : new byte[0];
+    }
+
+    private OutputStream target()
+    {
+      ByteArrayOutputStream buf = mBuffer.get();
+      return buf != null ? buf : mOut;
+    }
+
+    public void write(int b) throws IOException
+    {
+      target().write(b);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      target().write(b, off, len);
+    }
+
+    public void flush() throws IOException
+    {
+      target().flush();
+    }
+  }
+
+  /**
+   * Writes log records to a (split) output stream, flushing after each one so
+   * that a background line's records land in that line's buffer.
+   */
+  private static class SplitLogHandler extends StreamHandler
+  {
+    public SplitLogHandler(OutputStream out, Formatter formatter)
+    {
+      super(out, formatter);
+    }
+
+    public synchronized void publish(LogRecord record)
+    {
+      super.publish(record);
+      flush();
+    }
+  }
+
+  /** One line of the script. */
+  private static class Line
+  {
+    public String   where;
+    public String   tool;
+    public String[] args;
+
+    public Line(String where, String tool, String[] args)
+    {
+      this.where = where;
+      this.tool = tool;
+      this.args = args;
+    }
+  }
+
+  private SplitOutputStream mOut;
+  private SplitOutputStream mErr;
+  private PrintStream       mRealOut;
+  private PrintStream       mRealErr;
+  private Handler[]         mRealHandlers;
+  private Handler           mLogHandler;
+
+  /**
+   * @return the tool with this name (with or without the "jdnssec-" prefix),
+   *         or null if there isn't one.
+   */
+  private static CLBase findTool(String name) throws Exception
+  {
+    if (name.startsWith("jdnssec-")) name = name.substring("jdnssec-".length());
+    Class<? extends CLBase> c = TOOLS.get(name);
+    if (c == null) return null;
+    return c.getDeclaredConstructor().newInstance();
+  }
+
+  /**
+   * Run one line of the script.
+   *
+   * @return the line's exit status.
+   */
+  private int runLine(CLBase tool, CLIStateBase toolState, Line line)
+  {
+    log.fine(line.where + ": running " + line.tool + " " + Arrays.toString(line.args));
+    int status = tool.run(toolState, line.args);
+    if (status != 0)
+    {
+      System.err.println(line.where + ": " + line.tool + " failed with status " + status);
+    }
+    return status;
+  }
+
+  /**
+   * Run a line in the background, holding its output until it is done.
+   */
+  private Future<Integer> startLine(ExecutorService pool, final CLBase tool,
+                                    final CLIStateBase toolState, final Line line)
+  {
+    return pool.submit(new Callable<Integer>()
+    {
+      public Integer call()
+      {
+        mOut.capture();
+        mErr.capture();
+        int status = 1;
+        try
+        {
+          status = runLine(tool, toolState, line);
+        }
+        catch (RuntimeException e)
+        {
+          e.printStackTrace();
+        }
+        finally
+        {
+          byte[] out = mOut.release();
+          byte[] err = mErr.release();
+          synchronized (BatchRunner.this)
+          {
+            mRealOut.write(out, 0, out.length);
+            mRealOut.flush();
+            mRealErr.write(err, 0, err.length);
+            mRealErr.flush();
+          }
+        }
+        return status;
+      }
+    });
+  }
+
+  /**
+   * Replace the root logger's handlers, which write to the real stderr, with
+   * one that writes to the split one.
+   */
+  private void redirectLogging()
+  {
+    Logger rootLogger = Logger.getLogger("");
+    mRealHandlers = rootLogger.getHandlers();
+
+    Formatter formatter = new BareLogFormatter();
+    Level level = rootLogger.getLevel();
+    if (mRealHandlers.length > 0)
+    {
+      if (mRealHandlers[0].getFormatter() != null) formatter = mRealHandlers[0].getFormatter();
+      level = mRealHandlers[0].getLevel();
+    }
+
+    mLogHandler = new SplitLogHandler(mErr, formatter);
+    mLogHandler.setLevel(level);
+    for (Handler h : mRealHandlers)
+    {
+      rootLogger.removeHandler(h);
+    }
+    rootLogger.addHandler(mLogHandler);
+  }
+
+  /** Put the root logger's original handlers back. */
+  private void restoreLogging()
+  {
+    Logger rootLogger = Logger.getLogger("");
+    rootLogger.removeHandler(mLogHandler);
+    mLogHandler.flush();
+    for (Handler h : mRealHandlers)
+    {
+      rootLogger.addHandler(h);
+    }
+  }
+
+  /**
+   * Wait for the background lines.
+   *
+   * @return the number of them that failed.
+   */
+  private int waitFor(List<Future<Integer>> background) throws Exception
+  {
+    int failed = 0;
+    for (Future<Integer> f : background)
+    {
+      if (f.get() != 0) failed++;
+    }
+    background.clear();
+    return failed;
+  }
+
+  public void execute() throws Exception
+  {
+    mRealOut = System.out;
+    mRealErr = System.err;
+    mOut = new SplitOutputStream(mRealOut);
+    mErr = new SplitOutputStream(mRealErr);
+    System.setOut(new PrintStream(mOut, true));
+    System.setErr(new PrintStream(mErr, true));
+    redirectLogging();
+
+    BufferedReader in = null;
+    if (state.script.equals("-"))
+    {
+      in = new BufferedReader(new InputStreamReader(System.in));
+    }
+    else
+    {
+      in = new BufferedReader(new FileReader(state.script));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(state.threads);
+    List<Future<Integer>> background = new ArrayList<Future<Integer>>();
+    int lines = 0;
+    int failed = 0;
+    long t0 = System.currentTimeMillis();
+    try
+    {
+      String text;
+      int lineno = 0;
+      while ((text = in.readLine()) != null)
+      {
+        lineno++;
+        text = text.trim();
+        if (text.length() == 0 || text.startsWith("#")) continue;
+
+        String where = state.script + ":" + lineno;
+        boolean inBackground = state.parallel;
+        if (text.endsWith("&"))
+        {
+          inBackground = true;
+          text = text.substring(0, text.length() - 1);
+        }
+
+        String[] words = splitArgs(text);
+        if (words.length == 0) continue;
+
+        if (words[0].equals("wait"))
+        {
+          failed += waitFor(background);
+        }
+        else
+        {
+          lines++;
+          CLBase tool = findTool(words[0]);
+          if (tool == null)
+          {
+            System.err.println(where + ": unknown tool " + words[0]);
+            failed++;
+          }
+          else
+          {
+            Line line = new Line(where, words[0], Arrays.copyOfRange(words, 1, words.length));
+            // Set up the command line state here: the option builder isn't
+            // thread-safe.
+            CLIStateBase toolState = tool.createState();
+            toolState.setStandalone(false);
+
+            if (inBackground)
+            {
+              background.add(startLine(pool, tool, toolState, line));
+            }
+            else if (runLine(tool, toolState, line) != 0)
+            {
+              failed++;
+            }
+          }
+        }
+
+        if (failed > 0 && state.stopOnError) break;
+      }
+      failed += waitFor(background);
+    }
+    finally
+    {
+      in.close();
+      pool.shutdown();
+      restoreLogging();
+      System.setOut(mRealOut);
+      System.setErr(mRealErr);
+    }
+
+    log.info("ran " + lines + " commands (" + failed + " failed) in "
+        + (System.currentTimeMillis() - t0) + "ms");
+    if (failed > 0) exitStatus = 1;
+  }
+
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
+  public static void main(String[] args)
+  {
+    BatchRunner tool = new BatchRunner();
+
+    System.exit(tool.run(args));
+  }
+}
@@ -2,7 +2,9 @@ package com.verisignlabs.dnssec.cl;
 
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
@@ -25,13 +27,19 @@ import com.verisignlabs.dnssec.security.DnsKeyAlgorithm;
 /**
  * This is a base class for jdnssec command line tools. Each command line tool
  * should inherit from this class, create a subclass of CLIStateBase (overriding
- * setupOptions and processOptions), and implement the execute() method.
- * Subclasses also have their own main() methods, which should just create the
- * subclass variant of the CLIState and call run().
+ * setupOptions and processOptions), and implement the createState() and
+ * execute() methods. Subclasses also have their own main() methods, which
+ * should just call run() and exit with the status it returns.
+ *
+ * Tools don't exit the JVM themselves, so several may be run in one process
+ * (see {@link BatchRunner}).
  */
 public abstract class CLBase
 {
-  protected static Logger log;
+  protected Logger        log        = Logger.getLogger(this.getClass().toString());
+
+  /** The exit status, for tools that report failure without an exception. */
+  protected int           exitStatus = 0;
 
   /**
    * This is a very simple log formatter that simply outputs the log level and
@@ -54,6 +62,20 @@ public abstract class CLBase
     }
   }
 
+  /**
+   * Thrown by {@link CLIStateBase#usage()} instead of exiting, when the tool is
+   * not running on its own (signing the zones of a manifest, say).
+   */
+  public static class UsageException extends RuntimeException
+  {
+    private static final long serialVersionUID = 1L;
+
+    public UsageException(String message)
+    {
+      super(message);
+    }
+  }
+
   /**
    * This is a base class for command line parsing state. Subclasses should
    * override setupOptions and processOptions.
@@ -62,6 +84,11 @@ public abstract class CLBase
   {
     protected Options opts;
     protected String  usageStr;
+    protected boolean exitOnError = true;
+    protected boolean standalone  = true;
+
+    /** The arguments this state was parsed from. */
+    public String[]   args;
 
     /**
      * The base constructor. This will setup the command line options.
@@ -128,11 +155,37 @@ public abstract class CLBase
      */
     public void parseCommandLine(String args[]) throws ParseException
     {
+      this.args = args;
       CommandLineParser cli_parser = new PosixParser();
       CommandLine cli = cli_parser.parse(opts, args);
 
       if (cli.hasOption('h')) usage();
 
+      if (standalone)
+      {
+        configureProcess(cli);
+      }
+      else if (cli.hasOption('v') || cli.hasOption('m'))
+      {
+        System.err.println("warning: -v and -m affect the whole process, so they are "
+            + "ignored here; give them to the enclosing command instead");
+      }
+
+      String[] optstrs = null;
+      if ((optstrs = cli.getOptionValues('A')) != null)
+      {
+        for (int i = 0; i < optstrs.length; i++)
+        {
+          addArgAlias(optstrs[i]);
+        }
+      }
+
+      processOptions(cli);
+    }
+
+    /** Apply the process-wide options: logging verbosity and multiline output. */
+    private void configureProcess(CommandLine cli)
+    {
       Logger rootLogger = Logger.getLogger("");
       int value = parseInt(cli.getOptionValue('v'), -1);
 
@@ -172,17 +225,6 @@ public abstract class CLBase
       {
         org.xbill.DNS.Options.set("multiline");
       }
-
-      String[] optstrs = null;
-      if ((optstrs = cli.getOptionValues('A')) != null)
-      {
-        for (int i = 0; i < optstrs.length; i++)
-        {
-          addArgAlias(optstrs[i]);
-        }
-      }
-
-      processOptions(cli);
     }
 
     /**
@@ -198,8 +240,35 @@ public abstract class CLBase
       // Subclasses generally override this.
     }
 
+    /**
+     * If set to false, command line errors throw a {@link UsageException}
+     * rather than printing the usage statement and exiting.
+     */
+    public void setExitOnError(boolean exitOnError)
+    {
+      this.exitOnError = exitOnError;
+    }
+
+    /**
+     * If set to false, the tool is running inside a larger process, so the
+     * process-wide options (-v and -m) are ignored, with a warning.
+     */
+    public void setStandalone(boolean standalone)
+    {
+      this.standalone = standalone;
+    }
+
     /** Print out the usage and help statements, then quit. */
     public void usage()
+    {
+      if (!exitOnError) throw new UsageException("usage: " + usageStr);
+
+      printUsage();
+      System.exit(64);
+    }
+
+    /** Print out the usage and help statements. */
+    public void printUsage()
     {
       HelpFormatter f = new HelpFormatter();
 
@@ -210,8 +279,6 @@ public abstract class CLBase
                   HelpFormatter.DEFAULT_DESC_PAD, null);
 
       out.flush();
-      System.exit(64);
-
     }
 
     protected void addArgAlias(String s)
@@ -234,6 +301,43 @@ public abstract class CLBase
     }
   }
 
+  /**
+   * Split a line into arguments, the way a (simple) shell would: on
+   * whitespace, except inside single or double quotes.
+   */
+  public static String[] splitArgs(String line)
+  {
+    List<String> res = new ArrayList<String>();
+    StringBuilder arg = null;
+    char quote = 0;
+    for (int i = 0; i < line.length(); i++)
+    {
+      char c = line.charAt(i);
+      if (quote != 0)
+      {
+        if (c == quote) quote = 0;
+        else arg.append(c);
+      }
+      else if (c == '"' || c == '\'')
+      {
+        if (arg == null) arg = new StringBuilder();
+        quote = c;
+      }
+      else if (Character.isWhitespace(c))
+      {
+        if (arg != null) res.add(arg.toString());
+        arg = null;
+      }
+      else
+      {
+        if (arg == null) arg = new StringBuilder();
+        arg.append(c);
+      }
+    }
+    if (arg != null) res.add(arg.toString());
+    return res.toArray(new String[res.size()]);
+  }
+
   public static int parseInt(String s, int def)
   {
     try
@@ -285,41 +389,80 @@ public abstract class CLBase
     }
   }
 
+  /**
+   * Create the tool's command line state (and keep it, for execute()).
+   */
+  protected abstract CLIStateBase createState();
+
   public abstract void execute() throws Exception;
 
-  public void run(CLIStateBase state, String[] args)
+  /**
+   * Run the tool with a fresh command line state.
+   * 
+   * @return the exit status: 0 for success, 64 for a command line error and
+   *         non-zero for any other failure.
+   */
+  public int run(String[] args)
+  {
+    return run(createState(), args);
+  }
+
+  /**
+   * Parse the command line and run the tool. Command line errors print the
+   * usage statement, but don't exit.
+   * 
+   * @return the exit status: 0 for success, 64 for a command line error and
+   *         non-zero for any other failure.
+   */
+  public int run(CLIStateBase state, String[] args)
   {
+    state.setExitOnError(false);
+    exitStatus = 0;
+
     try
     {
       state.parseCommandLine(args);
     }
+    catch (UsageException e)
+    {
+      state.printUsage();
+      return 64;
+    }
     catch (UnrecognizedOptionException e)
     {
       System.err.println("error: unknown option encountered: " + e.getMessage());
-      state.usage();
+      state.printUsage();
+      return 64;
     }
     catch (AlreadySelectedException e)
     {
       System.err.println("error: mutually exclusive options have "
           + "been selected:\n     " + e.getMessage());
-      state.usage();
+      state.printUsage();
+      return 64;
     }
     catch (Exception e)
     {
       System.err.println("error: unknown command line parsing exception:");
       e.printStackTrace();
-      state.usage();
+      state.printUsage();
+      return 64;
     }
 
-    log = Logger.getLogger(this.getClass().toString());
-
     try
     {
       execute();
     }
+    catch (UsageException e)
+    {
+      state.printUsage();
+      return 64;
+    }
     catch (Exception e)
     {
       e.printStackTrace();
+      return 1;
     }
+    return exitStatus;
   }
 }
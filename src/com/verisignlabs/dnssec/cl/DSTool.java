@@ -17,19 +17,31 @@
 
 package com.verisignlabs.dnssec.cl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.cli.*;
 import org.xbill.DNS.DLVRecord;
 import org.xbill.DNS.DNSKEYRecord;
 import org.xbill.DNS.DSRecord;
+import org.xbill.DNS.Master;
 import org.xbill.DNS.Record;
+import org.xbill.DNS.RelativeNameException;
+import org.xbill.DNS.Type;
 
 import com.verisignlabs.dnssec.security.*;
 
 /**
- * This class forms the command line implementation of a DNSSEC DS/DLV generator
+ * This class forms the command line implementation of a DNSSEC DS/DLV
+ * generator. It will generate DS records for any number of keys, read from key
+ * files or from a stream of DNSKEY records, for one or more digest types.
  * 
  * @author David Blacka
  */
@@ -43,14 +55,17 @@ public class DSTool extends CLBase
    */
   protected static class CLIState extends CLIStateBase
   {
-    public boolean createDLV  = false;
-    public String  outputfile = null;
-    public String  keyname    = null;
-    public int     digest_id  = DSRecord.SHA1_DIGEST_ID;
+    public boolean  createDLV   = false;
+    public String   outputfile  = null;
+    public String[] keynames    = null;
+    public String   dnskeyfile  = null;
+    public long     dnskeyTTL   = 86400;
+    public int[]    digest_ids  = { DSRecord.SHA1_DIGEST_ID };
+    public int      threads     = Runtime.getRuntime().availableProcessors();
 
     public CLIState()
     {
-      super("jdnssec-dstool [..options..] keyfile");
+      super("jdnssec-dstool [..options..] keyfile [keyfile ...]");
     }
 
     /**
@@ -67,8 +82,36 @@ public class DSTool extends CLBase
       OptionBuilder.hasArg();
       OptionBuilder.withLongOpt("digest");
       OptionBuilder.withArgName("id");
-      OptionBuilder.withDescription("The Digest ID to use (numerically): either 1 for SHA1 or 2 for SHA256");
+      OptionBuilder.withDescription("The Digest ID to use (numerically): either 1 for SHA1 or 2 for SHA256. "
+          + "May be repeated, or given as a comma separated list, to generate several DS records per key.");
       opts.addOption(OptionBuilder.create('d'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("output-file");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("Write the records to this file instead of stdout.");
+      opts.addOption(OptionBuilder.create('f'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("dnskey-file");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("Read DNSKEY records from this file (or '-' for stdin), "
+          + "in addition to any key files. Owner names must be absolute.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("ttl");
+      OptionBuilder.withArgName("ttl");
+      OptionBuilder.withDescription("The TTL of DNSKEY records in the --dnskey-file that don't "
+          + "give one (default 86400).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("threads");
+      OptionBuilder.withArgName("n");
+      OptionBuilder.withDescription("compute digests using up to this many threads (default is "
+          + "the number of processors).");
+      opts.addOption(OptionBuilder.create());
     }
 
     protected void processOptions(CommandLine cli)
@@ -76,61 +119,160 @@ public class DSTool extends CLBase
     {
       outputfile = cli.getOptionValue('f');
       createDLV = cli.hasOption("dlv");
-      String optstr = cli.getOptionValue('d');
-      if (optstr != null) digest_id = parseInt(optstr, digest_id);
+      dnskeyfile = cli.getOptionValue("dnskey-file");
+
+      String[] optstrs = cli.getOptionValues('d');
+      if (optstrs != null)
+      {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (String optstr : optstrs)
+        {
+          for (String id : optstr.split(","))
+          {
+            int digest_id = parseInt(id.trim(), -1);
+            if (digest_id < 0)
+            {
+              System.err.println("error: bad digest id: " + id);
+              usage();
+            }
+            if (!ids.contains(digest_id)) ids.add(digest_id);
+          }
+        }
+        digest_ids = new int[ids.size()];
+        for (int i = 0; i < digest_ids.length; i++)
+        {
+          digest_ids[i] = ids.get(i);
+        }
+      }
+
+      String optstr = cli.getOptionValue("threads");
+      if (optstr != null) threads = Math.max(1, parseInt(optstr, threads));
+
+      if ((optstr = cli.getOptionValue("ttl")) != null)
+      {
+        dnskeyTTL = parseInt(optstr, -1);
+        if (dnskeyTTL < 0)
+        {
+          System.err.println("error: invalid TTL: " + optstr);
+          usage();
+        }
+      }
 
       String[] cl_args = cli.getArgs();
 
-      if (cl_args.length < 1)
+      if (cl_args.length < 1 && dnskeyfile == null)
       {
         System.err.println("error: missing key file ");
         usage();
       }
 
-      keyname = cl_args[0];
+      keynames = cl_args;
     }
 
   }
 
   public void execute() throws Exception
   {
-    DnsKeyPair key = BINDKeyUtils.loadKey(state.keyname, null);
-    DNSKEYRecord dnskey = key.getDNSKEYRecord();
+    List<DNSKEYRecord> dnskeys = new ArrayList<DNSKEYRecord>();
 
-    if ((dnskey.getFlags() & DNSKEYRecord.Flags.SEP_KEY) == 0)
+    for (String keyname : state.keynames)
     {
-      log.warning("DNSKEY is not an SEP-flagged key.");
-    }
+      DnsKeyPair key = BINDKeyUtils.loadKey(keyname, null);
+      DNSKEYRecord dnskey = key.getDNSKEYRecord();
 
-    DSRecord ds = SignUtils.calculateDSRecord(dnskey, state.digest_id, dnskey.getTTL());
-    Record res = ds;
+      if ((dnskey.getFlags() & DNSKEYRecord.Flags.SEP_KEY) == 0)
+      {
+        log.warning("DNSKEY " + (state.keynames.length > 1 ? keyname + " " : "")
+            + "is not an SEP-flagged key.");
+      }
+      dnskeys.add(dnskey);
+    }
 
-    if (state.createDLV)
+    if (state.dnskeyfile != null)
     {
-      log.fine("creating DLV.");
-      DLVRecord dlv = new DLVRecord(ds.getName(), ds.getDClass(), ds.getTTL(),
-                                    ds.getFootprint(), ds.getAlgorithm(),
-                                    ds.getDigestID(), ds.getDigest());
-      res = dlv;
+      // Like key files, DNSKEY streams may leave out the TTL.
+      InputStream in = state.dnskeyfile.equals("-") ? System.in
+                                                    : new FileInputStream(state.dnskeyfile);
+      try
+      {
+        Master m = new Master(new BufferedInputStream(in), null, state.dnskeyTTL);
+        Record r;
+        while ((r = m.nextRecord()) != null)
+        {
+          if (r.getType() != Type.DNSKEY) continue;
+          DNSKEYRecord dnskey = (DNSKEYRecord) r;
+          if ((dnskey.getFlags() & DNSKEYRecord.Flags.SEP_KEY) == 0)
+          {
+            log.fine("DNSKEY " + dnskey.getName() + "/" + dnskey.getFootprint()
+                + " is not an SEP-flagged key.");
+          }
+          dnskeys.add(dnskey);
+        }
+      }
+      catch (RelativeNameException e)
+      {
+        System.err.println("error: " + state.dnskeyfile + ": owner names must be absolute: "
+            + e.getMessage());
+        exitStatus = 1;
+        return;
+      }
+      finally
+      {
+        if (in != System.in) in.close();
+      }
     }
 
+    List<DSRecord> dss = SignUtils.calculateDSRecords(dnskeys, state.digest_ids, 0,
+                                                      state.threads);
+
+    PrintWriter out;
     if (state.outputfile != null)
     {
-      PrintWriter out = new PrintWriter(new FileWriter(state.outputfile));
-      out.println(res);
-      out.close();
+      out = new PrintWriter(new BufferedWriter(new FileWriter(state.outputfile)));
     }
     else
     {
-      System.out.println(res);
+      out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+    }
+
+    try
+    {
+      for (DSRecord ds : dss)
+      {
+        Record res = ds;
+
+        if (state.createDLV)
+        {
+          res = new DLVRecord(ds.getName(), ds.getDClass(), ds.getTTL(),
+                              ds.getFootprint(), ds.getAlgorithm(),
+                              ds.getDigestID(), ds.getDigest());
+        }
+        out.println(res);
+      }
+    }
+    finally
+    {
+      if (state.outputfile != null)
+      {
+        out.close();
+      }
+      else
+      {
+        out.flush();
+      }
     }
   }
 
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
   public static void main(String[] args)
   {
     DSTool tool = new DSTool();
-    tool.state = new CLIState();
 
-    tool.run(tool.state, args);
+    System.exit(tool.run(args));
   }
 }
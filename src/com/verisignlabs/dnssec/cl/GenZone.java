@@ -0,0 +1,580 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.cl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.DNAMERecord;
+import org.xbill.DNS.DNSSEC;
+import org.xbill.DNS.DSRecord;
+import org.xbill.DNS.MXRecord;
+import org.xbill.DNS.NSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.TXTRecord;
+import org.xbill.DNS.TextParseException;
+
+import com.verisignlabs.dnssec.security.ZoneUtils;
+import com.verisignlabs.dnssec.security.ZoneWriter;
+
+/**
+ * This class forms the command line implementation of a synthetic zone
+ * generator. It writes zones of any size, with a given mix of delegations
+ * (secure or not, with or without glue), empty non-terminals, wildcards and
+ * DNAMEs, for testing the signer and verifier at scale. The same options and
+ * seed always give the same zone.
+ *
+ * The records are not written in canonical order. Text output is streamed,
+ * so zones of any size can be generated in a small heap; the binary formats
+ * are written from a complete list.
+ */
+public class GenZone extends CLBase
+{
+  private static final String EXTERNAL_DOMAIN = "example.net.";
+
+  private CLIState state;
+
+  /**
+   * This is a small inner class used to hold all of the command line option
+   * state.
+   */
+  protected static class CLIState extends CLIStateBase
+  {
+    public Name   zonename         = null;
+    public String outputfile       = null;
+    public int    outputFormat     = -1;
+    public long   records          = 10000;
+    public long   seed             = 1;
+    public long   ttl              = 3600;
+    public double delegationRatio  = 0.2;
+    public double dsRatio          = 0.3;
+    public double glueRatio        = 0.1;
+    public int    entDepth         = 0;
+    public double wildcardRatio    = 0.0;
+    public double dnameRatio       = 0.0;
+    public int[]  rrsetSizes       = { 1, 2, 4, 16 };
+    public int[]  rrsetWeights     = { 70, 20, 8, 2 };
+
+    public CLIState()
+    {
+      super("jdnssec-genzone [..options..] zonename");
+    }
+
+    protected void setupOptions(Options opts)
+    {
+      OptionBuilder.hasArg();
+      OptionBuilder.withArgName("outfile");
+      OptionBuilder.withDescription("file the zone is written to (default is stdout).");
+      opts.addOption(OptionBuilder.create('f'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("output-format");
+      OptionBuilder.withArgName("format");
+      OptionBuilder.withDescription("write the zone as 'text', 'raw' (BIND raw format), or "
+          + "'snapshot'. The binary formats are built in memory.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("records");
+      OptionBuilder.withArgName("count");
+      OptionBuilder.withDescription("generate about this many records; may end in 'k' or 'M' "
+          + "(default 10000).");
+      opts.addOption(OptionBuilder.create('n'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("seed");
+      OptionBuilder.withArgName("n");
+      OptionBuilder.withDescription("the random seed (default 1).");
+      opts.addOption(OptionBuilder.create('s'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("ttl");
+      OptionBuilder.withArgName("ttl");
+      OptionBuilder.withDescription("the TTL of the records (default 3600).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("delegations");
+      OptionBuilder.withArgName("ratio");
+      OptionBuilder.withDescription("the fraction of names that are delegations (default 0.2).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("ds");
+      OptionBuilder.withArgName("ratio");
+      OptionBuilder.withDescription("the fraction of delegations that have a DS record (default "
+          + "0.3).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("glue");
+      OptionBuilder.withArgName("ratio");
+      OptionBuilder.withDescription("the fraction of delegations whose name servers are below "
+          + "the delegation, with glue (default 0.1).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("ent-depth");
+      OptionBuilder.withArgName("depth");
+      OptionBuilder.withDescription("put names under up to this many empty non-terminals "
+          + "(default 0).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("wildcards");
+      OptionBuilder.withArgName("ratio");
+      OptionBuilder.withDescription("the fraction of names that are wildcards (default 0).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("dnames");
+      OptionBuilder.withArgName("ratio");
+      OptionBuilder.withDescription("the fraction of names that are DNAMEs (default 0).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("rrset-sizes");
+      OptionBuilder.withArgName("size:weight,...");
+      OptionBuilder.withDescription("the distribution of the number of records in each RRset "
+          + "(default 1:70,2:20,4:8,16:2).");
+      opts.addOption(OptionBuilder.create());
+    }
+
+    private double parseRatio(CommandLine cli, String opt, double def)
+    {
+      String optstr = cli.getOptionValue(opt);
+      if (optstr == null) return def;
+      try
+      {
+        double v = Double.parseDouble(optstr);
+        if (v >= 0.0 && v <= 1.0) return v;
+      }
+      catch (NumberFormatException e)
+      {
+        // fall through.
+      }
+      System.err.println("error: --" + opt + " must be between 0 and 1: " + optstr);
+      usage();
+      return def;
+    }
+
+    private long parseCount(String s)
+    {
+      long mult = 1;
+      if (s.endsWith("k") || s.endsWith("K"))
+      {
+        mult = 1000;
+      }
+      else if (s.endsWith("m") || s.endsWith("M"))
+      {
+        mult = 1000000;
+      }
+      if (mult > 1) s = s.substring(0, s.length() - 1);
+      try
+      {
+        return Long.parseLong(s) * mult;
+      }
+      catch (NumberFormatException e)
+      {
+        return -1;
+      }
+    }
+
+    protected void processOptions(CommandLine cli) throws ParseException
+    {
+      outputfile = cli.getOptionValue('f');
+
+      String optstr = null;
+      if ((optstr = cli.getOptionValue("output-format")) != null)
+      {
+        outputFormat = ZoneUtils.parseZoneFormat(optstr);
+        if (outputFormat < 0)
+        {
+          System.err.println("error: unknown output format: " + optstr);
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue('n')) != null)
+      {
+        records = parseCount(optstr);
+        if (records < 1)
+        {
+          System.err.println("error: bad record count: " + optstr);
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue('s')) != null)
+      {
+        try
+        {
+          seed = Long.parseLong(optstr);
+        }
+        catch (NumberFormatException e)
+        {
+          System.err.println("error: bad seed: " + optstr);
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue("ttl")) != null)
+      {
+        ttl = parseInt(optstr, -1);
+        if (ttl < 0)
+        {
+          System.err.println("error: bad TTL: " + optstr);
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue("ent-depth")) != null)
+      {
+        entDepth = parseInt(optstr, -1);
+        if (entDepth < 0)
+        {
+          System.err.println("error: bad ENT depth: " + optstr);
+          usage();
+        }
+      }
+
+      delegationRatio = parseRatio(cli, "delegations", delegationRatio);
+      dsRatio = parseRatio(cli, "ds", dsRatio);
+      glueRatio = parseRatio(cli, "glue", glueRatio);
+      wildcardRatio = parseRatio(cli, "wildcards", wildcardRatio);
+      dnameRatio = parseRatio(cli, "dnames", dnameRatio);
+      if (delegationRatio + wildcardRatio + dnameRatio > 1.0)
+      {
+        System.err.println("error: the delegation, wildcard and DNAME ratios add up to "
+            + "more than 1");
+        usage();
+      }
+
+      if ((optstr = cli.getOptionValue("rrset-sizes")) != null)
+      {
+        String[] parts = optstr.split(",");
+        rrsetSizes = new int[parts.length];
+        rrsetWeights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+        {
+          String[] sw = parts[i].trim().split(":");
+          rrsetSizes[i] = parseInt(sw[0], -1);
+          rrsetWeights[i] = sw.length > 1 ? parseInt(sw[1], -1) : 1;
+          if (sw.length > 2 || rrsetSizes[i] < 1 || rrsetWeights[i] < 0)
+          {
+            System.err.println("error: bad RRset size distribution: " + optstr);
+            usage();
+          }
+        }
+      }
+
+      String[] cl_args = cli.getArgs();
+      if (cl_args.length != 1)
+      {
+        System.err.println("error: missing zone name");
+        usage();
+      }
+
+      try
+      {
+        zonename = Name.fromString(cl_args[0], Name.root);
+      }
+      catch (TextParseException e)
+      {
+        System.err.println("error: bad zone name: " + cl_args[0]);
+        usage();
+      }
+    }
+  }
+
+  private Random       mRandom;
+  private int          mWeightTotal;
+  private Name[][]     mEntNames;
+  private long         mCount;
+  private long         mSerial;
+  private ZoneWriter   mWriter;
+  private List<Record> mRecords;
+
+  private void emit(Record r) throws IOException
+  {
+    mCount++;
+    if (mWriter != null)
+    {
+      mWriter.write(r);
+    }
+    else
+    {
+      mRecords.add(r);
+    }
+  }
+
+  /** @return an RRset size drawn from the distribution. */
+  private int rrsetSize()
+  {
+    int w = mRandom.nextInt(mWeightTotal);
+    for (int i = 0; i < state.rrsetWeights.length; i++)
+    {
+      w -= state.rrsetWeights[i];
+      if (w < 0) return state.rrsetSizes[i];
+    }
+    return 1;
+  }
+
+  /** @return a new unique IPv4 address. */
+  private InetAddress nextIPv4() throws UnknownHostException
+  {
+    long a = mSerial++;
+    byte[] b = { (byte) (10 + ((a >>> 24) & 0x3f)), (byte) (a >>> 16), (byte) (a >>> 8),
+        (byte) a };
+    return InetAddress.getByAddress(b);
+  }
+
+  /** @return a new unique IPv6 address. */
+  private InetAddress nextIPv6() throws UnknownHostException
+  {
+    long a = mSerial++;
+    byte[] b = new byte[16];
+    b[0] = 0x20;
+    b[1] = 0x01;
+    b[2] = 0x0d;
+    b[3] = (byte) 0xb8;
+    for (int i = 0; i < 8; i++)
+    {
+      b[15 - i] = (byte) (a >>> (8 * i));
+    }
+    return InetAddress.getByAddress(b);
+  }
+
+  /**
+   * @return the name a new node goes under: the zone apex, or a chain of
+   *         empty non-terminals below it. The ENTs are drawn from a pool, so
+   *         that several nodes share them.
+   */
+  private Name parentName()
+  {
+    if (state.entDepth == 0) return state.zonename;
+    int depth = mRandom.nextInt(state.entDepth + 1);
+    if (depth == 0) return state.zonename;
+    return mEntNames[depth - 1][mRandom.nextInt(mEntNames[depth - 1].length)];
+  }
+
+  private void buildEntNames(int poolSize) throws TextParseException
+  {
+    mEntNames = new Name[state.entDepth][];
+    for (int d = 0; d < state.entDepth; d++)
+    {
+      mEntNames[d] = new Name[poolSize];
+      for (int i = 0; i < poolSize; i++)
+      {
+        Name parent = d == 0 ? state.zonename
+                             : mEntNames[d - 1][mRandom.nextInt(poolSize)];
+        mEntNames[d][i] = Name.fromString("e" + i, parent);
+      }
+    }
+  }
+
+  private void generateApex() throws Exception
+  {
+    Name zone = state.zonename;
+    long ttl = state.ttl;
+    Name ns1 = Name.fromString("ns1", zone);
+    Name ns2 = Name.fromString("ns2", zone);
+
+    emit(new SOARecord(zone, DClass.IN, ttl, ns1, Name.fromString("hostmaster", zone), 1,
+                       3600, 900, 1209600, 300));
+    emit(new NSRecord(zone, DClass.IN, ttl, ns1));
+    emit(new NSRecord(zone, DClass.IN, ttl, ns2));
+    emit(new ARecord(ns1, DClass.IN, ttl, nextIPv4()));
+    emit(new ARecord(ns2, DClass.IN, ttl, nextIPv4()));
+  }
+
+  private void generateDelegation(Name name) throws Exception
+  {
+    long ttl = state.ttl;
+    if (mRandom.nextDouble() < state.glueRatio)
+    {
+      Name ns1 = Name.fromString("ns1", name);
+      Name ns2 = Name.fromString("ns2", name);
+      emit(new NSRecord(name, DClass.IN, ttl, ns1));
+      emit(new NSRecord(name, DClass.IN, ttl, ns2));
+      emit(new ARecord(ns1, DClass.IN, ttl, nextIPv4()));
+      emit(new ARecord(ns2, DClass.IN, ttl, nextIPv4()));
+    }
+    else
+    {
+      Name provider = Name.fromString("dns" + mRandom.nextInt(100) + "." + EXTERNAL_DOMAIN);
+      emit(new NSRecord(name, DClass.IN, ttl, Name.fromString("ns1", provider)));
+      emit(new NSRecord(name, DClass.IN, ttl, Name.fromString("ns2", provider)));
+    }
+
+    if (mRandom.nextDouble() < state.dsRatio)
+    {
+      byte[] digest = new byte[32];
+      mRandom.nextBytes(digest);
+      emit(new DSRecord(name, DClass.IN, ttl, mRandom.nextInt(65536),
+                        DNSSEC.Algorithm.ECDSAP256SHA256, DSRecord.SHA256_DIGEST_ID, digest));
+    }
+  }
+
+  private void generateHost(Name name) throws Exception
+  {
+    long ttl = state.ttl;
+
+    int n = rrsetSize();
+    for (int i = 0; i < n; i++)
+    {
+      emit(new ARecord(name, DClass.IN, ttl, nextIPv4()));
+    }
+
+    if (mRandom.nextInt(10) < 3)
+    {
+      n = rrsetSize();
+      for (int i = 0; i < n; i++)
+      {
+        emit(new AAAARecord(name, DClass.IN, ttl, nextIPv6()));
+      }
+    }
+
+    if (mRandom.nextInt(10) == 0)
+    {
+      n = rrsetSize();
+      for (int i = 0; i < n; i++)
+      {
+        emit(new TXTRecord(name, DClass.IN, ttl, "v=test" + (mSerial++)));
+      }
+    }
+
+    if (mRandom.nextInt(20) == 0)
+    {
+      n = rrsetSize();
+      for (int i = 0; i < n; i++)
+      {
+        emit(new MXRecord(name, DClass.IN, ttl, 10 * (i + 1),
+                          Name.fromString("mx" + i, state.zonename)));
+      }
+    }
+  }
+
+  private void generate() throws Exception
+  {
+    mRandom = new Random(state.seed);
+    mWeightTotal = 0;
+    for (int w : state.rrsetWeights)
+    {
+      mWeightTotal += w;
+    }
+    if (mWeightTotal == 0)
+    {
+      state.rrsetWeights = new int[] { 1 };
+      state.rrsetSizes = new int[] { 1 };
+      mWeightTotal = 1;
+    }
+    if (state.entDepth > 0)
+    {
+      buildEntNames((int) Math.min(100000, state.records / 64 + 1));
+    }
+
+    generateApex();
+
+    double delegations = state.delegationRatio;
+    double dnames = delegations + state.dnameRatio;
+    double wildcards = dnames + state.wildcardRatio;
+
+    for (long node = 0; mCount < state.records; node++)
+    {
+      Name parent = parentName();
+      double u = mRandom.nextDouble();
+      if (u < delegations)
+      {
+        generateDelegation(Name.fromString("d" + node, parent));
+      }
+      else if (u < dnames)
+      {
+        emit(new DNAMERecord(Name.fromString("x" + node, parent), DClass.IN, state.ttl,
+                             Name.fromString("t" + node + "." + EXTERNAL_DOMAIN)));
+      }
+      else if (u < wildcards)
+      {
+        // the wildcard's parent ("w<n>") is left as an ENT.
+        generateHost(Name.fromString("*.w" + node, parent));
+      }
+      else
+      {
+        generateHost(Name.fromString("h" + node, parent));
+      }
+    }
+  }
+
+  public void execute() throws Exception
+  {
+    int format = state.outputFormat;
+    if (format < 0) format = ZoneUtils.guessZoneFormat(state.outputfile);
+
+    long start = System.nanoTime();
+    if (format != ZoneUtils.FORMAT_TEXT)
+    {
+      mRecords = new ArrayList<Record>();
+      generate();
+      ZoneUtils.writeZoneFile(mRecords, state.outputfile, format);
+    }
+    else
+    {
+      WritableByteChannel out = ZoneUtils.openZoneOutput(state.outputfile);
+      try
+      {
+        mWriter = new ZoneWriter(out);
+        generate();
+        mWriter.flush();
+      }
+      finally
+      {
+        out.close();
+      }
+    }
+
+    double secs = (System.nanoTime() - start) / 1e9;
+    log.fine("generated " + mCount + " records in " + String.format("%.3f", secs) + "s");
+  }
+
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
+  public static void main(String[] args)
+  {
+    GenZone tool = new GenZone();
+
+    System.exit(tool.run(args));
+  }
+}
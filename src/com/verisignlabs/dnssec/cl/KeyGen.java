@@ -17,12 +17,25 @@
 
 package com.verisignlabs.dnssec.cl;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.*;
 import org.xbill.DNS.DClass;
 import org.xbill.DNS.DNSKEYRecord;
 import org.xbill.DNS.Name;
+import org.xbill.DNS.TextParseException;
 
 import com.verisignlabs.dnssec.security.*;
 
@@ -41,19 +54,22 @@ public class KeyGen extends CLBase
    */
   protected static class CLIState extends CLIStateBase 
   {
-    public int      algorithm  = 8;
-    public int      keylength  = 1024;
-    public boolean  useLargeE  = true;
-    public String   outputfile = null;
-    public File     keydir     = null;
-    public boolean  zoneKey    = true;
-    public boolean  kskFlag    = false;
-    public String   owner      = null;
-    public long     ttl        = 86400;
+    public int          algorithm  = 8;
+    public int          keylength  = 1024;
+    public boolean      useLargeE  = true;
+    public String       outputfile = null;
+    public File         keydir     = null;
+    public boolean      zoneKey    = true;
+    public boolean      kskFlag    = false;
+    public String       owner      = null;
+    public List<String> owners     = new ArrayList<String>();
+    public int          count      = 1;
+    public int          threads    = Runtime.getRuntime().availableProcessors();
+    public long         ttl        = 86400;
 
     public CLIState()
     {
-      super("jdnssec-keygen [..options..] name");
+      super("jdnssec-keygen [..options..] name [name ...]");
     }
 
     /**
@@ -99,6 +115,26 @@ public class KeyGen extends CLBase
       OptionBuilder.withArgName("dir");
       OptionBuilder.withDescription("place generated key files in this " + "directory");
       opts.addOption(OptionBuilder.create('d'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("owner-file");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("also generate keys for the names in this file "
+          + "(one per line).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("count");
+      OptionBuilder.withArgName("n");
+      OptionBuilder.withDescription("generate this many keys for each name (default 1).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("threads");
+      OptionBuilder.withArgName("n");
+      OptionBuilder.withDescription("generate keys using this many threads (default is the "
+          + "number of processors).");
+      opts.addOption(OptionBuilder.create());
     }
 
     protected void processOptions(CommandLine cli)
@@ -153,15 +189,80 @@ public class KeyGen extends CLBase
         ttl = parseInt(optstr, 86400);
       }
 
+      if ((optstr = cli.getOptionValue("count")) != null)
+      {
+        count = parseInt(optstr, -1);
+        if (count < 1)
+        {
+          System.err.println("error: invalid key count: " + optstr);
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue("threads")) != null)
+      {
+        threads = parseInt(optstr, -1);
+        if (threads < 1)
+        {
+          System.err.println("error: invalid number of threads: " + optstr);
+          usage();
+        }
+      }
+
       String[] cl_args = cli.getArgs();
+      for (int i = 0; i < cl_args.length; i++)
+      {
+        owners.add(cl_args[i]);
+      }
 
-      if (cl_args.length < 1)
+      if ((optstr = cli.getOptionValue("owner-file")) != null)
+      {
+        try
+        {
+          owners.addAll(readOwnerFile(optstr));
+        }
+        catch (IOException e)
+        {
+          System.err.println("error: unable to read " + optstr + ": " + e.getMessage());
+          usage();
+        }
+      }
+
+      if (owners.size() < 1)
       {
         System.err.println("error: missing key owner name");
         usage();
       }
 
-      owner = cl_args[0];
+      owner = owners.get(0);
+
+      if (outputfile != null && (owners.size() > 1 || count > 1))
+      {
+        System.err.println("error: an output file can only be used for a single key");
+        usage();
+      }
+    }
+
+    /** Read a list of names, one per line, ignoring blank lines and comments. */
+    private static List<String> readOwnerFile(String filename) throws IOException
+    {
+      List<String> res = new ArrayList<String>();
+      BufferedReader in = new BufferedReader(new FileReader(filename));
+      try
+      {
+        String line = null;
+        while ((line = in.readLine()) != null)
+        {
+          line = line.trim();
+          if (line.length() == 0 || line.startsWith(";") || line.startsWith("#")) continue;
+          res.add(line);
+        }
+      }
+      finally
+      {
+        in.close();
+      }
+      return res;
     }
   }
 
@@ -180,23 +281,104 @@ public class KeyGen extends CLBase
     return algs.stringToAlgorithm(s);
   }
 
-  public void execute() throws Exception
+  /** @return the name, made absolute if necessary. */
+  private static Name parseOwner(String owner) throws TextParseException
   {
-    JCEDnsSecSigner signer = new JCEDnsSecSigner();
-
     // Minor hack to make the owner name absolute.
-    if (!state.owner.endsWith("."))
+    if (!owner.endsWith("."))
     {
-      state.owner = state.owner + ".";
+      owner = owner + ".";
     }
+    return Name.fromString(owner);
+  }
+
+  /**
+   * @return true if the key's files have been written already, either by this
+   *         run or earlier.
+   */
+  private boolean keyFilesExist(DnsKeyPair pair, Set<String> written)
+  {
+    String base = BINDKeyUtils.keyFileBase(pair);
+    return written.contains(base) || new File(state.keydir, base + ".key").exists()
+        || new File(state.keydir, base + ".private").exists();
+  }
 
-    Name owner_name = Name.fromString(state.owner);
+  /**
+   * Generate keys for many names (or many keys for one name) in parallel. Each
+   * thread has its own key pair generator. The key files are written, and
+   * their names printed, in the order the names were given.
+   */
+  private void generateKeys(final int flags) throws Exception
+  {
+    ExecutorService pool = Executors.newFixedThreadPool(state.threads);
+    try
+    {
+      List<Future<DnsKeyPair>> results = new ArrayList<Future<DnsKeyPair>>();
+      for (String owner : state.owners)
+      {
+        final Name owner_name = parseOwner(owner);
+        for (int i = 0; i < state.count; i++)
+        {
+          results.add(pool.submit(new Callable<DnsKeyPair>()
+          {
+            public DnsKeyPair call() throws Exception
+            {
+              JCEDnsSecSigner signer = new JCEDnsSecSigner();
+              return signer.generateKey(owner_name, state.ttl, DClass.IN, state.algorithm,
+                                        flags, state.keylength, state.useLargeE);
+            }
+          }));
+        }
+      }
+
+      // Key tags are only 16 bits, so with enough keys for one name two of
+      // them can share a file name. Generate another key in place of the
+      // later one rather than overwriting the earlier one's files.
+      Set<String> written = new HashSet<String>();
+      JCEDnsSecSigner signer = new JCEDnsSecSigner();
+      for (Future<DnsKeyPair> f : results)
+      {
+        DnsKeyPair pair = f.get();
+        while (keyFilesExist(pair, written))
+        {
+          log.fine("key files " + BINDKeyUtils.keyFileBase(pair)
+              + " already exist, generating another key");
+          pair = signer.generateKey(pair.getDNSKEYRecord().getName(), state.ttl, DClass.IN,
+                                    state.algorithm, flags, state.keylength,
+                                    state.useLargeE);
+        }
+        String base = BINDKeyUtils.keyFileBase(pair);
+        written.add(base);
+        BINDKeyUtils.writeKeyFiles(pair, state.keydir);
+        System.out.println(base);
+      }
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+  }
 
+  public void execute() throws Exception
+  {
     // Calculate our flags
     int flags = 0;
     if (state.zoneKey) flags |= DNSKEYRecord.Flags.ZONE_KEY;
     if (state.kskFlag) flags |= DNSKEYRecord.Flags.SEP_KEY;
 
+    if (state.owners.size() > 1 || state.count > 1)
+    {
+      log.fine("create " + state.owners.size() * state.count + " key pairs with (ttl = "
+          + state.ttl + ", alg = " + state.algorithm + ", flags = " + flags
+          + ", length = " + state.keylength + ") using " + state.threads + " threads");
+      generateKeys(flags);
+      return;
+    }
+
+    JCEDnsSecSigner signer = new JCEDnsSecSigner();
+
+    Name owner_name = parseOwner(state.owner);
+
     log.fine("create key pair with (name = " + owner_name + ", ttl = " + state.ttl
         + ", alg = " + state.algorithm + ", flags = " + flags + ", length = "
         + state.keylength + ")");
@@ -211,16 +393,28 @@ public class KeyGen extends CLBase
     }
     else
     {
+      // don't overwrite an existing key that happens to have the same tag.
+      Set<String> none = Collections.emptySet();
+      while (keyFilesExist(pair, none))
+      {
+        pair = signer.generateKey(owner_name, state.ttl, DClass.IN, state.algorithm, flags,
+                                  state.keylength, state.useLargeE);
+      }
       BINDKeyUtils.writeKeyFiles(pair, state.keydir);
       System.out.println(BINDKeyUtils.keyFileBase(pair));
     }
   }
 
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
   public static void main(String[] args)
   {
     KeyGen tool = new KeyGen();
-    tool.state = new CLIState();
 
-    tool.run(tool.state, args);
+    System.exit(tool.run(args));
   }
 }
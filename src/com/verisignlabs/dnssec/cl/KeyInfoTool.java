@@ -111,11 +111,16 @@ public class KeyInfoTool extends CLBase
     }
   }
 
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
   public static void main(String[] args)
   {
     KeyInfoTool tool = new KeyInfoTool();
-    tool.state = new CLIState();
 
-    tool.run(tool.state, args);
+    System.exit(tool.run(args));
   }
 }
@@ -0,0 +1,546 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.cl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.JMException;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+
+import com.verisignlabs.dnssec.security.DnsKeyAlgorithm;
+import com.verisignlabs.dnssec.security.DnsSecStats;
+import com.verisignlabs.dnssec.security.KeysetStore;
+import com.verisignlabs.dnssec.security.ResignScheduler;
+import com.verisignlabs.dnssec.security.ZoneFileReader;
+
+/**
+ * This class forms the command line implementation of a zone signing daemon.
+ * It watches directories of zone files, and signs each zone (the same way
+ * jdnssec-signzone does) into an output directory whenever it changes. With
+ * several zone directories, each one's zones go in a subdirectory of the
+ * output directory with the same name as the zone directory. Since the
+ * process stays up, the JVM, the algorithm setup and the parsed keys are
+ * reused from one signing to the next. Signed zones are written to a
+ * temporary file and then renamed into place, so readers never see a
+ * partially written zone.
+ *
+ * Zones are also re-signed, without any external scheduling, when their
+ * earliest signature is about to expire (see {@link ResignScheduler}).
+ */
+public class SignDaemon extends CLBase
+{
+  private CLIState state;
+
+  /**
+   * The signing options are those of jdnssec-signzone; this adds the daemon's
+   * own.
+   */
+  protected static class CLIState extends SignZone.CLIState
+  {
+    public List<File> zoneDirectories = new ArrayList<File>();
+    public File       outputDirectory = null;
+    public String     zoneSuffix      = null;
+    public long       settle          = 1000;
+    public long       refresh         = -1;
+    public long       retry           = 300000;
+    public boolean    once            = false;
+
+    public CLIState()
+    {
+      super("jdnssec-signd [..options..] -o output_dir zone_dir [zone_dir ...]");
+    }
+
+    protected void setupOptions(Options opts)
+    {
+      super.setupOptions(opts);
+
+      opts.addOption(null, "once", false,
+                     "sign the zones that are out of date or due to be re-signed, then exit "
+                         + "instead of watching.");
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withArgName("dir");
+      OptionBuilder.withLongOpt("output-dir");
+      OptionBuilder.withDescription("directory the signed zones are written to.");
+      opts.addOption(OptionBuilder.create('o'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withArgName("suffix");
+      OptionBuilder.withLongOpt("zone-suffix");
+      OptionBuilder.withDescription("only sign files with this suffix (which is replaced "
+          + "by '.signed' in the output).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withArgName("ms");
+      OptionBuilder.withLongOpt("settle");
+      OptionBuilder.withDescription("wait until a zone file has been unchanged this long "
+          + "before signing it (default 1000).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withArgName("seconds");
+      OptionBuilder.withLongOpt("refresh");
+      OptionBuilder.withDescription("re-sign zones this long before their earliest signature "
+          + "expires (default is a quarter of the signature validity period).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withArgName("seconds");
+      OptionBuilder.withLongOpt("retry");
+      OptionBuilder.withDescription("wait this long before trying to sign a zone again "
+          + "after a failure (default 300).");
+      opts.addOption(OptionBuilder.create());
+    }
+
+    protected void processOptions(CommandLine cli) throws ParseException
+    {
+      super.processOptions(cli);
+
+      String optstr = null;
+
+      if (cli.hasOption("once")) once = true;
+
+      if ((optstr = cli.getOptionValue('o')) == null)
+      {
+        System.err.println("error: missing output directory");
+        usage();
+      }
+      outputDirectory = new File(optstr);
+      if (!outputDirectory.isDirectory())
+      {
+        System.err.println("error: " + optstr + " is not a directory");
+        usage();
+      }
+      for (File dir : zoneDirectories)
+      {
+        if (dir.getAbsoluteFile().equals(outputDirectory.getAbsoluteFile()))
+        {
+          System.err.println("error: the output directory can't also be a zone directory");
+          usage();
+        }
+      }
+
+      zoneSuffix = cli.getOptionValue("zone-suffix");
+
+      if ((optstr = cli.getOptionValue("settle")) != null)
+      {
+        settle = Math.max(0, parseInt(optstr, (int) settle));
+      }
+
+      if ((optstr = cli.getOptionValue("refresh")) != null)
+      {
+        refresh = (long) parseInt(optstr, -1) * 1000;
+      }
+
+      if ((optstr = cli.getOptionValue("retry")) != null)
+      {
+        retry = (long) Math.max(1, parseInt(optstr, 300)) * 1000;
+      }
+
+      // These name a single zone's files, so make no sense here.
+      if (outputfile != null || kskFiles != null || nsec3IndexFile != null)
+      {
+        System.err.println("warning: -f, -k and --nsec3-index are ignored by jdnssec-signd");
+        outputfile = null;
+        kskFiles = null;
+        nsec3IndexFile = null;
+      }
+      if (manifest != null)
+      {
+        System.err.println("error: jdnssec-signd does not use a manifest");
+        usage();
+      }
+    }
+
+    protected void processArgs(String[] dirs)
+    {
+      if (dirs.length < 1)
+      {
+        System.err.println("error: missing zone directory");
+        usage();
+      }
+
+      Set<String> names = new HashSet<String>();
+      for (String d : dirs)
+      {
+        File dir = new File(d);
+        if (!dir.isDirectory())
+        {
+          System.err.println("error: " + d + " is not a directory");
+          usage();
+        }
+        // With several zone directories, each gets its own output directory,
+        // named after it.
+        if (dirs.length > 1 && !names.add(directoryName(dir)))
+        {
+          System.err.println("error: zone directories must have different names: " + d);
+          usage();
+        }
+        zoneDirectories.add(dir);
+      }
+    }
+
+    /** @return the name of a zone directory, as used for its output. */
+    public static String directoryName(File dir)
+    {
+      File abs = dir.getAbsoluteFile().toPath().normalize().toFile();
+      return abs.getName().length() > 0 ? abs.getName() : "root";
+    }
+  }
+
+  private SignZone              mSigner = new SignZone();
+  private KeysetStore           mKeysets;
+  private ResignScheduler<File> mScheduler;
+  private DnsSecStats           mStats;
+
+  /** @return true if this is a zone file we should sign. */
+  private boolean isZoneFile(File f)
+  {
+    String name = f.getName();
+    if (name.startsWith(".") || name.endsWith("~")) return false;
+    if (state.zoneSuffix != null && !name.endsWith(state.zoneSuffix)) return false;
+    return f.isFile();
+  }
+
+  /**
+   * @return the directory the signed zones from a zone directory go in: the
+   *         output directory itself, or, if there are several zone
+   *         directories, a subdirectory of it named after the zone directory.
+   */
+  private File outputDirectory(File zonedir)
+  {
+    if (state.zoneDirectories.size() < 2) return state.outputDirectory;
+    return new File(state.outputDirectory, CLIState.directoryName(zonedir));
+  }
+
+  /** @return where the signed version of the zone file goes. */
+  private File outputFile(File zonefile)
+  {
+    String name = zonefile.getName();
+    if (state.zoneSuffix != null && name.endsWith(state.zoneSuffix))
+    {
+      name = name.substring(0, name.length() - state.zoneSuffix.length());
+    }
+    return new File(outputDirectory(zonefile.getParentFile()), name + ".signed");
+  }
+
+  /**
+   * @return the earliest RRSIG expiration time in a signed zone file, or null
+   *         if it has no RRSIGs or can't be read.
+   */
+  private Date findEarliestExpiration(File signed)
+  {
+    Date earliest = null;
+    try
+    {
+      ZoneFileReader in = new ZoneFileReader(signed.getPath(), null);
+      try
+      {
+        Record r;
+        while ((r = in.nextRecord()) != null)
+        {
+          if (r.getType() != Type.RRSIG) continue;
+          Date exp = ((RRSIGRecord) r).getExpire();
+          if (earliest == null || exp.before(earliest)) earliest = exp;
+        }
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch (IOException e)
+    {
+      log.fine("unable to read " + signed + ": " + e.getMessage());
+      return null;
+    }
+    return earliest;
+  }
+
+  /**
+   * Queue the zones we don't know about yet: immediately if their signed
+   * version is missing or out of date, or else ahead of when its signatures
+   * expire.
+   */
+  private void scan()
+  {
+    long now = System.currentTimeMillis();
+    for (File dir : state.zoneDirectories)
+    {
+      File[] files = dir.listFiles();
+      if (files == null)
+      {
+        log.warning("unable to read directory " + dir);
+        continue;
+      }
+      Arrays.sort(files);
+
+      for (File f : files)
+      {
+        if (!isZoneFile(f) || mScheduler.getDeadline(f) >= 0) continue;
+
+        File out = outputFile(f);
+        Date expiration = null;
+        if (out.lastModified() >= f.lastModified())
+        {
+          expiration = findEarliestExpiration(out);
+        }
+
+        if (expiration == null)
+        {
+          mScheduler.schedule(f, now);
+        }
+        else
+        {
+          log.fine(f + " is already signed, signatures expire " + expiration);
+          mScheduler.scheduleRefresh(f, expiration);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sign one zone, replacing its signed version if that works.
+   *
+   * @return the earliest expiration time of the new signatures.
+   */
+  private Date sign(File zonefile) throws Exception
+  {
+    File out = outputFile(zonefile);
+    File tmp = new File(out.getParentFile(), "." + out.getName());
+    long t0 = System.currentTimeMillis();
+    try
+    {
+      Date start = state.inception();
+      Date expire = state.expiration(start);
+      Date expiration = mSigner.signZone(state, mKeysets, zonefile.getPath(), tmp.getPath(),
+                                         start, expire, mStats);
+
+      Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                 StandardCopyOption.REPLACE_EXISTING);
+      log.info("signed " + zonefile + " in " + (System.currentTimeMillis() - t0) + "ms");
+      writeStats();
+      return expiration;
+    }
+    finally
+    {
+      tmp.delete();
+    }
+  }
+
+  /** Rewrite the statistics file, if there is one, with the totals so far. */
+  private void writeStats()
+  {
+    if (state.statsFile == null) return;
+    try
+    {
+      mStats.writeReport(new File(state.statsFile));
+    }
+    catch (IOException e)
+    {
+      log.warning("unable to write " + state.statsFile + ": " + e.getMessage());
+    }
+  }
+
+  /** Watch the zone directories, signing zones as they change. Never returns. */
+  private void watch() throws IOException, InterruptedException
+  {
+    WatchService watcher = FileSystems.getDefault().newWatchService();
+    Map<WatchKey, File> keys = new HashMap<WatchKey, File>();
+    for (File dir : state.zoneDirectories)
+    {
+      WatchKey key = dir.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                           StandardWatchEventKinds.ENTRY_MODIFY,
+                                           StandardWatchEventKinds.ENTRY_DELETE);
+      keys.put(key, dir);
+    }
+
+    // Pick up anything that changed while we weren't watching.
+    scan();
+    mScheduler.start();
+
+    try
+    {
+      while (true)
+      {
+        WatchKey key = watcher.take();
+
+        File dir = keys.get(key);
+        long due = System.currentTimeMillis() + state.settle;
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+          {
+            log.fine("missed events in " + dir + ", rescanning");
+            scan();
+            continue;
+          }
+
+          File f = new File(dir, ((Path) event.context()).toString());
+          if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE)
+          {
+            mScheduler.remove(f);
+            continue;
+          }
+          if (!isZoneFile(f)) continue;
+
+          // Every change pushes the signing back, so we don't sign a zone that
+          // is still being written.
+          log.fine(f + " changed");
+          mScheduler.schedule(f, due);
+        }
+
+        if (!key.reset())
+        {
+          log.warning("no longer able to watch " + dir);
+          keys.remove(key);
+          if (keys.isEmpty()) throw new IOException("no zone directories left to watch");
+        }
+      }
+    }
+    catch (ClosedWatchServiceException e)
+    {
+      // shutting down.
+    }
+    finally
+    {
+      watcher.close();
+    }
+  }
+
+  public void execute() throws Exception
+  {
+    // Do the one-time setup now, rather than when signing the first zone.
+    DnsKeyAlgorithm.getInstance();
+
+    for (File dir : state.zoneDirectories)
+    {
+      File out = outputDirectory(dir);
+      if (!out.isDirectory() && !out.mkdir())
+      {
+        throw new IOException("unable to create output directory " + out);
+      }
+    }
+
+    mKeysets = new KeysetStore(state.keysetDirectory, state.keysetIndex,
+                               Runtime.getRuntime().availableProcessors());
+
+    // The statistics for all the zones signed are kept, and can be watched
+    // over JMX.
+    mStats = new DnsSecStats("sign");
+    try
+    {
+      mStats.register("jdnssec-signd");
+    }
+    catch (JMException e)
+    {
+      log.warning("unable to register the signing statistics MBean: " + e.getMessage());
+    }
+
+    long refresh = state.refresh;
+    if (refresh < 0)
+    {
+      // Re-sign when a quarter of the signature validity period is left.
+      Date start = state.inception();
+      refresh = (state.expiration(start).getTime() - start.getTime()) / 4;
+    }
+    log.fine("re-signing zones " + refresh / 1000 + "s before their signatures expire");
+
+    mScheduler = new ResignScheduler<File>(new ResignScheduler.Signer<File>()
+    {
+      public Date sign(File zonefile) throws Exception
+      {
+        return SignDaemon.this.sign(zonefile);
+      }
+    }, state.threads, refresh, state.retry);
+
+    try
+    {
+      if (state.once)
+      {
+        scan();
+        mScheduler.awaitIdle(System.currentTimeMillis());
+        if (mScheduler.getFailedCount() > 0) exitStatus = 1;
+        return;
+      }
+
+      // Let signings in progress finish when we are told to stop.
+      Runtime.getRuntime().addShutdownHook(new Thread()
+      {
+        public void run()
+        {
+          try
+          {
+            mScheduler.shutdown(60000);
+          }
+          catch (InterruptedException e)
+          {
+            // exiting anyway.
+          }
+        }
+      });
+
+      log.info("watching " + state.zoneDirectories + ", writing signed zones to "
+          + state.outputDirectory);
+      watch();
+    }
+    finally
+    {
+      mScheduler.shutdown(0);
+    }
+  }
+
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
+  public static void main(String[] args)
+  {
+    SignDaemon tool = new SignDaemon();
+
+    System.exit(tool.run(args));
+  }
+}
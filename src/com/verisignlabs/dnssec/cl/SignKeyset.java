@@ -18,7 +18,6 @@
 package com.verisignlabs.dnssec.cl;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
@@ -164,7 +163,7 @@ public class SignKeyset extends CLBase
    *          a list of keypairs used the sign the zone.
    * @return true if all of the signatures validated.
    */
-  private static boolean verifySigs(Name zonename, List<Record> records,
+  private boolean verifySigs(Name zonename, List<Record> records,
                                     List<DnsKeyPair> keypairs)
   {
     boolean secure = true;
@@ -222,55 +221,13 @@ public class SignKeyset extends CLBase
 
     for (int i = start_index; i < keyfiles.length; i++)
     {
-      DnsKeyPair k = BINDKeyUtils.loadKeyPair(keyfiles[i], inDirectory);
+      DnsKeyPair k = KeyRepository.getDefault().loadKeyPair(keyfiles[i], inDirectory);
       if (k != null) keys.add(k);
     }
 
     return keys;
   }
 
-  private static class KeyFileFilter implements FileFilter
-  {
-    private String prefix;
-
-    public KeyFileFilter(Name origin)
-    {
-      prefix = "K" + origin.toString();
-    }
-
-    public boolean accept(File pathname)
-    {
-      if (!pathname.isFile()) return false;
-      String name = pathname.getName();
-      if (name.startsWith(prefix) && name.endsWith(".private")) return true;
-      return false;
-    }
-  }
-
-  private static List<DnsKeyPair> findZoneKeys(File inDirectory, Name zonename)
-      throws IOException
-  {
-    if (inDirectory == null)
-    {
-      inDirectory = new File(".");
-    }
-
-    // get the list of "K<zone>.*.private files.
-    FileFilter filter = new KeyFileFilter(zonename);
-    File[] files = inDirectory.listFiles(filter);
-
-    // read in all of the records
-    ArrayList<DnsKeyPair> keys = new ArrayList<DnsKeyPair>();
-    for (int i = 0; i < files.length; i++)
-    {
-      DnsKeyPair p = BINDKeyUtils.loadKeyPair(files[i].getName(), inDirectory);
-      keys.add(p);
-    }
-
-    if (keys.size() > 0) return keys;
-    return null;
-  }
-
   @SuppressWarnings("unchecked")
   public void execute() throws Exception
   {
@@ -319,7 +276,7 @@ public class SignKeyset extends CLBase
     // that match
     if (keypairs == null)
     {
-      keypairs = findZoneKeys(state.keyDirectory, keysetName);
+      keypairs = KeyRepository.getDefault().findZoneKeys(state.keyDirectory, keysetName);
     }
 
     // If there *still* aren't any ZSKs defined, bail.
@@ -383,11 +340,16 @@ public class SignKeyset extends CLBase
 
   }
 
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
   public static void main(String[] args)
   {
     SignKeyset tool = new SignKeyset();
-    tool.state = new CLIState();
 
-    tool.run(tool.state, args);
+    System.exit(tool.run(args));
   }
 }
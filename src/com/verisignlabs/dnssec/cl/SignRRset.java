@@ -164,7 +164,7 @@ public class SignRRset extends CLBase
    *          a list of keypairs used the sign the zone.
    * @return true if all of the signatures validated.
    */
-  private static boolean verifySigs(Name zonename, List<Record> records, List<DnsKeyPair> keypairs)
+  private boolean verifySigs(Name zonename, List<Record> records, List<DnsKeyPair> keypairs)
   {
     boolean secure = true;
 
@@ -221,7 +221,7 @@ public class SignRRset extends CLBase
 
     for (int i = start_index; i < keyfiles.length; i++)
     {
-      DnsKeyPair k = BINDKeyUtils.loadKeyPair(keyfiles[i], inDirectory);
+      DnsKeyPair k = KeyRepository.getDefault().loadKeyPair(keyfiles[i], inDirectory);
       if (k != null) keys.add(k);
     }
 
@@ -351,11 +351,16 @@ public class SignRRset extends CLBase
 
   }
 
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
   public static void main(String[] args)
   {
     SignRRset tool = new SignRRset();
-    tool.state = new CLIState();
-    
-    tool.run(tool.state, args);
+
+    System.exit(tool.run(args));
   }
 }
@@ -19,14 +19,19 @@ package com.verisignlabs.dnssec.cl;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.OptionBuilder;
@@ -35,6 +40,7 @@ import org.apache.commons.cli.ParseException;
 
 import org.xbill.DNS.DNSKEYRecord;
 import org.xbill.DNS.DSRecord;
+import org.xbill.DNS.NSEC3Record;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.RRset;
 import org.xbill.DNS.Record;
@@ -44,8 +50,13 @@ import org.xbill.DNS.utils.base16;
 
 import com.verisignlabs.dnssec.security.BINDKeyUtils;
 import com.verisignlabs.dnssec.security.DnsKeyPair;
+import com.verisignlabs.dnssec.security.DnsSecStats;
 import com.verisignlabs.dnssec.security.DnsSecVerifier;
 import com.verisignlabs.dnssec.security.JCEDnsSecSigner;
+import com.verisignlabs.dnssec.security.KeyRepository;
+import com.verisignlabs.dnssec.security.KeysetStore;
+import com.verisignlabs.dnssec.security.NSEC3Index;
+import com.verisignlabs.dnssec.security.NameTable;
 import com.verisignlabs.dnssec.security.SignUtils;
 import com.verisignlabs.dnssec.security.ZoneUtils;
 
@@ -60,16 +71,20 @@ public class SignZone extends CLBase
 
   /**
    * This is an inner class used to hold all of the command line option state.
+   * It is shared with {@link SignDaemon}, which signs zones the same way.
    */
-  private static class CLIState extends CLIStateBase
+  protected static class CLIState extends CLIStateBase
   {
     public File       keyDirectory    = null;
     public File       keysetDirectory = null;
+    public File       keysetIndex     = null;
     public String[]   kskFiles        = null;
     public String[]   keyFiles        = null;
     public String     zonefile        = null;
     public Date       start           = null;
     public Date       expire          = null;
+    public String     startSpec       = null;
+    public String     expireSpec      = null;
     public String     outputfile      = null;
     public boolean    verifySigs      = false;
     public boolean    useOptOut       = false;
@@ -79,12 +94,22 @@ public class SignZone extends CLBase
     public byte[]     salt            = null;
     public int        iterations      = 0;
     public int        digest_id       = DSRecord.SHA1_DIGEST_ID;
+    public int        outputFormat    = -1;
+    public String     nsec3IndexFile  = null;
     public long       nsec3paramttl   = -1;
     public boolean    verboseSigning  = false;
+    public String     manifest        = null;
+    public int        threads         = Runtime.getRuntime().availableProcessors();
+    public String     statsFile       = null;
 
     public CLIState()
     {
-      super("jdnssec-signzone [..options..] zone_file [key_file ...]");
+      this("jdnssec-signzone [..options..] zone_file [key_file ...]");
+    }
+
+    protected CLIState(String usage)
+    {
+      super(usage);
     }
 
     protected void setupOptions(Options opts)
@@ -102,6 +127,13 @@ public class SignZone extends CLBase
       OptionBuilder.withDescription("directory to find keyset files (default '.').");
       opts.addOption(OptionBuilder.create('d'));
 
+      OptionBuilder.hasArg();
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withLongOpt("keyset-index");
+      OptionBuilder.withDescription("file to keep the keyset file index in (default is "
+          + KeysetStore.INDEX_FILE + " in the keyset directory).");
+      opts.addOption(OptionBuilder.create());
+
       OptionBuilder.hasArg();
       OptionBuilder.withArgName("dir");
       OptionBuilder.withLongOpt("key-directory");
@@ -171,6 +203,41 @@ public class SignZone extends CLBase
       OptionBuilder.withLongOpt("ds-digest");
       OptionBuilder.withDescription("Digest algorithm to use for generated DSs");
       opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("output-format");
+      OptionBuilder.withArgName("format");
+      OptionBuilder.withDescription("write the signed zone as 'text', 'raw' (BIND raw format), "
+          + "or 'snapshot'.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("nsec3-index");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("when using NSEC3, also write the NSEC3 hash to owner name "
+          + "mapping to this file (for jdnssec-zoneformat -N).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("manifest");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("sign all of the zones listed in this file, one per line, "
+          + "each given as jdnssec-signzone arguments (which are added to the others).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("threads");
+      OptionBuilder.withArgName("n");
+      OptionBuilder.withDescription("sign up to this many zones at once (default is the "
+          + "number of processors).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("stats-file");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("write signing performance statistics (time per phase, "
+          + "signatures per key, etc.) to this file, as JSON.");
+      opts.addOption(OptionBuilder.create());
     }
 
     protected void processOptions(CommandLine cli) throws ParseException
@@ -201,6 +268,11 @@ public class SignZone extends CLBase
         }
       }
 
+      if ((optstr = cli.getOptionValue("keyset-index")) != null)
+      {
+        keysetIndex = new File(optstr);
+      }
+
       if ((optstr = cli.getOptionValue('D')) != null)
       {
         keyDirectory = new File(optstr);
@@ -211,24 +283,10 @@ public class SignZone extends CLBase
         }
       }
 
-      if ((optstr = cli.getOptionValue('s')) != null)
-      {
-        start = CLBase.convertDuration(null, optstr);
-      }
-      else
-      {
-        // default is now - 1 hour.
-        start = new Date(System.currentTimeMillis() - (3600 * 1000));
-      }
-
-      if ((optstr = cli.getOptionValue('e')) != null)
-      {
-        expire = CLBase.convertDuration(start, optstr);
-      }
-      else
-      {
-        expire = CLBase.convertDuration(start, "+2592000"); // 30 days
-      }
+      startSpec = cli.getOptionValue('s');
+      expireSpec = cli.getOptionValue('e');
+      start = inception();
+      expire = expiration(start);
 
       outputfile = cli.getOptionValue('f');
 
@@ -293,7 +351,42 @@ public class SignZone extends CLBase
         nsec3paramttl = parseInt(optstr, -1);
       }
 
-      String[] files = cli.getArgs();
+      if ((optstr = cli.getOptionValue("output-format")) != null)
+      {
+        outputFormat = ZoneUtils.parseZoneFormat(optstr);
+        if (outputFormat < 0)
+        {
+          System.err.println("error: unknown output format: " + optstr);
+          usage();
+        }
+      }
+
+      nsec3IndexFile = cli.getOptionValue("nsec3-index");
+
+      manifest = cli.getOptionValue("manifest");
+
+      statsFile = cli.getOptionValue("stats-file");
+
+      if ((optstr = cli.getOptionValue("threads")) != null)
+      {
+        threads = Math.max(1, parseInt(optstr, threads));
+      }
+
+      processArgs(cli.getArgs());
+    }
+
+    /** Process the non-option arguments: the zone file and key files. */
+    protected void processArgs(String[] files)
+    {
+      if (manifest != null)
+      {
+        if (files.length > 0)
+        {
+          System.err.println("error: zone and key files go in the manifest");
+          usage();
+        }
+        return;
+      }
 
       if (files.length < 1)
       {
@@ -308,6 +401,40 @@ public class SignZone extends CLBase
         System.arraycopy(files, 1, keyFiles, 0, files.length - 1);
       }
     }
+
+    /**
+     * @return the signature inception time, calculated from the -s option
+     *         relative to now.
+     */
+    public Date inception() throws ParseException
+    {
+      if (startSpec != null) return CLBase.convertDuration(null, startSpec);
+
+      // default is now - 1 hour.
+      return new Date(System.currentTimeMillis() - (3600 * 1000));
+    }
+
+    /**
+     * @return the signature expiration time, calculated from the -e option
+     *         relative to the inception time.
+     */
+    public Date expiration(Date inception) throws ParseException
+    {
+      if (expireSpec != null) return CLBase.convertDuration(inception, expireSpec);
+
+      return CLBase.convertDuration(inception, "+2592000"); // 30 days
+    }
+  }
+
+  /** Thrown when a zone can't be signed as requested. */
+  static class SignZoneException extends Exception
+  {
+    private static final long serialVersionUID = 1L;
+
+    public SignZoneException(String message)
+    {
+      super(message);
+    }
   }
 
   /**
@@ -321,7 +448,7 @@ public class SignZone extends CLBase
    *          a list of keypairs used the sign the zone.
    * @return true if all of the signatures validated.
    */
-  private static boolean verifyZoneSigs(Name zonename, List<Record> records,
+  private boolean verifyZoneSigs(Name zonename, List<Record> records,
                                         List<DnsKeyPair> keypairs)
   {
     boolean secure = true;
@@ -380,7 +507,7 @@ public class SignZone extends CLBase
 
     for (int i = start_index; i < keyfiles.length; i++)
     {
-      DnsKeyPair k = BINDKeyUtils.loadKeyPair(keyfiles[i], inDirectory);
+      DnsKeyPair k = KeyRepository.getDefault().loadKeyPair(keyfiles[i], inDirectory);
       if (k != null) keys.add(k);
     }
 
@@ -398,8 +525,8 @@ public class SignZone extends CLBase
       // Construct a public-key-only DnsKeyPair just so we can calculate the
       // base name.
       DnsKeyPair pub = new DnsKeyPair((DNSKEYRecord) r);
-      DnsKeyPair pair = BINDKeyUtils.loadKeyPair(BINDKeyUtils.keyFileBase(pub),
-                                                 inDirectory);
+      String base = BINDKeyUtils.keyFileBase(pub);
+      DnsKeyPair pair = KeyRepository.getDefault().loadKeyPair(base, inDirectory);
       if (pair != null)
       {
         res.add(pair);
@@ -410,110 +537,6 @@ public class SignZone extends CLBase
     return null;
   }
 
-  private static class KeyFileFilter implements FileFilter
-  {
-    private String prefix;
-
-    public KeyFileFilter(Name origin)
-    {
-      prefix = "K" + origin.toString();
-    }
-
-    public boolean accept(File pathname)
-    {
-      if (!pathname.isFile()) return false;
-      String name = pathname.getName();
-      if (name.startsWith(prefix) && name.endsWith(".private")) return true;
-      return false;
-    }
-  }
-
-  private static List<DnsKeyPair> findZoneKeys(File inDirectory, Name zonename)
-      throws IOException
-  {
-    if (inDirectory == null)
-    {
-      inDirectory = new File(".");
-    }
-
-    // get the list of "K<zone>.*.private files.
-    FileFilter filter = new KeyFileFilter(zonename);
-    File[] files = inDirectory.listFiles(filter);
-
-    // read in all of the records
-    ArrayList<DnsKeyPair> keys = new ArrayList<DnsKeyPair>();
-    for (int i = 0; i < files.length; i++)
-    {
-      DnsKeyPair p = BINDKeyUtils.loadKeyPair(files[i].getName(), inDirectory);
-      keys.add(p);
-    }
-
-    if (keys.size() > 0) return keys;
-    return null;
-  }
-
-  /**
-   * This is an implementation of a file filter used for finding BIND 9-style
-   * keyset-* files.
-   */
-  private static class KeysetFileFilter implements FileFilter
-  {
-    public boolean accept(File pathname)
-    {
-      if (!pathname.isFile()) return false;
-      String name = pathname.getName();
-      if (name.startsWith("keyset-")) return true;
-      return false;
-    }
-  }
-
-  /**
-   * Load keysets (which contain delegation point security info).
-   * 
-   * @param inDirectory
-   *          the directory to look for the keyset files (may be null, in
-   *          which
-   *          case it defaults to looking in the current working directory).
-   * @param zonename
-   *          the name of the zone we are signing, so we can ignore keysets
-   *          that
-   *          do not belong in the zone.
-   * @return a list of {@link org.xbill.DNS.Record}s found in the keyset
-   *         files.
-   */
-  private static List<Record> getKeysets(File inDirectory, Name zonename)
-      throws IOException
-  {
-    if (inDirectory == null)
-    {
-      inDirectory = new File(".");
-    }
-
-    // get the list of "keyset-" files.
-    FileFilter filter = new KeysetFileFilter();
-    File[] files = inDirectory.listFiles(filter);
-
-    // read in all of the records
-    ArrayList<Record> keysetRecords = new ArrayList<Record>();
-    for (int i = 0; i < files.length; i++)
-    {
-      List<Record> l = ZoneUtils.readZoneFile(files[i].getAbsolutePath(), zonename);
-      keysetRecords.addAll(l);
-    }
-
-    // discard records that do not belong to the zone in question.
-    for (Iterator<Record> i = keysetRecords.iterator(); i.hasNext();)
-    {
-      Record r = i.next();
-      if (!r.getName().subdomain(zonename))
-      {
-        i.remove();
-      }
-    }
-
-    return keysetRecords;
-  }
-
   /**
    * Load a list of DNS names from a file.
    * 
@@ -542,7 +565,7 @@ public class SignZone extends CLBase
       }
       catch (TextParseException e)
       {
-        log.severe("DNS Name parsing error:" + e);
+        Logger.getLogger(SignZone.class.toString()).severe("DNS Name parsing error:" + e);
       }
     }
 
@@ -578,22 +601,196 @@ public class SignZone extends CLBase
     return true;
   }
 
+  /**
+   * Sign the zones listed in the manifest file, each in its own task on a
+   * (work-stealing) fork/join pool. The keys, keyset files and crypto objects
+   * are shared between the zones, and a zone that can't be signed doesn't stop
+   * the others.
+   */
+  private void signManifest() throws Exception
+  {
+    // The manifest lines are added to the rest of the command line.
+    List<String> common = new ArrayList<String>();
+    for (int i = 0; i < state.args.length; i++)
+    {
+      String arg = state.args[i];
+      if (arg.equals("--manifest"))
+      {
+        i++;
+        continue;
+      }
+      if (arg.startsWith("--manifest=")) continue;
+      common.add(arg);
+    }
+
+    // Parse all the lines first (the option parser isn't thread-safe).
+    final List<String> where = new ArrayList<String>();
+    final List<CLIState> zones = new ArrayList<CLIState>();
+    int failed = 0;
+    BufferedReader in = new BufferedReader(new FileReader(state.manifest));
+    try
+    {
+      String line;
+      int lineno = 0;
+      while ((line = in.readLine()) != null)
+      {
+        lineno++;
+        line = line.trim();
+        if (line.length() == 0 || line.startsWith("#") || line.startsWith(";")) continue;
+
+        String loc = state.manifest + ":" + lineno;
+        List<String> zoneArgs = new ArrayList<String>(common);
+        zoneArgs.addAll(Arrays.asList(splitArgs(line)));
+
+        CLIState zs = new CLIState();
+        zs.setExitOnError(false);
+        zs.setStandalone(false);
+        try
+        {
+          zs.parseCommandLine(zoneArgs.toArray(new String[zoneArgs.size()]));
+        }
+        catch (Exception e)
+        {
+          log.warning(loc + ": " + e.getMessage());
+          failed++;
+          continue;
+        }
+        where.add(loc);
+        zones.add(zs);
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+
+    // Zones using the same keyset directory share a store.
+    final ConcurrentHashMap<String, KeysetStore> keysets = new ConcurrentHashMap<String, KeysetStore>();
+    final DnsSecStats stats = state.statsFile != null ? new DnsSecStats("sign") : null;
+
+    long t0 = System.currentTimeMillis();
+    ForkJoinPool pool = new ForkJoinPool(state.threads);
+    try
+    {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int i = 0; i < zones.size(); i++)
+      {
+        final CLIState zs = zones.get(i);
+        final String loc = where.get(i);
+        results.add(pool.submit(new Callable<Boolean>()
+        {
+          public Boolean call()
+          {
+            try
+            {
+              String key = zs.keysetDirectory + "\n" + zs.keysetIndex;
+              KeysetStore ks = keysets.get(key);
+              if (ks == null)
+              {
+                keysets.putIfAbsent(key, new KeysetStore(zs.keysetDirectory, zs.keysetIndex,
+                                                         1));
+                ks = keysets.get(key);
+              }
+              signZone(zs, ks, zs.zonefile, zs.outputfile, zs.start, zs.expire, stats);
+              return true;
+            }
+            catch (Exception e)
+            {
+              log.warning(loc + ": unable to sign " + zs.zonefile + ": " + e.getMessage());
+              return false;
+            }
+          }
+        }));
+      }
+
+      int signed = 0;
+      for (Future<Boolean> f : results)
+      {
+        if (f.get()) signed++;
+        else failed++;
+      }
+
+      double secs = Math.max(1, System.currentTimeMillis() - t0) / 1000.0;
+      System.out.println(String.format("signed %d zones (%d failed) in %.3fs: %.1f zones/s",
+                                       signed, failed, secs, signed / secs));
+      if (failed > 0) exitStatus = 1;
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+
+    if (stats != null) stats.writeReport(new File(state.statsFile));
+  }
+
   public void execute() throws Exception
   {
-    // Read in the zone
-    List<Record> records = ZoneUtils.readZoneFile(state.zonefile, null);
-    if (records == null || records.size() == 0)
+    if (state.manifest != null)
+    {
+      signManifest();
+      return;
+    }
+
+    KeysetStore keysets = new KeysetStore(state.keysetDirectory, state.keysetIndex,
+                                          Runtime.getRuntime().availableProcessors());
+    DnsSecStats stats = state.statsFile != null ? new DnsSecStats("sign") : null;
+    try
+    {
+      signZone(state, keysets, state.zonefile, state.outputfile, state.start, state.expire,
+               stats);
+    }
+    catch (SignZoneException e)
     {
-      System.err.println("error: empty zone file");
+      System.err.println(e.getMessage());
       state.usage();
     }
 
+    if (stats != null) stats.writeReport(new File(state.statsFile));
+  }
+
+  /**
+   * Sign a zone file, the way the command line tool does.
+   * 
+   * @param state
+   *          the signing options.
+   * @param keysets
+   *          where to find the keyset files.
+   * @param zonefile
+   *          the zone file to sign.
+   * @param outputfile
+   *          the file to write the signed zone to; if null, it is named after
+   *          the zone.
+   * @param start
+   *          the signature inception time.
+   * @param expire
+   *          the signature expiration time.
+   * @param stats
+   *          where to collect performance statistics, or null.
+   * @return the earliest expiration time of the generated RRSIGs.
+   * @throws SignZoneException
+   *           if the zone or its keys aren't usable.
+   */
+  Date signZone(CLIState state, KeysetStore keysets, String zonefile, String outputfile,
+                Date start, Date expire, DnsSecStats stats)
+      throws Exception
+  {
+    long t = System.nanoTime();
+
+    // Read in the zone, interning its names in a table that lives only as
+    // long as this zone does.
+    NameTable names = new NameTable();
+    List<Record> records = ZoneUtils.readZoneFile(zonefile, null, names);
+    if (stats != null) t = stats.endPhase("read", t);
+    if (records == null || records.size() == 0)
+    {
+      throw new SignZoneException("error: empty zone file");
+    }
+
     // calculate the zone name.
     Name zonename = ZoneUtils.findZoneName(records);
     if (zonename == null)
     {
-      System.err.println("error: invalid zone file - no SOA");
-      state.usage();
+      throw new SignZoneException("error: invalid zone file - no SOA");
     }
 
     // Load the key pairs.
@@ -613,7 +810,7 @@ public class SignZone extends CLBase
     // that match
     if (keypairs == null && kskpairs == null)
     {
-      keypairs = findZoneKeys(state.keyDirectory, zonename);
+      keypairs = KeyRepository.getDefault().findZoneKeys(state.keyDirectory, zonename);
     }
 
     // If we don't have any KSKs, but we do have more than one zone
@@ -646,20 +843,19 @@ public class SignZone extends CLBase
     // If there *still* aren't any ZSKs defined, bail.
     if (keypairs == null || keypairs.size() == 0)
     {
-      System.err.println("No zone signing keys could be determined.");
-      state.usage();
+      throw new SignZoneException("No zone signing keys could be determined.");
     }
 
     // default the output file, if not set.
-    if (state.outputfile == null && !state.zonefile.equals("-"))
+    if (outputfile == null && !zonefile.equals("-"))
     {
       if (zonename.isAbsolute())
       {
-        state.outputfile = zonename + "signed";
+        outputfile = zonename + "signed";
       }
       else
       {
-        state.outputfile = zonename + ".signed";
+        outputfile = zonename + ".signed";
       }
     }
 
@@ -667,8 +863,7 @@ public class SignZone extends CLBase
     if (!keyPairsValidForZone(zonename, keypairs)
         || !keyPairsValidForZone(zonename, kskpairs))
     {
-      System.err.println("error: specified keypairs are not valid for the zone.");
-      state.usage();
+      throw new SignZoneException("error: specified keypairs are not valid for the zone.");
     }
 
     // We force the signing keys to be in the zone by just appending
@@ -690,13 +885,26 @@ public class SignZone extends CLBase
     }
 
     // read in the keysets, if any.
-    List<Record> keysetrecs = getKeysets(state.keysetDirectory, zonename);
+    List<Record> keysetrecs = keysets.getKeysets(zonename);
     if (keysetrecs != null)
     {
       records.addAll(keysetrecs);
     }
 
+    if (stats != null) stats.endPhase("load-keys", t);
+
     JCEDnsSecSigner signer = new JCEDnsSecSigner(state.verboseSigning);
+    signer.setStats(stats);
+    signer.setNameTable(names);
+
+    // The NSEC3 owner names are collected for the zone file comments, and for
+    // the index file if one was asked for.
+    NSEC3Index index = null;
+    if (state.useNsec3)
+    {
+      index = new NSEC3Index(NSEC3Record.SHA1_DIGEST_ID, state.iterations, state.salt);
+      signer.setNSEC3Index(index);
+    }
 
     // Sign the zone.
     List<Record> signed_records;
@@ -704,7 +912,7 @@ public class SignZone extends CLBase
     if (state.useNsec3)
     {
       signed_records = signer.signZoneNSEC3(zonename, records, kskpairs, keypairs,
-                                            state.start, state.expire,
+                                            start, expire,
                                             state.fullySignKeyset, state.useOptOut,
                                             state.includeNames, state.salt,
                                             state.iterations, state.digest_id,
@@ -713,12 +921,23 @@ public class SignZone extends CLBase
     else
     {
       signed_records = signer.signZone(zonename, records, kskpairs, keypairs,
-                                       state.start, state.expire, state.fullySignKeyset,
+                                       start, expire, state.fullySignKeyset,
                                        state.digest_id);
     }
 
     // write out the signed zone
-    ZoneUtils.writeZoneFile(signed_records, state.outputfile);
+    t = System.nanoTime();
+    int format = state.outputFormat;
+    if (format < 0) format = ZoneUtils.guessZoneFormat(outputfile);
+    ZoneUtils.writeZoneFile(signed_records, outputfile, format, index);
+    if (stats != null) t = stats.endPhase("write", t);
+
+    if (index != null && state.nsec3IndexFile != null)
+    {
+      index.write(new File(state.nsec3IndexFile));
+      log.fine("wrote " + index.size() + " NSEC3 owner names to " + state.nsec3IndexFile);
+      if (stats != null) t = stats.endPhase("nsec3-index", t);
+    }
 
     if (state.verifySigs)
     {
@@ -741,15 +960,22 @@ public class SignZone extends CLBase
         System.out.println("Generated signatures did not verify.");
         // log.warn("Generated signatures did not verify.");
       }
+      if (stats != null) stats.endPhase("verify", t);
     }
 
+    return signer.getEarliestExpiration();
+  }
+
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
   }
 
   public static void main(String[] args)
   {
     SignZone tool = new SignZone();
-    tool.state = new CLIState();
 
-    tool.run(tool.state, args);
+    System.exit(tool.run(args));
   }
 }
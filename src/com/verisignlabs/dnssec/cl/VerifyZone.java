@@ -17,6 +17,7 @@
 
 package com.verisignlabs.dnssec.cl;
 
+import java.io.File;
 import java.util.List;
 
 import org.apache.commons.cli.CommandLine;
@@ -24,6 +25,9 @@ import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.xbill.DNS.Record;
 
+import com.verisignlabs.dnssec.security.DnsSecStats;
+import com.verisignlabs.dnssec.security.NameTable;
+import com.verisignlabs.dnssec.security.VerificationCache;
 import com.verisignlabs.dnssec.security.ZoneUtils;
 import com.verisignlabs.dnssec.security.ZoneVerifier;
 
@@ -49,6 +53,11 @@ public class VerifyZone extends CLBase
     public int      expirefudge = 0;
     public boolean  ignoreTime  = false;
     public boolean  ignoreDups  = false;
+    public double   sampleRate  = 1.0;
+    public int      sampleCount = 0;
+    public long     sampleSeed  = System.currentTimeMillis();
+    public File     cacheFile   = null;
+    public String   statsFile   = null;
 
     public CLIState()
     {
@@ -76,6 +85,42 @@ public class VerifyZone extends CLBase
       OptionBuilder.withLongOpt("ignore-duplicate-rrs");
       OptionBuilder.withDescription("Ignore duplicate record errors.");
       opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("sample-rate");
+      OptionBuilder.withArgName("fraction");
+      OptionBuilder.withDescription("Only verify this fraction (0.0 - 1.0) of the "
+          + "RRset signatures, chosen at random. The zone apex and NSEC/NSEC3 "
+          + "chain are always fully checked.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("sample-count");
+      OptionBuilder.withArgName("count");
+      OptionBuilder.withDescription("Only verify about this many randomly chosen "
+          + "RRset signatures.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("sample-seed");
+      OptionBuilder.withArgName("seed");
+      OptionBuilder.withDescription("Random seed for choosing the sample (default is "
+          + "the current time).");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("verification-cache");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("Skip cryptographic verification of signatures "
+          + "verified by a previous run, and update this file.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("stats-file");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("write verification performance statistics (time per "
+          + "phase, signatures per key, etc.) to this file, as JSON.");
+      opts.addOption(OptionBuilder.create());
     }
     
     protected void processOptions(CommandLine cli)
@@ -101,6 +146,53 @@ public class VerifyZone extends CLBase
         expirefudge = parseInt(optstr, 0);
       }
 
+      if ((optstr = cli.getOptionValue("sample-rate")) != null)
+      {
+        try
+        {
+          sampleRate = Double.parseDouble(optstr);
+        }
+        catch (NumberFormatException e)
+        {
+          sampleRate = -1.0;
+        }
+        if (sampleRate < 0.0 || sampleRate > 1.0)
+        {
+          System.err.println("error: sample rate must be between 0.0 and 1.0");
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue("sample-count")) != null)
+      {
+        sampleCount = parseInt(optstr, -1);
+        if (sampleCount < 0)
+        {
+          System.err.println("error: sample count is not valid");
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue("sample-seed")) != null)
+      {
+        try
+        {
+          sampleSeed = Long.parseLong(optstr);
+        }
+        catch (NumberFormatException e)
+        {
+          System.err.println("error: sample seed is not valid");
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue("verification-cache")) != null)
+      {
+        cacheFile = new File(optstr);
+      }
+
+      statsFile = cli.getOptionValue("stats-file");
+
       String[] optstrs = null;
       if ((optstrs = cli.getOptionValues('A')) != null)
       {
@@ -137,30 +229,79 @@ public class VerifyZone extends CLBase
     zoneverifier.getVerifier().setExpireFudge(state.expirefudge);
     zoneverifier.getVerifier().setIgnoreTime(state.ignoreTime);
     zoneverifier.setIgnoreDuplicateRRs(state.ignoreDups);
+    zoneverifier.setSampleRate(state.sampleRate);
+    zoneverifier.setSampleCount(state.sampleCount);
+    zoneverifier.setSampleSeed(state.sampleSeed);
 
-    List<Record> records = ZoneUtils.readZoneFile(state.zonefile, null);
+    VerificationCache cache = null;
+    if (state.cacheFile != null)
+    {
+      cache = new VerificationCache();
+      cache.load(state.cacheFile);
+      zoneverifier.getVerifier().setVerificationCache(cache);
+    }
+
+    DnsSecStats stats = null;
+    if (state.statsFile != null)
+    {
+      stats = new DnsSecStats("verify");
+      zoneverifier.setStats(stats);
+    }
+
+    long t = System.nanoTime();
+    NameTable names = new NameTable();
+    List<Record> records = ZoneUtils.readZoneFile(state.zonefile, null, names);
+    zoneverifier.setNameTable(names);
+    if (stats != null) stats.endPhase("read", t);
 
     log.fine("verifying zone...");
     int errors = zoneverifier.verifyZone(records);
     log.fine("completed verification process.");
 
+    if (stats != null) stats.writeReport(new File(state.statsFile));
+
+    if (cache != null)
+    {
+      cache.save(state.cacheFile);
+      log.info("verification cache: " + cache.getHits() + " hits, " + cache.getMisses()
+          + " misses");
+    }
+
+    if (zoneverifier.getSkippedRRsetCount() > 0)
+    {
+      int verified = zoneverifier.getVerifiedRRsetCount();
+      int total = verified + zoneverifier.getSkippedRRsetCount();
+      System.out.println("verified " + verified + " of " + total
+          + " RRsets (sample seed " + state.sampleSeed + ")");
+      if (errors == 0)
+      {
+        double bound = zoneverifier.getSampleFailureBound(0.95);
+        System.out.printf("95%% confidence that fewer than %.3f%% of RRsets have bad signatures%n",
+                          bound * 100.0);
+      }
+    }
+
     if (errors > 0)
     {
       System.out.println("zone did not verify.");
-      System.exit(1);
+      exitStatus = 1;
     }
     else
     {
       System.out.println("zone verified.");
-      System.exit(0);
     }
   }
 
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
+  }
+
   public static void main(String[] args)
   {
     VerifyZone tool = new VerifyZone();
-    tool.state = new CLIState();
-    
-    tool.run(tool.state, args);
+
+    System.exit(tool.run(args));
   }
 }
@@ -17,27 +17,41 @@
 
 package com.verisignlabs.dnssec.cl;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.xbill.DNS.Master;
 import org.xbill.DNS.NSEC3PARAMRecord;
 import org.xbill.DNS.NSEC3Record;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.Record;
-import org.xbill.DNS.Section;
 import org.xbill.DNS.Type;
-import org.xbill.DNS.utils.base32;
 
+import com.verisignlabs.dnssec.security.NSEC3Index;
+import com.verisignlabs.dnssec.security.NameTable;
+import com.verisignlabs.dnssec.security.RawZoneFile;
 import com.verisignlabs.dnssec.security.RecordComparator;
+import com.verisignlabs.dnssec.security.RecordSorter;
+import com.verisignlabs.dnssec.security.SignUtils;
+import com.verisignlabs.dnssec.security.ZoneFileReader;
+import com.verisignlabs.dnssec.security.ZoneSnapshot;
+import com.verisignlabs.dnssec.security.ZoneUtils;
+import com.verisignlabs.dnssec.security.ZoneWriter;
 
 /**
  * This class forms the command line implementation of a zone file normalizer.
@@ -49,6 +63,9 @@ import com.verisignlabs.dnssec.security.RecordComparator;
  */
 public class ZoneFormat extends CLBase
 {
+  /** The number of records canonicalized as one unit of work. */
+  private static final int BATCH_SIZE = 16384;
+
   private CLIState state;
 
   /**
@@ -58,7 +75,11 @@ public class ZoneFormat extends CLBase
   protected static class CLIState extends CLIStateBase
   {
     public String  file;
+    public String  outputfile = null;
+    public int     outputFormat = -1;
+    public int     sortBuffer = RecordSorter.DEFAULT_MAX_RECORDS;
     public boolean assignNSEC3;
+    public String  nsec3IndexFile = null;
 
     public CLIState()
     {
@@ -69,12 +90,64 @@ public class ZoneFormat extends CLBase
     {
       opts.addOption("N", "nsec3", false,
                      "attempt to determine the original ownernames for NSEC3 RRs.");
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withArgName("outfile");
+      OptionBuilder.withDescription("file the formatted zone is written to (default is stdout). "
+          + "Names ending in " + ZoneSnapshot.FILE_SUFFIX + " are written as zone snapshots.");
+      opts.addOption(OptionBuilder.create('f'));
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("output-format");
+      OptionBuilder.withArgName("format");
+      OptionBuilder.withDescription("write the formatted zone as 'text', 'raw' (BIND raw format), "
+          + "or 'snapshot'.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("sort-buffer");
+      OptionBuilder.withArgName("records");
+      OptionBuilder.withDescription("the maximum number of records to sort in memory; larger "
+          + "zones are sorted using temporary files (default " + RecordSorter.DEFAULT_MAX_RECORDS
+          + "). Snapshot output needs the whole zone sorted in memory.");
+      opts.addOption(OptionBuilder.create());
+
+      OptionBuilder.hasArg();
+      OptionBuilder.withLongOpt("nsec3-index");
+      OptionBuilder.withArgName("file");
+      OptionBuilder.withDescription("with -N, take the NSEC3 owner names from this index file "
+          + "(written by jdnssec-signzone --nsec3-index) instead of hashing the zone.");
+      opts.addOption(OptionBuilder.create());
     }
 
     protected void processOptions(CommandLine cli) throws ParseException
     {
       if (cli.hasOption('N')) assignNSEC3 = true;
 
+      outputfile = cli.getOptionValue('f');
+      nsec3IndexFile = cli.getOptionValue("nsec3-index");
+
+      String optstr = null;
+      if ((optstr = cli.getOptionValue("output-format")) != null)
+      {
+        outputFormat = ZoneUtils.parseZoneFormat(optstr);
+        if (outputFormat < 0)
+        {
+          System.err.println("error: unknown output format: " + optstr);
+          usage();
+        }
+      }
+
+      if ((optstr = cli.getOptionValue("sort-buffer")) != null)
+      {
+        sortBuffer = parseInt(optstr, -1);
+        if (sortBuffer <= 0)
+        {
+          System.err.println("error: invalid sort buffer size: " + optstr);
+          usage();
+        }
+      }
+
       String[] cl_args = cli.getArgs();
 
       if (cl_args.length < 1)
@@ -87,49 +160,281 @@ public class ZoneFormat extends CLBase
     }
   }
 
-  private static List<Record> readZoneFile(String filename) throws IOException
+  /**
+   * Normalize a record by converting it to canonical form. Mostly this just
+   * lowercases names that are subject to it. This is equivalent to
+   * round-tripping the record through its canonical wire format.
+   */
+  private static Record canonicalize(Record r, NameTable names) throws IOException
   {
-    Master master = new Master(filename);
+    Name owner = NameTable.toCanonical(names, r.getName());
+    byte[] rdata = r.rdataToWireCanonical();
+    return Record.newRecord(owner, r.getType(), r.getDClass(), r.getTTL(), rdata.length,
+                            rdata);
+  }
 
-    List<Record> res = new ArrayList<Record>();
-    Record r = null;
+  /**
+   * Canonicalize a list of records, in place, on the thread pool, sharing
+   * owner names through the table if it isn't null.
+   */
+  private static Future<List<Record>> canonicalize(ExecutorService pool,
+                                                   final List<Record> records,
+                                                   final NameTable names)
+  {
+    return pool.submit(new Callable<List<Record>>()
+    {
+      public List<Record> call() throws IOException
+      {
+        for (ListIterator<Record> i = records.listIterator(); i.hasNext();)
+        {
+          i.set(canonicalize(i.next(), names));
+        }
+        return records;
+      }
+    });
+  }
 
-    while ((r = master.nextRecord()) != null)
+  private static List<Record> getResult(Future<List<Record>> f) throws IOException
+  {
+    try
     {
-      // Normalize each record by round-tripping it through canonical wire line
-      // format. Mostly this just lowercases names that are subject to it.
-      byte[] wire = r.toWireCanonical();
-      Record canon_record = Record.fromWire(wire, Section.ANSWER);
-      res.add(canon_record);
+      return f.get();
     }
+    catch (InterruptedException e)
+    {
+      throw new IOException("interrupted while formatting zone");
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException("error formatting zone: " + cause);
+    }
+  }
 
-    return res;
+  /**
+   * @return true if the input zone file is small enough to be sorted without
+   *         temporary files.
+   */
+  private boolean fitsInMemory(String filename)
+  {
+    if (filename.equals("-") || filename.endsWith(ZoneUtils.GZIP_SUFFIX)) return false;
+    File f = new File(filename);
+    // assume zone files have at least 64 bytes per record.
+    return f.length() / 64 < state.sortBuffer;
   }
 
-  private static void formatZone(List<Record> zone)
+  /**
+   * Read the entire zone into memory, canonicalize it in parallel, sort it,
+   * and write it out.
+   */
+  private void formatInMemory(ExecutorService pool, int threads) throws IOException
   {
+    NameTable names = new NameTable();
+    List<Record> zone = ZoneUtils.readZoneFile(state.file, null, names);
+
+    int chunkSize = Math.max(1024, zone.size() / (threads * 4) + 1);
+    List<Future<List<Record>>> results = new ArrayList<Future<List<Record>>>();
+    for (int i = 0; i < zone.size(); i += chunkSize)
+    {
+      results.add(canonicalize(pool, zone.subList(i, Math.min(zone.size(), i + chunkSize)),
+                               names));
+    }
+    for (Future<List<Record>> f : results)
+    {
+      getResult(f);
+    }
+
     // Put the zone into a consistent (name and RR type) order.
-    RecordComparator cmp = new RecordComparator();
+    zone = RecordSorter.sort(zone, new RecordComparator(), threads);
 
-    Collections.sort(zone, cmp);
+    NSEC3Index nsec3Names = null;
+    if (state.assignNSEC3) nsec3Names = determineNSEC3Owners(zone, pool, threads);
 
-    for (Record r : zone)
+    int format = state.outputFormat;
+    if (format < 0) format = ZoneUtils.guessZoneFormat(state.outputfile);
+    ZoneUtils.writeZoneFile(zone, state.outputfile, format, nsec3Names);
+  }
+
+  /**
+   * Stream the zone through the canonicalization threads and an external
+   * sort, and write it out as the sorted records are merged.
+   */
+  private void formatStreaming(ExecutorService pool, int threads) throws IOException
+  {
+    int format = state.outputFormat;
+    if (format < 0) format = ZoneUtils.guessZoneFormat(state.outputfile);
+
+    // The snapshot header holds the record count and name table, so it can't
+    // be written until the whole zone has been seen.
+    if (format == ZoneUtils.FORMAT_SNAPSHOT)
+    {
+      throw new IOException("zone is too large to write as a snapshot without sorting "
+          + "it in memory: raise --sort-buffer, or use text or raw output");
+    }
+
+    RecordSorter sorter = new RecordSorter(new RecordComparator(), threads, state.sortBuffer,
+                                           null);
+    try
+    {
+      Record r = null;
+      LinkedList<Future<List<Record>>> pending = new LinkedList<Future<List<Record>>>();
+      ZoneFileReader in = new ZoneFileReader(state.file, null);
+      try
+      {
+        List<Record> batch = new ArrayList<Record>(BATCH_SIZE);
+        while ((r = in.nextRecord()) != null)
+        {
+          batch.add(r);
+          if (batch.size() < BATCH_SIZE) continue;
+
+          pending.add(canonicalize(pool, batch, null));
+          batch = new ArrayList<Record>(BATCH_SIZE);
+          // keep the pool busy, but don't let the parser run too far ahead.
+          while (pending.size() > threads)
+          {
+            sorter.addAll(getResult(pending.removeFirst()));
+          }
+        }
+        if (!batch.isEmpty()) pending.add(canonicalize(pool, batch, null));
+        while (!pending.isEmpty())
+        {
+          sorter.addAll(getResult(pending.removeFirst()));
+        }
+      }
+      finally
+      {
+        in.close();
+      }
+
+      sorter.finish();
+      log.fine("sorted zone using " + sorter.getRunCount() + " temporary files");
+
+      WritableByteChannel out = ZoneUtils.openZoneOutput(state.outputfile);
+      try
+      {
+        if (format == ZoneUtils.FORMAT_RAW)
+        {
+          RawZoneFile.Writer writer = new RawZoneFile.Writer(out);
+          while ((r = sorter.nextRecord()) != null)
+          {
+            writer.write(r);
+          }
+          writer.flush();
+        }
+        else
+        {
+          ZoneWriter writer = new ZoneWriter(out);
+          while ((r = sorter.nextRecord()) != null)
+          {
+            writer.write(r);
+          }
+          writer.flush();
+        }
+      }
+      finally
+      {
+        out.close();
+      }
+    }
+    finally
     {
-      System.out.println(r.toString());
+      sorter.close();
     }
   }
 
-  private static void determineNSEC3Owners(List<Record> zone)
-      throws NoSuchAlgorithmException
+  /**
+   * Calculate the NSEC3 hashes of all of the names in the zone, including
+   * empty non-terminals. Each name is hashed once, and the hashing is spread
+   * across the thread pool. The zone must already be sorted.
+   */
+  private static NSEC3Index hashOwnerNames(List<Record> zone, Name zonename,
+                                           final NSEC3PARAMRecord nsec3param,
+                                           ExecutorService pool, int threads)
+      throws IOException
   {
-    // Put the zone into a consistent (name and RR type) order.
-    Collections.sort(zone, new RecordComparator());
+    // Collect the distinct names, adding the ancestor ENTs of each one. Since
+    // the ancestors of a name already in the set are also in the set, we can
+    // stop climbing at the first one we've already seen.
+    LinkedHashSet<Name> names = new LinkedHashSet<Name>();
+    Name last_name = null;
+    for (Record r : zone)
+    {
+      if (r.getName().equals(last_name)) continue;
+      if (r.getType() == Type.NSEC3) continue;
+
+      Name n = r.getName();
+      last_name = n;
+      if (!names.add(n)) continue;
+
+      for (int i = n.labels() - 1; i > zonename.labels(); --i)
+      {
+        if (!names.add(new Name(n, n.labels() - i))) break;
+      }
+    }
+
+    final List<Name> namelist = new ArrayList<Name>(names);
+    int chunkSize = Math.max(1024, namelist.size() / (threads * 4) + 1);
+    List<Future<byte[][]>> results = new ArrayList<Future<byte[][]>>();
+    for (int i = 0; i < namelist.size(); i += chunkSize)
+    {
+      final List<Name> chunk = namelist.subList(i, Math.min(namelist.size(), i + chunkSize));
+      results.add(pool.submit(new Callable<byte[][]>()
+      {
+        public byte[][] call() throws NoSuchAlgorithmException
+        {
+          byte[][] hashes = new byte[chunk.size()][];
+          for (int j = 0; j < hashes.length; j++)
+          {
+            hashes[j] = SignUtils.nsec3hash(chunk.get(j), nsec3param.getHashAlgorithm(),
+                                            nsec3param.getIterations(),
+                                            nsec3param.getSalt());
+          }
+          return hashes;
+        }
+      }));
+    }
+
+    NSEC3Index index = new NSEC3Index(nsec3param.getHashAlgorithm(),
+                                      nsec3param.getIterations(), nsec3param.getSalt());
+    int pos = 0;
+    for (Future<byte[][]> f : results)
+    {
+      byte[][] hashes = null;
+      try
+      {
+        hashes = f.get();
+      }
+      catch (InterruptedException e)
+      {
+        throw new IOException("interrupted while hashing names");
+      }
+      catch (ExecutionException e)
+      {
+        throw new IOException("error hashing names: " + e.getCause());
+      }
+      for (byte[] hash : hashes)
+      {
+        index.put(hash, namelist.get(pos++).toString().toLowerCase());
+      }
+    }
+    return index;
+  }
 
+  /**
+   * Assign the original owner names (as comments) to the NSEC3 records. The
+   * zone must already be sorted. Names are taken from the NSEC3 index file,
+   * if one was given, and calculated otherwise.
+   * 
+   * @return the names that were assigned, or null if the zone isn't NSEC3
+   *         signed.
+   */
+  private NSEC3Index determineNSEC3Owners(List<Record> zone, ExecutorService pool,
+                                          int threads) throws IOException
+  {
     // first, find the NSEC3PARAM record -- this is an inefficient linear
     // search, although it should be near the head of the list.
     NSEC3PARAMRecord nsec3param = null;
-    HashMap<String, String> map = new HashMap<String, String>();
-    base32 b32 = new base32(base32.Alphabet.BASE32HEX, false, true);
     Name zonename = null;
 
     for (Record r : zone)
@@ -148,44 +453,48 @@ public class ZoneFormat extends CLBase
     }
 
     // If we couldn't determine a zone name, we have an issue.
-    if (zonename == null) return;
+    if (zonename == null) return null;
     // If there wasn't one, we have nothing to do.
-    if (nsec3param == null) return;
+    if (nsec3param == null) return null;
 
-    // Next pass, calculate a mapping between ownernames and hashnames
-    Name last_name = null;
-    for (Record r : zone)
+    NSEC3Index index = null;
+    if (state.nsec3IndexFile != null)
     {
-      if (r.getName().equals(last_name)) continue;
-      if (r.getType() == Type.NSEC3) continue;
-
-      Name n = r.getName();
-      byte[] hash = nsec3param.hashName(n);
-      String hashname = b32.toString(hash);
-      map.put(hashname, n.toString().toLowerCase());
-      last_name = n;
-
-      // inefficiently create hashes for the possible ancestor ENTs
-      for (int i = zonename.labels() + 1; i < n.labels(); ++i)
+      index = NSEC3Index.read(new File(state.nsec3IndexFile));
+      if (!index.matches(nsec3param))
       {
-        Name parent = new Name(n, n.labels() - i);
-        byte[] parent_hash = nsec3param.hashName(parent);
-        String parent_hashname = b32.toString(parent_hash);
-        if (!map.containsKey(parent_hashname))
-        {
-          map.put(parent_hashname, parent.toString().toLowerCase());
-        }
+        log.warning("NSEC3 index " + state.nsec3IndexFile
+            + " doesn't match the zone's NSEC3 parameters, ignoring it");
+        index = null;
       }
     }
 
+    // Only hash the zone if the index doesn't cover every NSEC3 record.
+    NSEC3Index hashed = null;
+    boolean complete = index != null;
+    for (Record r : zone)
+    {
+      if (!complete) break;
+      if (r.getType() != Type.NSEC3) continue;
+      if (index.get(r.getName().getLabelString(0)) == null) complete = false;
+    }
+    if (!complete)
+    {
+      hashed = hashOwnerNames(zone, zonename, nsec3param, pool, threads);
+    }
+
     // Final pass, assign the names if we can
+    NSEC3Index assigned = new NSEC3Index(nsec3param.getHashAlgorithm(),
+                                         nsec3param.getIterations(), nsec3param.getSalt());
     for (ListIterator<Record> i = zone.listIterator(); i.hasNext();)
     {
       Record r = i.next();
       if (r.getType() != Type.NSEC3) continue;
       NSEC3Record nsec3 = (NSEC3Record) r;
-      String hashname = nsec3.getName().getLabelString(0).toLowerCase();
-      String ownername = (String) map.get(hashname);
+      String hashname = nsec3.getName().getLabelString(0);
+      String ownername = index != null ? index.get(hashname) : null;
+      if (ownername == null && hashed != null) ownername = hashed.get(hashname);
+      if (ownername != null) assigned.put(hashname, ownername);
 
       NSEC3Record new_nsec3 = new NSEC3Record(nsec3.getName(), nsec3.getDClass(),
                                               nsec3.getTTL(), nsec3.getHashAlgorithm(),
@@ -194,21 +503,42 @@ public class ZoneFormat extends CLBase
                                               nsec3.getTypes(), ownername);
       i.set(new_nsec3);
     }
+    return assigned;
   }
 
   public void execute() throws IOException, NoSuchAlgorithmException
   {
-    List<Record> z = readZoneFile(state.file);
-    if (state.assignNSEC3) determineNSEC3Owners(z);
-    formatZone(z);
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try
+    {
+      // Assigning NSEC3 owner names needs the whole zone.
+      if (state.assignNSEC3 || fitsInMemory(state.file))
+      {
+        formatInMemory(pool, threads);
+      }
+      else
+      {
+        formatStreaming(pool, threads);
+      }
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+  }
+
+  protected CLIStateBase createState()
+  {
+    state = new CLIState();
+    return state;
   }
 
   public static void main(String[] args)
   {
     ZoneFormat tool = new ZoneFormat();
-    tool.state = new CLIState();
 
-    tool.run(tool.state, args);
+    System.exit(tool.run(args));
   }
 
 }
@@ -0,0 +1,58 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** A simple InputStream view of a (typically memory mapped) ByteBuffer. */
+class ByteBufferInputStream extends InputStream
+{
+  private ByteBuffer mBuf;
+
+  public ByteBufferInputStream(ByteBuffer buf)
+  {
+    mBuf = buf;
+  }
+
+  public int read()
+  {
+    if (!mBuf.hasRemaining()) return -1;
+    return mBuf.get() & 0xFF;
+  }
+
+  public int read(byte[] b, int off, int len)
+  {
+    if (!mBuf.hasRemaining()) return -1;
+    len = Math.min(len, mBuf.remaining());
+    mBuf.get(b, off, len);
+    return len;
+  }
+
+  public long skip(long n)
+  {
+    int len = (int) Math.max(0, Math.min(n, mBuf.remaining()));
+    mBuf.position(mBuf.position() + len);
+    return len;
+  }
+
+  public int available()
+  {
+    return mBuf.remaining();
+  }
+}
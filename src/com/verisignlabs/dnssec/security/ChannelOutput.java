@@ -0,0 +1,107 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A simple buffered writer of big-endian binary data to a channel, which keeps
+ * track of the absolute position in the output.
+ */
+class ChannelOutput
+{
+  private WritableByteChannel mChannel;
+  private byte[]              mBuf = new byte[1024 * 1024];
+  private int                 mLen = 0;
+  private long                mFlushed = 0;
+
+  public ChannelOutput(WritableByteChannel channel)
+  {
+    mChannel = channel;
+  }
+
+  public long position()
+  {
+    return mFlushed + mLen;
+  }
+
+  private void ensure(int n) throws IOException
+  {
+    if (mLen + n <= mBuf.length) return;
+    flush();
+    if (n > mBuf.length) mBuf = new byte[n];
+  }
+
+  public void u16(int v) throws IOException
+  {
+    ensure(2);
+    mBuf[mLen++] = (byte) (v >>> 8);
+    mBuf[mLen++] = (byte) v;
+  }
+
+  public void u32(long v) throws IOException
+  {
+    ensure(4);
+    mBuf[mLen++] = (byte) (v >>> 24);
+    mBuf[mLen++] = (byte) (v >>> 16);
+    mBuf[mLen++] = (byte) (v >>> 8);
+    mBuf[mLen++] = (byte) v;
+  }
+
+  public void u64(long v) throws IOException
+  {
+    u32(v >>> 32);
+    u32(v & 0xFFFFFFFFL);
+  }
+
+  public void varint(int v) throws IOException
+  {
+    ensure(5);
+    while ((v & ~0x7F) != 0)
+    {
+      mBuf[mLen++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    mBuf[mLen++] = (byte) v;
+  }
+
+  public void bytes(byte[] b) throws IOException
+  {
+    bytes(b, 0, b.length);
+  }
+
+  public void bytes(byte[] b, int off, int len) throws IOException
+  {
+    ensure(len);
+    System.arraycopy(b, off, mBuf, mLen, len);
+    mLen += len;
+  }
+
+  public void flush() throws IOException
+  {
+    ByteBuffer bb = ByteBuffer.wrap(mBuf, 0, mLen);
+    while (bb.hasRemaining())
+    {
+      mChannel.write(bb);
+    }
+    mFlushed += mLen;
+    mLen = 0;
+  }
+}
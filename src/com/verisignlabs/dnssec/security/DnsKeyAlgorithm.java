@@ -35,6 +35,8 @@ import java.security.spec.*;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Logger;
 
 import org.xbill.DNS.DNSSEC;
@@ -105,19 +107,58 @@ public class DnsKeyAlgorithm
    */
   private HashMap<Integer, String> mIdToMnemonicMap;
 
-  /** This is a cached key pair generator for RSA keys. */
-  private KeyPairGenerator         mRSAKeyGenerator;
-  /** This is a cached key pair generator for DSA keys. */
-  private KeyPairGenerator         mDSAKeyGenerator;
-  /** This is a cached key pair generator for ECC GOST keys. */
-  private KeyPairGenerator         mECGOSTKeyGenerator;
-  /** This is a cached key pair generator for ECDSA_P256 keys. */
-  private KeyPairGenerator         mECKeyGenerator;
+  /**
+   * These are the cached key pair generators (by JCA algorithm name). Key pair
+   * generators aren't thread-safe, so each thread gets its own.
+   */
+  private ThreadLocal<HashMap<String, KeyPairGenerator>> mKeyGenerators =
+      new ThreadLocal<HashMap<String, KeyPairGenerator>>()
+  {
+    protected HashMap<String, KeyPairGenerator> initialValue()
+    {
+      return new HashMap<String, KeyPairGenerator>();
+    }
+  };
+  /** The per-thread source of randomness for key generation. */
+  private ThreadLocal<SecureRandom> mRandom = new ThreadLocal<SecureRandom>()
+  {
+    protected SecureRandom initialValue()
+    {
+      // Prefer a source that never blocks waiting for entropy.
+      try
+      {
+        return SecureRandom.getInstance("NativePRNGNonBlocking");
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+        return new SecureRandom();
+      }
+    }
+  };
 
   private Logger                   log = Logger.getLogger(this.getClass().toString());
 
-  /** This is the global instance for this class. */
-  private static DnsKeyAlgorithm   mInstance = null;
+  /**
+   * The most idle objects kept in each pool. An idle Signature still holds the
+   * key it was last initialized with, so the pools are kept small.
+   */
+  private static final int MAX_IDLE = Math.max(4, 2 * Runtime.getRuntime()
+      .availableProcessors());
+  /**
+   * These are pools of idle Signature and MessageDigest objects, keyed by
+   * type, algorithm name and provider.
+   */
+  private ConcurrentHashMap<String, ConcurrentLinkedQueue<Object>> mPools =
+      new ConcurrentHashMap<String, ConcurrentLinkedQueue<Object>>();
+  /** This maps type and algorithm name to the provider normally chosen. */
+  private ConcurrentHashMap<String, String> mDefaultProviders =
+      new ConcurrentHashMap<String, String>();
+
+  /** This holds the global instance for this class. */
+  private static class InstanceHolder
+  {
+    static final DnsKeyAlgorithm INSTANCE = new DnsKeyAlgorithm();
+  }
 
   public DnsKeyAlgorithm()
   {
@@ -331,6 +372,142 @@ public class DnsKeyAlgorithm
     return s;
   }
 
+  private String poolKey(String type, String name, String provider)
+  {
+    return type + ":" + name + ":" + provider;
+  }
+
+  /**
+   * @return an idle object from the pool, or null if there isn't one. If the
+   *         provider is null, the pool for the default provider is used.
+   */
+  private Object poll(String type, String name, String provider)
+  {
+    if (provider == null) provider = mDefaultProviders.get(type + ":" + name);
+    if (provider == null) return null;
+    ConcurrentLinkedQueue<Object> pool = mPools.get(poolKey(type, name, provider));
+    return pool != null ? pool.poll() : null;
+  }
+
+  private void release(String type, String name, Provider provider, Object o)
+  {
+    String key = poolKey(type, name, provider.getName());
+    ConcurrentLinkedQueue<Object> pool = mPools.get(key);
+    if (pool == null)
+    {
+      mPools.putIfAbsent(key, new ConcurrentLinkedQueue<Object>());
+      pool = mPools.get(key);
+    }
+    // the size is only approximate under contention, which is fine for a cap.
+    if (pool.size() < MAX_IDLE) pool.offer(o);
+  }
+
+  /**
+   * Borrow a Signature object for the specified DNSSEC algorithm. It must be
+   * initialized (for signing or verifying) before use, and should be given
+   * back with {@link #releaseSignature(Signature)} when done (unless the
+   * initialization failed). This may be called from multiple threads at once.
+   * 
+   * @param algorithm
+   *          The DNSSEC algorithm (by number).
+   * @throws NoSuchAlgorithmException
+   *           if the algorithm isn't supported.
+   */
+  public Signature borrowSignature(int algorithm) throws NoSuchAlgorithmException
+  {
+    AlgEntry entry = getEntry(algorithm);
+    if (entry == null) throw new NoSuchAlgorithmException("Alg " + algorithm);
+    return borrowSignature(entry.sigName, null);
+  }
+
+  /**
+   * Borrow a Signature object by JCA name.
+   * 
+   * @param provider
+   *          the provider to use (null for the default).
+   */
+  public Signature borrowSignature(String name, String provider)
+      throws NoSuchAlgorithmException
+  {
+    Signature s = (Signature) poll("Signature", name, provider);
+    if (s != null) return s;
+
+    try
+    {
+      s = provider == null ? Signature.getInstance(name)
+          : Signature.getInstance(name, provider);
+    }
+    catch (NoSuchProviderException e)
+    {
+      throw new NoSuchAlgorithmException(e.getMessage());
+    }
+    // The provider isn't asked for here: with the default provider, that
+    // would choose one before the key is known. It is noted on release.
+    return s;
+  }
+
+  /**
+   * Give back a Signature object borrowed from this class. It must have been
+   * initialized successfully; one that failed to initialize should simply be
+   * dropped.
+   */
+  public void releaseSignature(Signature s)
+  {
+    if (s == null) return;
+    Provider provider = s.getProvider();
+    mDefaultProviders.putIfAbsent("Signature:" + s.getAlgorithm(), provider.getName());
+    release("Signature", s.getAlgorithm(), provider, s);
+  }
+
+  /**
+   * Borrow a MessageDigest object (for the default provider). It should be
+   * given back with {@link #releaseDigest(MessageDigest)} when done. This may
+   * be called from multiple threads at once.
+   * 
+   * @param name
+   *          the JCA digest name, e.g., "SHA-256".
+   */
+  public MessageDigest borrowDigest(String name) throws NoSuchAlgorithmException
+  {
+    return borrowDigest(name, null);
+  }
+
+  /**
+   * Borrow a MessageDigest object.
+   * 
+   * @param provider
+   *          the provider to use (null for the default).
+   */
+  public MessageDigest borrowDigest(String name, String provider)
+      throws NoSuchAlgorithmException
+  {
+    MessageDigest md = (MessageDigest) poll("MessageDigest", name, provider);
+    if (md != null) return md;
+
+    try
+    {
+      md = provider == null ? MessageDigest.getInstance(name)
+          : MessageDigest.getInstance(name, provider);
+    }
+    catch (NoSuchProviderException e)
+    {
+      throw new NoSuchAlgorithmException(e.getMessage());
+    }
+    if (provider == null)
+    {
+      mDefaultProviders.putIfAbsent("MessageDigest:" + name, md.getProvider().getName());
+    }
+    return md;
+  }
+
+  /** Give back a MessageDigest object borrowed from this class. */
+  public void releaseDigest(MessageDigest md)
+  {
+    if (md == null) return;
+    md.reset();
+    release("MessageDigest", md.getAlgorithm(), md.getProvider(), md);
+  }
+
   /**
    * Given one of the ECDSA algorithms (ECDSAP256SHA256, etc.) return
    * the elliptic curve parameters.
@@ -419,6 +596,22 @@ public class DnsKeyAlgorithm
     return (baseType(algorithm) == DSA);
   }
 
+  /** @return this thread's key pair generator for the JCA algorithm. */
+  private KeyPairGenerator getKeyGenerator(String alg) throws NoSuchAlgorithmException
+  {
+    HashMap<String, KeyPairGenerator> generators = mKeyGenerators.get();
+    KeyPairGenerator g = generators.get(alg);
+    if (g == null)
+    {
+      g = KeyPairGenerator.getInstance(alg);
+      generators.put(alg, g);
+    }
+    return g;
+  }
+
+  /**
+   * Generate a key pair. This may be called from multiple threads at once.
+   */
   public KeyPair generateKeyPair(int algorithm, int keysize, boolean useLargeExp)
       throws NoSuchAlgorithmException
   {
@@ -427,10 +620,7 @@ public class DnsKeyAlgorithm
     {
       case RSA:
       {
-        if (mRSAKeyGenerator == null)
-        {
-          mRSAKeyGenerator = KeyPairGenerator.getInstance("RSA");
-        }
+        KeyPairGenerator rsaKeyGenerator = getKeyGenerator("RSA");
 
         RSAKeyGenParameterSpec rsa_spec;
         if (useLargeExp)
@@ -443,7 +633,7 @@ public class DnsKeyAlgorithm
         }
         try
         {
-          mRSAKeyGenerator.initialize(rsa_spec);
+          rsaKeyGenerator.initialize(rsa_spec, mRandom.get());
         }
         catch (InvalidAlgorithmParameterException e)
         {
@@ -452,30 +642,24 @@ public class DnsKeyAlgorithm
           throw new NoSuchAlgorithmException("invalid key parameter spec");
         }
 
-        pair = mRSAKeyGenerator.generateKeyPair();
+        pair = rsaKeyGenerator.generateKeyPair();
         break;
       }
       case DSA:
       {
-        if (mDSAKeyGenerator == null)
-        {
-          mDSAKeyGenerator = KeyPairGenerator.getInstance("DSA");
-        }
-        mDSAKeyGenerator.initialize(keysize);
-        pair = mDSAKeyGenerator.generateKeyPair();
+        KeyPairGenerator dsaKeyGenerator = getKeyGenerator("DSA");
+        dsaKeyGenerator.initialize(keysize, mRandom.get());
+        pair = dsaKeyGenerator.generateKeyPair();
         break;
       }
       case ECC_GOST:
       {
-        if (mECGOSTKeyGenerator == null)
-        {
-          mECGOSTKeyGenerator = KeyPairGenerator.getInstance("ECGOST3410");
-        }
+        KeyPairGenerator ecgostKeyGenerator = getKeyGenerator("ECGOST3410");
 
         ECParameterSpec ec_spec = getEllipticCurveParams(algorithm);
         try
         {
-          mECGOSTKeyGenerator.initialize(ec_spec);
+          ecgostKeyGenerator.initialize(ec_spec, mRandom.get());
         }
         catch (InvalidAlgorithmParameterException e)
         {
@@ -483,20 +667,17 @@ public class DnsKeyAlgorithm
           // thrown exception. Ugly, but requires less code change.
           throw new NoSuchAlgorithmException("invalid key parameter spec");
         }
-        pair = mECGOSTKeyGenerator.generateKeyPair();
+        pair = ecgostKeyGenerator.generateKeyPair();
         break;
       }
       case ECDSA:
       {
-        if (mECKeyGenerator == null)
-        {
-          mECKeyGenerator = KeyPairGenerator.getInstance("EC");
-        }
+        KeyPairGenerator ecKeyGenerator = getKeyGenerator("EC");
 
         ECParameterSpec ec_spec = getEllipticCurveParams(algorithm);
         try
         {
-          mECKeyGenerator.initialize(ec_spec);
+          ecKeyGenerator.initialize(ec_spec, mRandom.get());
         }
         catch (InvalidAlgorithmParameterException e)
         {
@@ -504,7 +685,7 @@ public class DnsKeyAlgorithm
           // thrown exception. Ugly, but requires less code change.
           throw new NoSuchAlgorithmException("invalid key parameter spec");
         }
-        pair = mECKeyGenerator.generateKeyPair();
+        pair = ecKeyGenerator.generateKeyPair();
         break;
       }
       default:
@@ -520,9 +701,9 @@ public class DnsKeyAlgorithm
     return generateKeyPair(algorithm, keysize, false);
   }
 
+  /** @return the global instance. This is safe to call from any thread. */
   public static DnsKeyAlgorithm getInstance()
   {
-    if (mInstance == null) mInstance = new DnsKeyAlgorithm();
-    return mInstance;
+    return InstanceHolder.INSTANCE;
   }
 }
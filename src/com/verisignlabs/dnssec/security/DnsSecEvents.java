@@ -0,0 +1,368 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * This class emits JDK Flight Recorder events for the signing and
+ * verification hot paths: signing an RRset with a key, verifying a signature,
+ * hashing the NSEC3 owner names of a zone, sorting a zone, and reading and
+ * writing zone files. Start a recording (for example with
+ * "-XX:StartFlightRecording" or "jcmd &lt;pid&gt; JFR.start") and the events
+ * show up under "DNSSEC", with their sizes, algorithms and key tags.
+ *
+ * Since this code is built for Java versions that don't have the JFR API,
+ * the event types are created at run time (with jdk.jfr.EventFactory, found
+ * by reflection). That is only done once the flight recorder is running,
+ * since setting it up takes a while: at startup, if the JVM was started with
+ * a recording, or otherwise within a second of a recording being started.
+ * Where there is no JFR, or with -Djdnssec.jfr=false, nothing is emitted.
+ * While no recording is running, {@link #begin} is just the check of a flag.
+ *
+ * The usage pattern is:
+ *
+ * <pre>
+ * Object ev = DnsSecEvents.begin(DnsSecEvents.SIGN_RRSET);
+ * // ... do the work ...
+ * if (ev != null) DnsSecEvents.commit(ev, owner, type, ...);
+ * </pre>
+ *
+ * where the values are given in the order of the event type's fields.
+ */
+public class DnsSecEvents
+{
+  /** One kind of event. */
+  public static class EventType
+  {
+    private String           mName;
+    private String           mLabel;
+    private String           mDescription;
+    private Object[]         mFields;
+    private Object           mFactory;
+    private Object           mType;
+    private volatile boolean mEnabled = false;
+
+    private EventType(String name, String label, String description, Object[] fields)
+    {
+      mName = name;
+      mLabel = label;
+      mDescription = description;
+      mFields = fields;
+    }
+
+    /** @return true if a running recording wants these events. */
+    public boolean isEnabled()
+    {
+      return mEnabled;
+    }
+
+    /** Create the JFR event type. */
+    private void create() throws Exception
+    {
+      List<Object> annotations = new ArrayList<Object>();
+      annotations.add(annotation("Name", "com.verisignlabs.dnssec." + mName));
+      annotations.add(annotation("Label", mLabel));
+      annotations.add(annotation("Description", mDescription));
+      annotations.add(annotation("Category", new String[] { "DNSSEC" }));
+
+      List<Object> values = new ArrayList<Object>();
+      for (int i = 0; i < mFields.length; i += 2)
+      {
+        values.add(sField.newInstance(mFields[i], mFields[i + 1]));
+      }
+
+      mFactory = sCreate.invoke(null, annotations, values);
+      mType = mFactory.getClass().getMethod("getEventType").invoke(mFactory);
+    }
+
+    private void update()
+    {
+      try
+      {
+        mEnabled = mType != null && (Boolean) sIsEnabled.invoke(mType);
+      }
+      catch (Exception e)
+      {
+        mEnabled = false;
+      }
+    }
+  }
+
+  /** How often to check whether the flight recorder has been started. */
+  private static final long      POLL_INTERVAL = 1000;
+
+  private static Logger          log           = Logger.getLogger(DnsSecEvents.class.toString());
+
+  private static List<EventType> sTypes        = new ArrayList<EventType>();
+  private static boolean         sActive       = false;
+  private static Method          sNewEvent;
+  private static Method          sIsEnabled;
+  private static Method          sBegin;
+  private static Method          sEnd;
+  private static Method          sShouldCommit;
+  private static Method          sSet;
+  private static Method          sCommit;
+  private static Constructor<?>  sAnnotation;
+  private static Constructor<?>  sField;
+  private static Method          sCreate;
+
+  /**
+   * Signing an RRset with one key: owner name, type mnemonic, number of
+   * records, size of the data signed, algorithm and key tag.
+   */
+  public static final EventType  SIGN_RRSET       = define("SignRRset", "Sign RRset",
+                                                           "Signing an RRset with one key",
+                                                           String.class, "owner",
+                                                           String.class, "type", int.class,
+                                                           "records", int.class, "dataSize",
+                                                           int.class, "algorithm", int.class,
+                                                           "keyTag");
+
+  /**
+   * Verifying one RRSIG: owner name, type mnemonic, number of records,
+   * signature size, algorithm, key tag and the result.
+   */
+  public static final EventType  VERIFY_SIGNATURE = define("VerifySignature",
+                                                           "Verify Signature",
+                                                           "Verifying one RRSIG over an RRset",
+                                                           String.class, "owner",
+                                                           String.class, "type", int.class,
+                                                           "records", int.class,
+                                                           "signatureSize", int.class,
+                                                           "algorithm", int.class, "keyTag",
+                                                           boolean.class, "verified");
+
+  /**
+   * Generating the NSEC3 records of a zone: zone name, number of names
+   * hashed, iterations and salt length.
+   */
+  public static final EventType  NSEC3_HASH       = define("NSEC3Hash", "NSEC3 Hashing",
+                                                           "Hashing the NSEC3 owner names "
+                                                               + "of a zone", String.class,
+                                                           "zone", int.class, "names",
+                                                           int.class, "iterations",
+                                                           int.class, "saltLength");
+
+  /** Sorting a zone into canonical order: zone name and number of records. */
+  public static final EventType  SORT             = define("CanonicalSort", "Canonical Sort",
+                                                           "Sorting a zone into canonical "
+                                                               + "order", String.class,
+                                                           "zone", int.class, "records");
+
+  /** Reading a zone file: file name and number of records. */
+  public static final EventType  ZONE_READ        = define("ZoneRead", "Zone Read",
+                                                           "Reading a zone file",
+                                                           String.class, "file", int.class,
+                                                           "records");
+
+  /** Writing a zone file: file name, number of records and format. */
+  public static final EventType  ZONE_WRITE       = define("ZoneWrite", "Zone Write",
+                                                           "Writing a zone file",
+                                                           String.class, "file", int.class,
+                                                           "records", int.class, "format");
+
+  static
+  {
+    init();
+  }
+
+  /**
+   * Describe an event type.
+   *
+   * @param fields
+   *          the type and name of each field.
+   */
+  private static EventType define(String name, String label, String description,
+                                  Object... fields)
+  {
+    EventType type = new EventType(name, label, description, fields);
+    sTypes.add(type);
+    return type;
+  }
+
+  /**
+   * Create the event types now if the flight recorder is running, or else
+   * watch for it to be started.
+   */
+  private static void init()
+  {
+    if ("false".equals(System.getProperty("jdnssec.jfr"))) return;
+
+    final Method isInitialized;
+    try
+    {
+      isInitialized = Class.forName("jdk.jfr.FlightRecorder").getMethod("isInitialized");
+      if ((Boolean) isInitialized.invoke(null))
+      {
+        activate();
+        return;
+      }
+    }
+    catch (Throwable e)
+    {
+      // No JFR.
+      return;
+    }
+
+    Thread watcher = new Thread("jfr-watch")
+    {
+      public void run()
+      {
+        try
+        {
+          while (!(Boolean) isInitialized.invoke(null))
+          {
+            Thread.sleep(POLL_INTERVAL);
+          }
+          activate();
+        }
+        catch (Exception e)
+        {
+          // give up.
+        }
+      }
+    };
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object annotation(String name, Object value) throws Exception
+  {
+    Class<? extends Annotation> c = (Class<? extends Annotation>) Class.forName("jdk.jfr."
+        + name);
+    return sAnnotation.newInstance(c, value);
+  }
+
+  /** Look up the JFR API and create the event types. */
+  private static synchronized void activate()
+  {
+    if (sActive) return;
+    try
+    {
+      Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+      Class<?> event = Class.forName("jdk.jfr.Event");
+      sCreate = factory.getMethod("create", List.class, List.class);
+      sNewEvent = factory.getMethod("newEvent");
+      sIsEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+      sBegin = event.getMethod("begin");
+      sEnd = event.getMethod("end");
+      sShouldCommit = event.getMethod("shouldCommit");
+      sSet = event.getMethod("set", int.class, Object.class);
+      sCommit = event.getMethod("commit");
+      sAnnotation = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class,
+                                                                              Object.class);
+      sField = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class,
+                                                                       String.class);
+      for (EventType t : sTypes)
+      {
+        t.create();
+      }
+      sActive = true;
+
+      // Keep the enabled flags up to date as recordings start and stop.
+      Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener");
+      Object proxy = Proxy.newProxyInstance(listener.getClassLoader(),
+                                            new Class<?>[] { listener },
+                                            new InvocationHandler()
+                                            {
+                                              public Object invoke(Object p, Method m,
+                                                                   Object[] args)
+                                              {
+                                                if (m.getName().equals("recordingStateChanged"))
+                                                {
+                                                  updateAll();
+                                                }
+                                                return null;
+                                              }
+                                            });
+      Class.forName("jdk.jfr.FlightRecorder").getMethod("addListener", listener)
+          .invoke(null, proxy);
+      updateAll();
+    }
+    catch (Throwable e)
+    {
+      log.fine("unable to create JFR events: " + e);
+    }
+  }
+
+  private static synchronized void updateAll()
+  {
+    if (!sActive) return;
+    for (EventType t : sTypes)
+    {
+      t.update();
+    }
+  }
+
+  /**
+   * Start timing an event.
+   *
+   * @return the event, or null if no recording wants it.
+   */
+  public static Object begin(EventType type)
+  {
+    if (!type.mEnabled) return null;
+    try
+    {
+      Object event = sNewEvent.invoke(type.mFactory);
+      sBegin.invoke(event);
+      return event;
+    }
+    catch (Exception e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Finish an event started with {@link #begin}, and record it (unless it is
+   * below the recording's duration threshold).
+   *
+   * @param event
+   *          the event; if null, nothing is done.
+   * @param values
+   *          the values of the event type's fields, in order.
+   */
+  public static void commit(Object event, Object... values)
+  {
+    if (event == null) return;
+    try
+    {
+      sEnd.invoke(event);
+      if (!(Boolean) sShouldCommit.invoke(event)) return;
+      for (int i = 0; i < values.length; i++)
+      {
+        sSet.invoke(event, i, values[i]);
+      }
+      sCommit.invoke(event);
+    }
+    catch (Exception e)
+    {
+      log.fine("unable to record JFR event: " + e);
+    }
+  }
+}
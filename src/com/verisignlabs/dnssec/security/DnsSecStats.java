@@ -0,0 +1,451 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class collects performance statistics for zone signing or
+ * verification: the time spent in each phase (sorting, NSEC3 generation,
+ * signing, and so on), the number of RRsets and signatures, the signatures
+ * (and the time spent on the cryptography) per key and algorithm, the number
+ * of hash operations, and the heap use. It can be written out as a JSON
+ * report, and registered as a JMX MBean so a long-running process can be
+ * watched with jconsole and the like.
+ *
+ * It is thread-safe, so one instance can gather the statistics for zones
+ * being signed at the same time; phase times are then the sum over all the
+ * threads. Signatures are counted without taking the lock, as there is one
+ * per signed RRset and key; the totals are only added up when they are read.
+ * Pass one to {@link JCEDnsSecSigner#setStats} or
+ * {@link ZoneVerifier#setStats} to use it.
+ */
+public class DnsSecStats implements DnsSecStatsMXBean
+{
+  /** The JMX domain the statistics are registered in. */
+  public static final String JMX_DOMAIN = "com.verisignlabs.dnssec";
+
+  /** The accumulated count and time for a phase, key or algorithm. */
+  private static class Counter
+  {
+    public long count;
+    public long nanos;
+  }
+
+  /** A {@link Counter} that can be updated without a lock. */
+  private static class AtomicCounter
+  {
+    public final AtomicLong count = new AtomicLong();
+    public final AtomicLong nanos = new AtomicLong();
+  }
+
+  private String                       mOperation;
+  private long                         mStartTime;
+  private long                         mStartNanos;
+  private long                         mZones;
+  private long                         mRRsets;
+  private long                         mHashes;
+  private long                         mPeakHeap;
+  private long                         mHeapPoolPeaks;
+  private LinkedHashMap<String, Counter> mPhases;
+  /** Signature counters, keyed by algorithm << 16 | key tag. */
+  private final ConcurrentHashMap<Integer, AtomicCounter> mKeys =
+      new ConcurrentHashMap<Integer, AtomicCounter>();
+  private ObjectName                   mObjectName;
+
+  /**
+   * @param operation
+   *          what is being measured: "sign" or "verify".
+   */
+  public DnsSecStats(String operation)
+  {
+    mOperation = operation;
+    reset();
+  }
+
+  public synchronized void reset()
+  {
+    mStartTime = System.currentTimeMillis();
+    mStartNanos = System.nanoTime();
+    mZones = 0;
+    mRRsets = 0;
+    mHashes = 0;
+    mPeakHeap = 0;
+    mHeapPoolPeaks = 0;
+    mPhases = new LinkedHashMap<String, Counter>();
+    mKeys.clear();
+    sampleHeap();
+  }
+
+  /**
+   * Note the end of a phase.
+   *
+   * @param phase
+   *          the name of the phase.
+   * @param startNanos
+   *          the {@link System#nanoTime()} at the start of the phase.
+   * @return the time now, so that it can be the start of the next phase.
+   */
+  public long endPhase(String phase, long startNanos)
+  {
+    long now = System.nanoTime();
+    synchronized (this)
+    {
+      Counter c = mPhases.get(phase);
+      if (c == null)
+      {
+        c = new Counter();
+        mPhases.put(phase, c);
+      }
+      c.count++;
+      c.nanos += now - startNanos;
+      // Sample here as phases tend to end when the most memory is in use.
+      sampleHeap();
+    }
+    return now;
+  }
+
+  public synchronized void addZone()
+  {
+    mZones++;
+  }
+
+  public synchronized void addRRsets(long count)
+  {
+    mRRsets += count;
+  }
+
+  public synchronized void addHashes(long count)
+  {
+    mHashes += count;
+  }
+
+  /**
+   * Count a signature generated or verified.
+   *
+   * @param nanos
+   *          the time the cryptographic operation took.
+   */
+  public void addSignature(int algorithm, int keytag, long nanos)
+  {
+    Integer key = Integer.valueOf(algorithm << 16 | keytag);
+    AtomicCounter c = mKeys.get(key);
+    if (c == null)
+    {
+      c = new AtomicCounter();
+      AtomicCounter prev = mKeys.putIfAbsent(key, c);
+      if (prev != null) c = prev;
+    }
+    c.count.incrementAndGet();
+    c.nanos.addAndGet(nanos);
+  }
+
+  /**
+   * Sample the heap in use. Samples miss any peak between them, so also note
+   * the heap pools' own peaks. Those are reached at different times, so their
+   * sum is only an upper bound on the peak heap use; they are also the
+   * JVM's, so in a long-running process they cover its whole life.
+   */
+  private void sampleHeap()
+  {
+    long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    if (used > mPeakHeap) mPeakHeap = used;
+
+    long poolPeaks = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+    {
+      if (pool.getType() == MemoryType.HEAP) poolPeaks += pool.getPeakUsage().getUsed();
+    }
+    if (poolPeaks > mHeapPoolPeaks) mHeapPoolPeaks = poolPeaks;
+  }
+
+  /** @return the signature counts and times per key, in key order. */
+  private TreeMap<Integer, Counter> keyCounters()
+  {
+    TreeMap<Integer, Counter> m = new TreeMap<Integer, Counter>();
+    for (Map.Entry<Integer, AtomicCounter> e : mKeys.entrySet())
+    {
+      Counter c = new Counter();
+      c.count = e.getValue().count.get();
+      c.nanos = e.getValue().nanos.get();
+      m.put(e.getKey(), c);
+    }
+    return m;
+  }
+
+  /** @return the signature counts and times per algorithm, in order. */
+  private static TreeMap<Integer, Counter> algorithmCounters(Map<Integer, Counter> keys)
+  {
+    TreeMap<Integer, Counter> m = new TreeMap<Integer, Counter>();
+    for (Map.Entry<Integer, Counter> e : keys.entrySet())
+    {
+      Integer alg = Integer.valueOf(e.getKey().intValue() >>> 16);
+      Counter c = m.get(alg);
+      if (c == null)
+      {
+        c = new Counter();
+        m.put(alg, c);
+      }
+      c.count += e.getValue().count;
+      c.nanos += e.getValue().nanos;
+    }
+    return m;
+  }
+
+  private static long signatureCount(Map<Integer, Counter> keys)
+  {
+    long count = 0;
+    for (Counter c : keys.values())
+    {
+      count += c.count;
+    }
+    return count;
+  }
+
+  private static String keyName(Integer key)
+  {
+    return (key.intValue() >>> 16) + "/" + (key.intValue() & 0xFFFF);
+  }
+
+  public String getOperation()
+  {
+    return mOperation;
+  }
+
+  public synchronized long getZoneCount()
+  {
+    return mZones;
+  }
+
+  public synchronized long getRRsetCount()
+  {
+    return mRRsets;
+  }
+
+  public long getSignatureCount()
+  {
+    return signatureCount(keyCounters());
+  }
+
+  public synchronized long getHashCount()
+  {
+    return mHashes;
+  }
+
+  public synchronized long getPeakHeapBytes()
+  {
+    return mPeakHeap;
+  }
+
+  public synchronized long getHeapPoolPeaksBytes()
+  {
+    return mHeapPoolPeaks;
+  }
+
+  public synchronized double getElapsedSeconds()
+  {
+    return (System.nanoTime() - mStartNanos) / 1e9;
+  }
+
+  private static double rate(long count, double secs)
+  {
+    return secs > 0 ? count / secs : 0.0;
+  }
+
+  public synchronized double getRRsetsPerSecond()
+  {
+    return rate(mRRsets, getElapsedSeconds());
+  }
+
+  public double getSignaturesPerSecond()
+  {
+    return rate(getSignatureCount(), getElapsedSeconds());
+  }
+
+  public synchronized Map<String, Double> getPhaseMillis()
+  {
+    Map<String, Double> m = new LinkedHashMap<String, Double>();
+    for (Map.Entry<String, Counter> e : mPhases.entrySet())
+    {
+      m.put(e.getKey(), e.getValue().nanos / 1e6);
+    }
+    return m;
+  }
+
+  public Map<String, Long> getSignaturesByKey()
+  {
+    Map<String, Long> m = new LinkedHashMap<String, Long>();
+    for (Map.Entry<Integer, Counter> e : keyCounters().entrySet())
+    {
+      m.put(keyName(e.getKey()), e.getValue().count);
+    }
+    return m;
+  }
+
+  public Map<String, Long> getSignaturesByAlgorithm()
+  {
+    Map<String, Long> m = new LinkedHashMap<String, Long>();
+    for (Map.Entry<Integer, Counter> e : algorithmCounters(keyCounters()).entrySet())
+    {
+      m.put(String.valueOf(e.getKey()), e.getValue().count);
+    }
+    return m;
+  }
+
+  private static String num(double d)
+  {
+    return String.format(Locale.ROOT, "%.3f", d);
+  }
+
+  /** Append the signature count, time and rate of a counter as JSON members. */
+  private static void appendCounter(StringBuilder out, Counter c)
+  {
+    out.append("\"signatures\": ").append(c.count);
+    out.append(", \"ms\": ").append(num(c.nanos / 1e6));
+    out.append(", \"per_sec\": ").append(num(rate(c.count, c.nanos / 1e9)));
+  }
+
+  public synchronized String getReport()
+  {
+    double secs = getElapsedSeconds();
+    TreeMap<Integer, Counter> keys = keyCounters();
+    TreeMap<Integer, Counter> algorithms = algorithmCounters(keys);
+    long signatures = signatureCount(keys);
+    StringBuilder out = new StringBuilder();
+    out.append("{\n");
+    out.append("  \"operation\": \"").append(mOperation).append("\",\n");
+    out.append("  \"start_time\": ").append(mStartTime).append(",\n");
+    out.append("  \"elapsed_ms\": ").append(num(secs * 1000)).append(",\n");
+    out.append("  \"zones\": ").append(mZones).append(",\n");
+    out.append("  \"rrsets\": ").append(mRRsets).append(",\n");
+    out.append("  \"rrsets_per_sec\": ").append(num(rate(mRRsets, secs))).append(",\n");
+    out.append("  \"signatures\": ").append(signatures).append(",\n");
+    out.append("  \"signatures_per_sec\": ").append(num(rate(signatures, secs))).append(",\n");
+    out.append("  \"hash_operations\": ").append(mHashes).append(",\n");
+    out.append("  \"peak_heap_bytes\": ").append(mPeakHeap).append(",\n");
+    out.append("  \"heap_pool_peaks_bytes\": ").append(mHeapPoolPeaks).append(",\n");
+
+    out.append("  \"phases\": [");
+    String sep = "\n";
+    for (Map.Entry<String, Counter> e : mPhases.entrySet())
+    {
+      Counter c = e.getValue();
+      out.append(sep).append("    { \"name\": \"").append(e.getKey()).append("\"");
+      out.append(", \"count\": ").append(c.count);
+      out.append(", \"ms\": ").append(num(c.nanos / 1e6)).append(" }");
+      sep = ",\n";
+    }
+    out.append(mPhases.isEmpty() ? "],\n" : "\n  ],\n");
+
+    // per key and algorithm rates are over the time spent in the crypto.
+    out.append("  \"keys\": [");
+    sep = "\n";
+    for (Map.Entry<Integer, Counter> e : keys.entrySet())
+    {
+      int key = e.getKey().intValue();
+      out.append(sep).append("    { \"algorithm\": ").append(key >>> 16);
+      out.append(", \"key_tag\": ").append(key & 0xFFFF).append(", ");
+      appendCounter(out, e.getValue());
+      out.append(" }");
+      sep = ",\n";
+    }
+    out.append(keys.isEmpty() ? "],\n" : "\n  ],\n");
+
+    out.append("  \"algorithms\": [");
+    sep = "\n";
+    for (Map.Entry<Integer, Counter> e : algorithms.entrySet())
+    {
+      out.append(sep).append("    { \"algorithm\": ").append(e.getKey()).append(", ");
+      appendCounter(out, e.getValue());
+      out.append(" }");
+      sep = ",\n";
+    }
+    out.append(algorithms.isEmpty() ? "]\n" : "\n  ]\n");
+    out.append("}\n");
+    return out.toString();
+  }
+
+  /**
+   * Write the JSON report to a file. The file is replaced all at once, so
+   * that something polling it never sees a partial report.
+   */
+  public void writeReport(File file) throws IOException
+  {
+    String report = getReport();
+    File dir = file.getAbsoluteFile().getParentFile();
+    File tmp = File.createTempFile("." + file.getName(), ".tmp", dir);
+    Writer out = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+    try
+    {
+      out.write(report);
+    }
+    finally
+    {
+      out.close();
+    }
+    if (!tmp.renameTo(file))
+    {
+      tmp.delete();
+      throw new IOException("unable to write " + file);
+    }
+  }
+
+  /**
+   * Register the statistics with the platform MBean server, as
+   * "com.verisignlabs.dnssec:type=DnsSecStats,name=<i>name</i>", replacing
+   * anything already registered under that name.
+   *
+   * @return the name it was registered under.
+   */
+  public synchronized ObjectName register(String name) throws JMException
+  {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName on = new ObjectName(JMX_DOMAIN + ":type=DnsSecStats,name="
+        + ObjectName.quote(name));
+    if (server.isRegistered(on)) server.unregisterMBean(on);
+    server.registerMBean(this, on);
+    mObjectName = on;
+    return on;
+  }
+
+  /** Remove the statistics from the MBean server, if they were registered. */
+  public synchronized void unregister() throws JMException
+  {
+    if (mObjectName == null) return;
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if (server.isRegistered(mObjectName)) server.unregisterMBean(mObjectName);
+    mObjectName = null;
+  }
+}
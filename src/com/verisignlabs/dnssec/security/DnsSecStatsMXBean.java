@@ -0,0 +1,72 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.util.Map;
+
+/**
+ * The JMX management interface of {@link DnsSecStats}.
+ */
+public interface DnsSecStatsMXBean
+{
+  /** @return "sign" or "verify". */
+  String getOperation();
+
+  /** @return the number of zones signed or verified. */
+  long getZoneCount();
+
+  /** @return the number of RRsets signed or verified. */
+  long getRRsetCount();
+
+  /** @return the number of signatures generated or verified. */
+  long getSignatureCount();
+
+  /** @return the number of NSEC3 and DS hash operations. */
+  long getHashCount();
+
+  /** @return the largest heap use seen when sampled, in bytes. */
+  long getPeakHeapBytes();
+
+  /**
+   * @return the sum of the heap pools' peak use, in bytes. The pools peak at
+   *         different times, so this is an upper bound on the peak heap use.
+   */
+  long getHeapPoolPeaksBytes();
+
+  /** @return the time since the statistics were started (or reset). */
+  double getElapsedSeconds();
+
+  double getRRsetsPerSecond();
+
+  double getSignaturesPerSecond();
+
+  /** @return the total time spent in each phase, in milliseconds. */
+  Map<String, Double> getPhaseMillis();
+
+  /** @return the number of signatures for each "algorithm/key tag". */
+  Map<String, Long> getSignaturesByKey();
+
+  /** @return the number of signatures for each algorithm. */
+  Map<String, Long> getSignaturesByAlgorithm();
+
+  /** @return the statistics as a JSON document. */
+  String getReport();
+
+  /** Start counting from zero again. */
+  void reset();
+}
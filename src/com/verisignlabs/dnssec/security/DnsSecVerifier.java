@@ -24,7 +24,9 @@ import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
+import java.security.SignatureException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -46,29 +48,81 @@ import org.xbill.DNS.*;
 public class DnsSecVerifier
 {
 
+  /**
+   * This is the lookup key for the trusted key store: the canonical wire form
+   * of the key owner name, the algorithm, and the key tag. The hash code is
+   * computed once, up front.
+   */
+  private static class TrustedKeyId
+  {
+    private byte[] mName;
+    private int    mAlgTag;
+    private int    mHash;
+
+    /**
+     * @param name
+     *          the canonical wire form of the owner name, which must not be
+     *          modified.
+     */
+    public TrustedKeyId(byte[] name, int algorithm, int keyid)
+    {
+      mName = name;
+      mAlgTag = ((algorithm & 0xFF) << 16) | (keyid & 0xFFFF);
+      mHash = 31 * Arrays.hashCode(mName) + mAlgTag;
+    }
+
+    public int hashCode()
+    {
+      return mHash;
+    }
+
+    public boolean equals(Object o)
+    {
+      if (this == o) return true;
+      if (!(o instanceof TrustedKeyId)) return false;
+      TrustedKeyId other = (TrustedKeyId) o;
+      return mHash == other.mHash && mAlgTag == other.mAlgTag
+          && Arrays.equals(mName, other.mName);
+    }
+  }
+
+  /**
+   * The trusted keys sharing a name, algorithm, and key tag. The list isn't
+   * changed while verifying; the key that last verified a signature is just
+   * noted, so it can be tried first.
+   */
+  private static class TrustedKeys
+  {
+    public List<DnsKeyPair> keys      = new ArrayList<DnsKeyPair>(1);
+    public volatile int     preferred = 0;
+  }
+
   private class TrustedKeyStore
   {
-    // for now, this is implemented as a hash table of lists of
-    // DnsKeyPair objects (obviously, all of them will not have
-    // private keys).
-    private HashMap<String, List<DnsKeyPair>> mKeyMap;
+    // This is implemented as a hash table of lists of DnsKeyPair objects
+    // (obviously, all of them will not have private keys), indexed by name,
+    // algorithm, and key tag. Each list usually holds just one key, but key
+    // tags are not unique, so colliding keys share a list.
+    private HashMap<TrustedKeyId, TrustedKeys> mKeyMap;
 
     public TrustedKeyStore()
     {
-      mKeyMap = new HashMap<String, List<DnsKeyPair>>();
+      mKeyMap = new HashMap<TrustedKeyId, TrustedKeys>();
     }
 
     public void add(DnsKeyPair pair)
     {
-      String n = pair.getDNSKEYName().toString().toLowerCase();
-      List<DnsKeyPair> l = mKeyMap.get(n);
+      TrustedKeyId id = new TrustedKeyId(pair.getDNSKEYName().toWireCanonical(),
+                                         pair.getDNSKEYAlgorithm(),
+                                         pair.getDNSKEYFootprint());
+      TrustedKeys l = mKeyMap.get(id);
       if (l == null)
       {
-        l = new ArrayList<DnsKeyPair>();
-        mKeyMap.put(n, l);
+        l = new TrustedKeys();
+        mKeyMap.put(id, l);
       }
 
-      l.add(pair);
+      l.keys.add(pair);
     }
 
     public void add(DNSKEYRecord keyrec)
@@ -83,22 +137,16 @@ public class DnsSecVerifier
       add(pair);
     }
 
-    public DnsKeyPair find(Name name, int algorithm, int keyid)
+    /**
+     * @return the keys matching the name, algorithm, and key tag, or null if
+     *         there are none.
+     */
+    public TrustedKeys find(Name name, int algorithm, int keyid)
     {
-      String n = name.toString().toLowerCase();
-      List<DnsKeyPair> l = mKeyMap.get(n);
-      if (l == null) return null;
-
-      // FIXME: this algorithm assumes that name+alg+footprint is
-      // unique, which isn't necessarily true.
-      for (DnsKeyPair p : l)
-      {
-        if (p.getDNSKEYAlgorithm() == algorithm && p.getDNSKEYFootprint() == keyid)
-        {
-          return p;
-        }
-      }
-      return null;
+      // the signer name is usually in the zone's name table, as the owner of
+      // the zone's own DNSKEYs.
+      return mKeyMap.get(new TrustedKeyId(NameTable.toWireCanonical(mNames, name), algorithm,
+                                          keyid));
     }
   }
 
@@ -107,6 +155,9 @@ public class DnsSecVerifier
   private int             mExpireFudge   = 0;
   private boolean         mVerifyAllSigs = false;
   private boolean         mIgnoreTime    = false;
+  private VerificationCache mCache       = null;
+  private DnsSecStats     mStats         = null;
+  private NameTable       mNames         = null;
 
   private Logger          log;
 
@@ -157,7 +208,50 @@ public class DnsSecVerifier
     mIgnoreTime = v;
   }
 
-  private DnsKeyPair findKey(Name name, int algorithm, int footprint)
+  /**
+   * Use a cache of previously verified signatures. Signatures found in the
+   * cache are not cryptographically verified again, although their validity
+   * period is still checked.
+   */
+  public void setVerificationCache(VerificationCache cache)
+  {
+    mCache = cache;
+  }
+
+  /**
+   * Count the signatures verified (and the time spent verifying them) in
+   * these statistics, or stop counting them if null.
+   */
+  public void setStats(DnsSecStats stats)
+  {
+    mStats = stats;
+  }
+
+  public DnsSecStats getStats()
+  {
+    return mStats;
+  }
+
+  /**
+   * Use the zone's name table (see {@link ZoneUtils#readZoneFile(String, Name,
+   * NameTable)}) for canonical owner names, or none if null.
+   */
+  public void setNameTable(NameTable names)
+  {
+    mNames = names;
+  }
+
+  public NameTable getNameTable()
+  {
+    return mNames;
+  }
+
+  public VerificationCache getVerificationCache()
+  {
+    return mCache;
+  }
+
+  private TrustedKeys findKeys(Name name, int algorithm, int footprint)
   {
     return mKeyStore.find(name, algorithm, footprint);
   }
@@ -233,14 +327,28 @@ public class DnsSecVerifier
    *         not verify (for any reason, including not finding the DNSKEY.)
    */
   public boolean verifySignature(RRset rrset, RRSIGRecord sigrec, List<String> reasons)
+  {
+    Object ev = DnsSecEvents.begin(DnsSecEvents.VERIFY_SIGNATURE);
+    boolean result = checkSignature(rrset, sigrec, reasons);
+    if (ev != null)
+    {
+      DnsSecEvents.commit(ev, rrset.getName().toString(), Type.string(rrset.getType()),
+                          rrset.size(), sigrec.getSignature().length, sigrec.getAlgorithm(),
+                          sigrec.getFootprint(), result);
+    }
+    return result;
+  }
+
+  private boolean checkSignature(RRset rrset, RRSIGRecord sigrec, List<String> reasons)
   {
     boolean result = validateSignature(rrset, sigrec, reasons);
     if (!result) return result;
 
-    DnsKeyPair keypair = findKey(sigrec.getSigner(), sigrec.getAlgorithm(),
-                                 sigrec.getFootprint());
+    TrustedKeys trusted = findKeys(sigrec.getSigner(), sigrec.getAlgorithm(),
+                                   sigrec.getFootprint());
+    List<DnsKeyPair> candidates = trusted != null ? trusted.keys : null;
 
-    if (keypair == null)
+    if (candidates == null || candidates.size() == 0)
     {
       if (reasons != null) reasons.add("Could not find matching trusted key");
       log.fine("could not find matching trusted key");
@@ -249,13 +357,10 @@ public class DnsSecVerifier
 
     try
     {
-      byte[] data = SignUtils.generateSigData(rrset, sigrec);
+      byte[] data = SignUtils.generateSigData(rrset, sigrec, mNames);
 
       DnsKeyAlgorithm algs = DnsKeyAlgorithm.getInstance();
 
-      Signature signer = keypair.getVerifier();
-      signer.update(data);
-
       byte[] sig = sigrec.getSignature();
 
       if (algs.baseType(sigrec.getAlgorithm()) == DnsKeyAlgorithm.DSA)
@@ -269,14 +374,72 @@ public class DnsSecVerifier
         sig = SignUtils.convertECDSASignature(sig);
       }
 
-      if (!signer.verify(sig))
+      // Key tags are not unique, so try every key that matches. The key that
+      // works is remembered so it will be tried first the next time.
+      int n = candidates.size();
+      int first = trusted.preferred;
+      for (int k = 0; k < n; k++)
       {
-        if (reasons != null) reasons.add("Signature failed to verify cryptographically");
-        log.fine("Signature failed to verify cryptographically");
-        return false;
+        int i = (first + k) % n;
+        DnsKeyPair keypair = candidates.get(i);
+        byte[] digest = null;
+        if (mCache != null && keypair.getDNSKEYRecord() != null)
+        {
+          digest = mCache.digest(data, sigrec.getSignature(),
+                                 keypair.getDNSKEYRecord().rdataToWireCanonical());
+          if (mCache.contains(digest)) return true;
+        }
+
+        PublicKey pk = keypair.getPublic();
+        if (pk == null) continue;
+
+        Signature signer = null;
+        try
+        {
+          signer = algs.borrowSignature(keypair.getDNSKEYAlgorithm());
+          signer.initVerify(pk);
+        }
+        catch (GeneralSecurityException e)
+        {
+          // the Signature is dropped: it may not even have a provider yet.
+          log.fine("unable to verify with key " + sigrec.getFootprint() + ": " + e);
+          continue;
+        }
+
+        boolean verified = false;
+        long t0 = mStats != null ? System.nanoTime() : 0;
+        try
+        {
+          signer.update(data);
+          verified = signer.verify(sig);
+        }
+        catch (SignatureException e)
+        {
+          // a malformed signature for this key shouldn't stop the other
+          // candidates from being tried.
+          log.fine("unable to verify with key " + sigrec.getFootprint() + ": " + e);
+        }
+        finally
+        {
+          algs.releaseSignature(signer);
+        }
+        if (mStats != null)
+        {
+          mStats.addSignature(sigrec.getAlgorithm(), sigrec.getFootprint(),
+                              System.nanoTime() - t0);
+        }
+
+        if (verified)
+        {
+          if (i != first) trusted.preferred = i;
+          if (digest != null) mCache.add(digest);
+          return true;
+        }
       }
 
-      return true;
+      if (reasons != null) reasons.add("Signature failed to verify cryptographically");
+      log.fine("Signature failed to verify cryptographically");
+      return false;
     }
     catch (IOException e)
     {
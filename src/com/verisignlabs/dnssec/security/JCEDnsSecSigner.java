@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.interfaces.DSAPublicKey;
 import java.util.ArrayList;
@@ -52,6 +53,11 @@ public class JCEDnsSecSigner
 {
   private DnsKeyConverter mKeyConverter;
   private boolean         mVerboseSigning = false;
+  private KeyPairPool     mKeyPairPool    = null;
+  private Date            mEarliestExpiration = null;
+  private DnsSecStats     mStats          = null;
+  private NameTable       mNames          = null;
+  private NSEC3Index      mNSEC3Index     = null;
 
   private Logger          log = Logger.getLogger(this.getClass().toString());
 
@@ -67,6 +73,82 @@ public class JCEDnsSecSigner
     this.mVerboseSigning = verboseSigning;
   }
 
+  /**
+   * Take newly generated keys from this pool of pre-generated keys, rather
+   * than generating them on demand.
+   */
+  public void setKeyPairPool(KeyPairPool pool)
+  {
+    mKeyPairPool = pool;
+  }
+
+  /**
+   * Collect performance statistics (per phase times, signatures per key, and
+   * so on) into these, or stop collecting them if null.
+   */
+  public void setStats(DnsSecStats stats)
+  {
+    mStats = stats;
+  }
+
+  public DnsSecStats getStats()
+  {
+    return mStats;
+  }
+
+  /**
+   * Use the zone's name table (see {@link ZoneUtils#readZoneFile(String, Name,
+   * NameTable)}) for canonical owner names, or none if null.
+   */
+  public void setNameTable(NameTable names)
+  {
+    mNames = names;
+  }
+
+  public NameTable getNameTable()
+  {
+    return mNames;
+  }
+
+  /**
+   * Record the original owner names of the NSEC3 records generated when
+   * signing in this index, or don't if null. The index should have been
+   * created with the NSEC3 parameters the zone will be signed with.
+   */
+  public void setNSEC3Index(NSEC3Index index)
+  {
+    mNSEC3Index = index;
+  }
+
+  public NSEC3Index getNSEC3Index()
+  {
+    return mNSEC3Index;
+  }
+
+  /**
+   * @return the earliest expiration time of the RRSIGs generated by the last
+   *         zone signing, or null if no zone has been signed (or no RRSIGs
+   *         were generated). This is when the zone must be re-signed by.
+   */
+  public Date getEarliestExpiration()
+  {
+    return mEarliestExpiration;
+  }
+
+  /** Add the signatures to the list, tracking the earliest expiration. */
+  private void addSigs(List<Record> toList, List<RRSIGRecord> sigs)
+  {
+    for (RRSIGRecord sig : sigs)
+    {
+      Date exp = sig.getExpire();
+      if (mEarliestExpiration == null || exp.before(mEarliestExpiration))
+      {
+        mEarliestExpiration = exp;
+      }
+      toList.add(sig);
+    }
+  }
+
   /**
    * Cryptographically generate a new DNSSEC key.
    * 
@@ -94,7 +176,15 @@ public class JCEDnsSecSigner
 
     if (ttl < 0) ttl = 86400; // set to a reasonable default.
 
-    KeyPair pair = algorithms.generateKeyPair(algorithm, keysize, useLargeExponent);
+    KeyPair pair = null;
+    if (mKeyPairPool != null)
+    {
+      pair = mKeyPairPool.generateKeyPair(algorithm, keysize, useLargeExponent);
+    }
+    else
+    {
+      pair = algorithms.generateKeyPair(algorithm, keysize, useLargeExponent);
+    }
 
     if (mKeyConverter == null)
     {
@@ -136,6 +226,8 @@ public class JCEDnsSecSigner
     if (expire == null) expire = new Date(start.getTime() + 1000L);
     if (keypairs.size() == 0) return null;
 
+    if (mStats != null) mStats.addRRsets(1);
+
     if (mVerboseSigning)
     {
       log.info("Signing RRset:");
@@ -143,7 +235,7 @@ public class JCEDnsSecSigner
     }
 
     // first, pre-calculate the RRset bytes.
-    byte[] rrset_data = SignUtils.generateCanonicalRRsetData(rrset, 0, 0);
+    byte[] rrset_data = SignUtils.generateCanonicalRRsetData(rrset, 0, 0, mNames);
 
     ArrayList<RRSIGRecord> sigs = new ArrayList<RRSIGRecord>(keypairs.size());
 
@@ -153,9 +245,11 @@ public class JCEDnsSecSigner
       DNSKEYRecord keyrec = pair.getDNSKEYRecord();
       if (keyrec == null) continue;
 
+      Object ev = DnsSecEvents.begin(DnsSecEvents.SIGN_RRSET);
+
       RRSIGRecord presig = SignUtils.generatePreRRSIG(rrset, keyrec, start, expire,
                                                       rrset.getTTL());
-      byte[] sign_data = SignUtils.generateSigData(rrset_data, presig);
+      byte[] sign_data = SignUtils.generateSigData(rrset_data, presig, mNames);
 
       if (mVerboseSigning)
       {
@@ -165,9 +259,9 @@ public class JCEDnsSecSigner
         log.info(hexdump.dump(null, sign_data));
       }
 
-      Signature signer = pair.getSigner();
+      PrivateKey priv = pair.getPrivate();
 
-      if (signer == null)
+      if (priv == null)
       {
         // debug
         log.fine("missing private key that goes with:\n" + pair.getDNSKEYRecord());
@@ -175,9 +269,28 @@ public class JCEDnsSecSigner
             + "(probably missing private key)");
       }
 
-      // sign the data.
-      signer.update(sign_data);
-      byte[] sig = signer.sign();
+      // sign the data, with a Signature borrowed for just this signature, so
+      // that key pairs can be shared between threads.
+      DnsKeyAlgorithm algs = DnsKeyAlgorithm.getInstance();
+      Signature signer = algs.borrowSignature(pair.getDNSKEYAlgorithm());
+      byte[] sig = null;
+      long t0 = mStats != null ? System.nanoTime() : 0;
+      // if this fails, the Signature is dropped rather than given back.
+      signer.initSign(priv);
+      try
+      {
+        signer.update(sign_data);
+        sig = signer.sign();
+      }
+      finally
+      {
+        algs.releaseSignature(signer);
+      }
+      if (mStats != null)
+      {
+        mStats.addSignature(keyrec.getAlgorithm(), keyrec.getFootprint(),
+                            System.nanoTime() - t0);
+      }
 
       if (mVerboseSigning)
       {
@@ -185,7 +298,6 @@ public class JCEDnsSecSigner
         log.info(hexdump.dump(null, sig));
       }
 
-      DnsKeyAlgorithm algs = DnsKeyAlgorithm.getInstance();
       // Convert to RFC 2536 format, if necessary.
       if (algs.baseType(pair.getDNSKEYAlgorithm()) == DnsKeyAlgorithm.DSA)
       {
@@ -204,6 +316,13 @@ public class JCEDnsSecSigner
         log.info("RRSIG:\n" + sigrec);
       }
       sigs.add(sigrec);
+
+      if (ev != null)
+      {
+        DnsSecEvents.commit(ev, rrset.getName().toString(), Type.string(rrset.getType()),
+                            rrset.size(), sign_data.length, keyrec.getAlgorithm(),
+                            keyrec.getFootprint());
+      }
     }
 
     return sigs;
@@ -299,7 +418,7 @@ public class JCEDnsSecSigner
       if (kskpairs != null && kskpairs.size() > 0)
       {
         List<RRSIGRecord> sigs = signRRset(rrset, kskpairs, start, expire);
-        toList.addAll(sigs);
+        addSigs(toList, sigs);
 
         // If we aren't going to sign with all the keys, bail out now.
         if (!fullySignKeyset) return last_cut;
@@ -308,7 +427,7 @@ public class JCEDnsSecSigner
 
     // otherwise, we are OK to sign this set.
     List<RRSIGRecord> sigs = signRRset(rrset, zskpairs, start, expire);
-    toList.addAll(sigs);
+    addSigs(toList, sigs);
 
     return last_cut;
   }
@@ -375,20 +494,29 @@ public class JCEDnsSecSigner
                                 boolean beConservative) throws IOException,
       GeneralSecurityException
   {
+    mEarliestExpiration = null;
+    DnsSecStats stats = mStats;
+    long t = System.nanoTime();
+
     // Remove any existing generated DNSSEC records (NSEC, NSEC3, NSEC3PARAM,
     // RRSIG)
     SignUtils.removeGeneratedRecords(zonename, records);
+    if (stats != null) t = stats.endPhase("remove-generated", t);
 
     RecordComparator rc = new RecordComparator();
     // Sort the zone
-    Collections.sort(records, rc);
+    sort(zonename, records, rc);
+    if (stats != null) t = stats.endPhase("sort", t);
 
     // Remove duplicate records
     SignUtils.removeDuplicateRecords(records);
+    if (stats != null) t = stats.endPhase("remove-duplicates", t);
 
     // Generate DS records. This replaces any non-zone-apex DNSKEY RRs with DS
     // RRs.
-    SignUtils.generateDSRecords(zonename, records, ds_digest_alg);
+    if (stats != null) stats.addHashes(countBelowApex(zonename, records, Type.DNSKEY));
+    SignUtils.generateDSRecords(zonename, records, ds_digest_alg, mNames);
+    if (stats != null) t = stats.endPhase("generate-ds", t);
 
     // Generate the NSEC or NSEC3 records based on 'mode'
     switch (mode)
@@ -397,20 +525,32 @@ public class JCEDnsSecSigner
         SignUtils.generateNSECRecords(zonename, records);
         break;
       case NSEC3_MODE:
-        SignUtils.generateNSEC3Records(zonename, records, salt, iterations, nsec3paramttl);
+        SignUtils.generateNSEC3Records(zonename, records, salt, iterations, nsec3paramttl,
+                                       mNSEC3Index, mNames);
         break;
       case NSEC3_OPTOUT_MODE:
         SignUtils.generateOptOutNSEC3Records(zonename, records, includedNames, salt,
-                                             iterations, nsec3paramttl);
+                                             iterations, nsec3paramttl, mNSEC3Index, mNames);
         break;
       case NSEC_EXP_OPT_IN:
         SignUtils.generateOptInNSECRecords(zonename, records, includedNames,
                                            beConservative);
         break;
     }
+    if (stats != null)
+    {
+      boolean nsec3 = mode == NSEC3_MODE || mode == NSEC3_OPTOUT_MODE;
+      if (nsec3)
+      {
+        // each NSEC3 owner name took iterations + 1 hashes.
+        stats.addHashes(countBelowApex(zonename, records, Type.NSEC3) * (iterations + 1L));
+      }
+      t = stats.endPhase(nsec3 ? "generate-nsec3" : "generate-nsec", t);
+    }
 
     // Re-sort so we can assemble into rrsets.
-    Collections.sort(records, rc);
+    sort(zonename, records, rc);
+    if (stats != null) t = stats.endPhase("resort", t);
 
     // Assemble into RRsets and sign.
     RRset rrset = new RRset();
@@ -454,9 +594,33 @@ public class JCEDnsSecSigner
     addRRset(signed_records, zonename, rrset, kskpairs, zskpairs, start, expire,
              fullySignKeyset, last_cut, last_dname);
 
+    if (stats != null)
+    {
+      stats.endPhase("sign", t);
+      stats.addZone();
+    }
+
     return signed_records;
   }
 
+  private static void sort(Name zonename, List<Record> records, RecordComparator rc)
+  {
+    Object ev = DnsSecEvents.begin(DnsSecEvents.SORT);
+    Collections.sort(records, rc);
+    if (ev != null) DnsSecEvents.commit(ev, zonename.toString(), records.size());
+  }
+
+  /** @return the number of records of the type below the zone apex. */
+  private static long countBelowApex(Name zonename, List<Record> records, int type)
+  {
+    long count = 0;
+    for (Record r : records)
+    {
+      if (r.getType() == type && !r.getName().equals(zonename)) count++;
+    }
+    return count;
+  }
+
   /**
    * Given a zone, sign it using standard NSEC records.
    * 
@@ -0,0 +1,167 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * This class keeps pools of pre-generated key pairs, per algorithm, key size
+ * and exponent, which are topped up in the background. Taking a key from a
+ * filled pool is nearly instant, which matters for long-running processes that
+ * provision keys on demand. If a pool is empty (or was never filled), the key
+ * pair is generated in the calling thread instead.
+ */
+public class KeyPairPool
+{
+  /** The parameters of the keys in one pool. */
+  private static class Spec
+  {
+    public int     algorithm;
+    public int     keysize;
+    public boolean useLargeExp;
+
+    public Spec(int algorithm, int keysize, boolean useLargeExp)
+    {
+      this.algorithm = algorithm;
+      this.keysize = keysize;
+      this.useLargeExp = useLargeExp;
+    }
+
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof Spec)) return false;
+      Spec s = (Spec) o;
+      return algorithm == s.algorithm && keysize == s.keysize
+          && useLargeExp == s.useLargeExp;
+    }
+
+    public int hashCode()
+    {
+      return (algorithm * 31 + keysize) * 2 + (useLargeExp ? 1 : 0);
+    }
+
+    public String toString()
+    {
+      return "alg " + algorithm + ", " + keysize + " bits";
+    }
+  }
+
+  private int                                             mSize;
+  private ExecutorService                                 mGenerators;
+  private ConcurrentHashMap<Spec, BlockingQueue<KeyPair>> mPools =
+      new ConcurrentHashMap<Spec, BlockingQueue<KeyPair>>();
+
+  private Logger                                          log    =
+      Logger.getLogger(this.getClass().toString());
+
+  /**
+   * @param threads
+   *          the number of background threads generating keys.
+   * @param size
+   *          the number of keys to keep ready in each pool.
+   */
+  public KeyPairPool(int threads, int size)
+  {
+    mSize = Math.max(1, size);
+    mGenerators = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory()
+    {
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, "key-pool");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Start keeping a pool of keys with these parameters, and begin filling it.
+   */
+  public void fill(int algorithm, int keysize, boolean useLargeExp)
+  {
+    Spec spec = new Spec(algorithm, keysize, useLargeExp);
+    if (mPools.putIfAbsent(spec, new ArrayBlockingQueue<KeyPair>(mSize)) != null) return;
+    for (int i = 0; i < mSize; i++)
+    {
+      refill(spec);
+    }
+  }
+
+  /** Generate one key in the background and add it to its pool. */
+  private void refill(final Spec spec)
+  {
+    final BlockingQueue<KeyPair> pool = mPools.get(spec);
+    mGenerators.execute(new Runnable()
+    {
+      public void run()
+      {
+        if (pool.remainingCapacity() == 0) return;
+        try
+        {
+          pool.offer(DnsKeyAlgorithm.getInstance().generateKeyPair(spec.algorithm,
+                                                                   spec.keysize,
+                                                                   spec.useLargeExp));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+          log.warning("unable to pre-generate keys (" + spec + "): " + e.getMessage());
+        }
+      }
+    });
+  }
+
+  /**
+   * Get a key pair, from its pool if one is ready, or else by generating it
+   * now.
+   */
+  public KeyPair generateKeyPair(int algorithm, int keysize, boolean useLargeExp)
+      throws NoSuchAlgorithmException
+  {
+    Spec spec = new Spec(algorithm, keysize, useLargeExp);
+    BlockingQueue<KeyPair> pool = mPools.get(spec);
+    KeyPair pair = pool != null ? pool.poll() : null;
+    if (pair == null)
+    {
+      return DnsKeyAlgorithm.getInstance().generateKeyPair(algorithm, keysize, useLargeExp);
+    }
+    refill(spec);
+    return pair;
+  }
+
+  /** @return the number of ready keys with these parameters. */
+  public int available(int algorithm, int keysize, boolean useLargeExp)
+  {
+    BlockingQueue<KeyPair> pool = mPools.get(new Spec(algorithm, keysize, useLargeExp));
+    return pool != null ? pool.size() : 0;
+  }
+
+  /** Stop generating keys. */
+  public void shutdown()
+  {
+    mGenerators.shutdownNow();
+  }
+}
@@ -0,0 +1,233 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.TextParseException;
+
+/**
+ * This class is a cache of BIND 9-style key pairs, loaded with
+ * {@link BINDKeyUtils}. Parsed key pairs (with their keys already converted
+ * to JCA form) are kept in memory and reused until the key files change on
+ * disk, so tools that sign many zones, or keep running, only parse each key
+ * once. It also keeps an index of the key files in each key
+ * directory, so finding the keys for a zone doesn't require a directory scan
+ * every time.
+ *
+ * The repository is thread-safe. The {@link DnsKeyPair}s it returns are
+ * shared; {@link JCEDnsSecSigner} borrows a Signature object for each
+ * signature, so they may be used to sign from several threads at once.
+ */
+public class KeyRepository
+{
+  private static final KeyRepository sDefault = new KeyRepository();
+
+  /** A loaded key pair and the state of its files when it was loaded. */
+  private static class CachedKey
+  {
+    public DnsKeyPair pair;
+    public long       publicMtime;
+    public long       privateMtime;
+    public long       privateLength;
+
+    public CachedKey(DnsKeyPair pair, File publicKeyFile, File privateKeyFile)
+    {
+      this.pair = pair;
+      this.publicMtime = publicKeyFile.lastModified();
+      this.privateMtime = privateKeyFile.lastModified();
+      this.privateLength = privateKeyFile.length();
+    }
+
+    public boolean isCurrent(File publicKeyFile, File privateKeyFile)
+    {
+      return publicMtime == publicKeyFile.lastModified()
+          && privateMtime == privateKeyFile.lastModified()
+          && privateLength == privateKeyFile.length();
+    }
+  }
+
+  /** The private key files in a directory, by owner name. */
+  private static class DirectoryIndex
+  {
+    public long                    mtime;
+    public Map<Name, List<String>> keys;
+
+    public DirectoryIndex(long mtime, Map<Name, List<String>> keys)
+    {
+      this.mtime = mtime;
+      this.keys = keys;
+    }
+  }
+
+  private ConcurrentHashMap<String, CachedKey>      mKeys        = new ConcurrentHashMap<String, CachedKey>();
+  private ConcurrentHashMap<String, DirectoryIndex> mDirectories = new ConcurrentHashMap<String, DirectoryIndex>();
+
+  private Logger log = Logger.getLogger(this.getClass().toString());
+
+  /** @return the repository shared by the command line tools. */
+  public static KeyRepository getDefault()
+  {
+    return sDefault;
+  }
+
+  /**
+   * Given a base path to a BIND9 key pair, load the key pair, or return the
+   * cached copy if the key files haven't changed since it was loaded.
+   *
+   * @param keyFileBasePath
+   *          the base filename (or real filename for either the public or
+   *          private key) of the key.
+   * @param inDirectory
+   *          the directory to look in, if the keyFileBasePath is relative.
+   * @return the loaded key pair.
+   * @throws IOException
+   *           if there was a problem reading the files
+   */
+  public DnsKeyPair loadKeyPair(String keyFileBasePath, File inDirectory)
+      throws IOException
+  {
+    String base = keyFileBasePath;
+    if (base.endsWith(".key") || base.endsWith(".private"))
+    {
+      base = base.substring(0, base.lastIndexOf("."));
+    }
+    File publicKeyFile = new File(inDirectory, base + ".key");
+    File privateKeyFile = new File(inDirectory, base + ".private");
+    String cacheKey = publicKeyFile.getAbsolutePath();
+
+    CachedKey c = mKeys.get(cacheKey);
+    if (c != null && c.isCurrent(publicKeyFile, privateKeyFile)) return c.pair;
+
+    c = new CachedKey(null, publicKeyFile, privateKeyFile);
+    DnsKeyPair pair = BINDKeyUtils.loadKeyPair(base, inDirectory);
+    // Do the expensive conversions now, rather than when first signing.
+    pair.getPrivate();
+    pair.getPublic();
+    c.pair = pair;
+
+    mKeys.put(cacheKey, c);
+    return pair;
+  }
+
+  /**
+   * Find and load all of the key pairs for a zone in a directory, that is,
+   * those with "K&lt;zone&gt;+*.private" files.
+   *
+   * @param inDirectory
+   *          the directory to look in (may be null).
+   * @param zonename
+   *          the zone name.
+   * @return the key pairs, in file name order, or null if there are none.
+   */
+  public List<DnsKeyPair> findZoneKeys(File inDirectory, Name zonename) throws IOException
+  {
+    if (inDirectory == null)
+    {
+      inDirectory = new File(".");
+    }
+
+    List<String> bases = getDirectoryIndex(inDirectory).keys.get(zonename);
+    if (bases == null) return null;
+
+    ArrayList<DnsKeyPair> keys = new ArrayList<DnsKeyPair>(bases.size());
+    for (String base : bases)
+    {
+      keys.add(loadKeyPair(base, inDirectory));
+    }
+    return keys;
+  }
+
+  /** @return the index of the key files in the directory, rebuilt if needed. */
+  private DirectoryIndex getDirectoryIndex(File dir) throws IOException
+  {
+    String cacheKey = dir.getAbsolutePath();
+    // Adding or removing a file changes the directory's modification time.
+    long mtime = dir.lastModified();
+    DirectoryIndex index = mDirectories.get(cacheKey);
+    if (index != null && index.mtime == mtime) return index;
+
+    String[] names = dir.list();
+    if (names == null) throw new IOException("unable to read directory " + dir);
+    Arrays.sort(names);
+
+    Map<Name, List<String>> keys = new HashMap<Name, List<String>>();
+    for (String fn : names)
+    {
+      if (!fn.startsWith("K") || !fn.endsWith(".private")) continue;
+      String base = fn.substring(0, fn.length() - ".private".length());
+
+      // K<name>+<alg>+<keyid>
+      int p2 = base.lastIndexOf('+');
+      int p1 = p2 > 0 ? base.lastIndexOf('+', p2 - 1) : -1;
+      if (p1 <= 1) continue;
+
+      Name owner = null;
+      try
+      {
+        owner = Name.fromString(base.substring(1, p1));
+      }
+      catch (TextParseException e)
+      {
+        continue;
+      }
+      if (!new File(dir, fn).isFile()) continue;
+
+      List<String> l = keys.get(owner);
+      if (l == null)
+      {
+        l = new ArrayList<String>(2);
+        keys.put(owner, l);
+      }
+      l.add(base);
+    }
+
+    for (Map.Entry<Name, List<String>> e : keys.entrySet())
+    {
+      e.setValue(Collections.unmodifiableList(e.getValue()));
+    }
+
+    index = new DirectoryIndex(mtime, keys);
+    mDirectories.put(cacheKey, index);
+    log.fine("indexed " + keys.size() + " zones with keys in " + dir);
+    return index;
+  }
+
+  /** @return the number of cached key pairs. */
+  public int size()
+  {
+    return mKeys.size();
+  }
+
+  /** Empty the cache. */
+  public void clear()
+  {
+    mKeys.clear();
+    mDirectories.clear();
+  }
+}
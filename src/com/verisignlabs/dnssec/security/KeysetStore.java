@@ -0,0 +1,382 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.RelativeNameException;
+import org.xbill.DNS.TextParseException;
+
+/**
+ * This class loads BIND 9-style keyset-* files (which contain delegation point
+ * security info) from a directory. It keeps a persistent index of the owner
+ * names found in each file, along with the file's modification time and size,
+ * so that only files that have changed, or that hold records for the zone
+ * being signed, need to be parsed. The files that do need parsing are parsed
+ * in parallel. A store may be shared by threads signing different zones.
+ *
+ * Keyset files with relative owner names are read relative to the zone being
+ * signed, so they can't be indexed; they are parsed for every zone. The index
+ * is a text file with one tab separated line per keyset file:
+ *
+ * <pre>
+ *   &lt;file name&gt; &lt;mtime&gt; &lt;size&gt; abs|rel &lt;owner name&gt; ...
+ * </pre>
+ */
+public class KeysetStore
+{
+  /** The name of the index file, kept in the keyset directory by default. */
+  public static final String INDEX_FILE = ".jdnssec-keyset-index";
+
+  private static final String HEADER = "; jdnssec keyset index 2";
+
+  /** What we know about one keyset file. */
+  private static class Entry
+  {
+    public long       mtime;
+    public long       length;
+    /** True if the file has relative owner names. */
+    public boolean    relative;
+    public List<Name> owners;
+
+    public Entry(long mtime, long length, boolean relative, List<Name> owners)
+    {
+      this.mtime = mtime;
+      this.length = length;
+      this.relative = relative;
+      this.owners = owners;
+    }
+
+    public boolean isCurrent(File f)
+    {
+      return mtime == f.lastModified() && length == f.length();
+    }
+
+    public boolean isRelevant(Name zonename)
+    {
+      if (relative) return true;
+      for (Name n : owners)
+      {
+        if (n.subdomain(zonename)) return true;
+      }
+      return false;
+    }
+  }
+
+  /** The records read from one keyset file. */
+  private static class Keyset
+  {
+    public List<Record> records;
+    public boolean      relative;
+
+    public Keyset(List<Record> records, boolean relative)
+    {
+      this.records = records;
+      this.relative = relative;
+    }
+  }
+
+  /** Finds the keyset-* files. */
+  private static class KeysetFileFilter implements FileFilter
+  {
+    public boolean accept(File pathname)
+    {
+      if (!pathname.isFile()) return false;
+      return pathname.getName().startsWith("keyset-");
+    }
+  }
+
+  private File               mDirectory;
+  private File               mIndexFile;
+  private int                mThreads;
+  private Map<String, Entry> mIndex;
+
+  private Logger             log = Logger.getLogger(this.getClass().toString());
+
+  /**
+   * @param directory
+   *          the directory holding the keyset files (null for the current
+   *          working directory).
+   * @param indexFile
+   *          the index file (null for {@link #INDEX_FILE} in the directory).
+   * @param threads
+   *          the number of threads to parse keyset files with.
+   */
+  public KeysetStore(File directory, File indexFile, int threads)
+  {
+    mDirectory = directory != null ? directory : new File(".");
+    mIndexFile = indexFile != null ? indexFile : new File(mDirectory, INDEX_FILE);
+    mThreads = Math.max(1, threads);
+  }
+
+  public KeysetStore(File directory)
+  {
+    this(directory, null, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Load the keyset records that belong to a zone. The index is brought up to
+   * date (and saved, if it changed) along the way.
+   *
+   * @param zonename
+   *          the zone being signed; records that are not at or below it are
+   *          ignored.
+   * @return the records found in the keyset files.
+   */
+  public synchronized List<Record> getKeysets(Name zonename) throws IOException
+  {
+    if (mIndex == null) mIndex = readIndex();
+
+    File[] files = mDirectory.listFiles(new KeysetFileFilter());
+    if (files == null) throw new IOException("unable to read directory " + mDirectory);
+    Arrays.sort(files);
+
+    Map<String, Entry> index = new HashMap<String, Entry>();
+    List<File> parse = new ArrayList<File>();
+    boolean changed = false;
+    for (File f : files)
+    {
+      Entry e = mIndex.get(f.getName());
+      if (e != null && e.isCurrent(f))
+      {
+        index.put(f.getName(), e);
+        if (e.isRelevant(zonename)) parse.add(f);
+      }
+      else
+      {
+        parse.add(f);
+        changed = true;
+      }
+    }
+    // files may also have been removed.
+    if (index.size() != mIndex.size()) changed = true;
+
+    log.fine("parsing " + parse.size() + " of " + files.length + " keyset files");
+    List<Keyset> parsed = parseFiles(parse, zonename);
+
+    ArrayList<Record> keysetRecords = new ArrayList<Record>();
+    for (int i = 0; i < parse.size(); i++)
+    {
+      File f = parse.get(i);
+      Keyset keyset = parsed.get(i);
+
+      LinkedHashSet<Name> owners = new LinkedHashSet<Name>();
+      for (Record r : keyset.records)
+      {
+        if (!keyset.relative) owners.add(r.getName());
+        // discard records that do not belong to the zone in question.
+        if (r.getName().subdomain(zonename)) keysetRecords.add(r);
+      }
+      if (!index.containsKey(f.getName()))
+      {
+        index.put(f.getName(), new Entry(f.lastModified(), f.length(), keyset.relative,
+                                         new ArrayList<Name>(owners)));
+      }
+    }
+
+    mIndex = index;
+    if (changed) writeIndex();
+
+    return keysetRecords;
+  }
+
+  /**
+   * Parse a keyset file. It is first read without an origin, so that its
+   * owner names don't depend on the zone; only if it has relative names is it
+   * read again relative to the zone.
+   */
+  private static Keyset parseFile(File f, Name zonename) throws IOException
+  {
+    try
+    {
+      return new Keyset(ZoneUtils.readZoneFile(f.getAbsolutePath(), null), false);
+    }
+    catch (RelativeNameException e)
+    {
+      return new Keyset(ZoneUtils.readZoneFile(f.getAbsolutePath(), zonename), true);
+    }
+  }
+
+  /** Parse the files, in parallel if there are enough of them. */
+  private List<Keyset> parseFiles(List<File> files, final Name zonename) throws IOException
+  {
+    List<Keyset> res = new ArrayList<Keyset>(files.size());
+    int threads = Math.min(mThreads, files.size());
+    if (threads <= 1)
+    {
+      for (File f : files)
+      {
+        res.add(parseFile(f, zonename));
+      }
+      return res;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try
+    {
+      List<Future<Keyset>> futures = new ArrayList<Future<Keyset>>();
+      for (final File f : files)
+      {
+        futures.add(pool.submit(new Callable<Keyset>()
+        {
+          public Keyset call() throws IOException
+          {
+            return parseFile(f, zonename);
+          }
+        }));
+      }
+      for (Future<Keyset> f : futures)
+      {
+        res.add(f.get());
+      }
+      return res;
+    }
+    catch (InterruptedException e)
+    {
+      throw new IOException("interrupted while reading keyset files");
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException("error reading keyset files: " + cause);
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+  }
+
+  /** @return the saved index, or an empty one if it is missing or unreadable. */
+  private Map<String, Entry> readIndex()
+  {
+    Map<String, Entry> index = new HashMap<String, Entry>();
+    if (!mIndexFile.isFile()) return index;
+
+    try
+    {
+      BufferedReader in = new BufferedReader(new FileReader(mIndexFile));
+      try
+      {
+        String line = in.readLine();
+        if (line == null || !line.equals(HEADER)) return index;
+
+        while ((line = in.readLine()) != null)
+        {
+          String[] fields = line.split("\t");
+          if (fields.length < 4) continue;
+
+          boolean relative = fields[3].equals("rel");
+          List<Name> owners = new ArrayList<Name>(fields.length - 4);
+          for (int i = 4; i < fields.length; i++)
+          {
+            owners.add(Name.fromString(fields[i]));
+          }
+          index.put(fields[0], new Entry(Long.parseLong(fields[1]),
+                                         Long.parseLong(fields[2]), relative, owners));
+        }
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch (TextParseException e)
+    {
+      log.warning("ignoring bad keyset index " + mIndexFile + ": " + e.getMessage());
+      index.clear();
+    }
+    catch (NumberFormatException e)
+    {
+      log.warning("ignoring bad keyset index " + mIndexFile + ": " + e.getMessage());
+      index.clear();
+    }
+    catch (IOException e)
+    {
+      log.warning("unable to read keyset index " + mIndexFile + ": " + e.getMessage());
+      index.clear();
+    }
+    return index;
+  }
+
+  /**
+   * Save the index. It is written to a temporary file which then replaces the
+   * old index. Failing to save it isn't fatal: it will just be rebuilt next
+   * time.
+   */
+  private void writeIndex()
+  {
+    File tmp = new File(mIndexFile.getPath() + ".tmp");
+    try
+    {
+      PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(tmp)));
+      try
+      {
+        out.println(HEADER);
+        for (Map.Entry<String, Entry> me : mIndex.entrySet())
+        {
+          Entry e = me.getValue();
+          StringBuilder sb = new StringBuilder();
+          sb.append(me.getKey()).append('\t').append(e.mtime).append('\t').append(e.length);
+          sb.append('\t').append(e.relative ? "rel" : "abs");
+          for (Name n : e.owners)
+          {
+            sb.append('\t').append(n);
+          }
+          out.println(sb);
+        }
+      }
+      finally
+      {
+        out.close();
+      }
+      if (out.checkError()) throw new IOException("write failed");
+      if (!tmp.renameTo(mIndexFile))
+      {
+        mIndexFile.delete();
+        if (!tmp.renameTo(mIndexFile)) throw new IOException("unable to rename " + tmp);
+      }
+    }
+    catch (IOException e)
+    {
+      log.fine("unable to save keyset index " + mIndexFile + ": " + e.getMessage());
+      tmp.delete();
+    }
+  }
+}
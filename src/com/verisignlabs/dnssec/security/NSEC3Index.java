@@ -0,0 +1,176 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xbill.DNS.NSEC3PARAMRecord;
+import org.xbill.DNS.utils.base16;
+import org.xbill.DNS.utils.base32;
+
+/**
+ * This class maps NSEC3 hashes back to the names they were calculated from.
+ * It can be saved to and loaded from a "sidecar" text file, which the signer
+ * can write alongside an NSEC3 signed zone, so that tools like
+ * jdnssec-zoneformat can recover the original owner names without hashing
+ * the whole zone again. The file format is a header line giving the NSEC3
+ * parameters, then one line per name:
+ *
+ * <pre>
+ *   ; nsec3 index: &lt;hash alg&gt; &lt;iterations&gt; &lt;salt&gt;
+ *   &lt;base32hex hash&gt; &lt;name&gt;
+ * </pre>
+ */
+public class NSEC3Index
+{
+  private static final String HEADER = "; nsec3 index:";
+
+  private int                     mHashAlg;
+  private int                     mIterations;
+  private byte[]                  mSalt;
+  private Map<ByteBuffer, String> mNames = new HashMap<ByteBuffer, String>();
+  private base32                  mBase32 = new base32(base32.Alphabet.BASE32HEX, false,
+                                                       true);
+
+  public NSEC3Index(int hashAlg, int iterations, byte[] salt)
+  {
+    mHashAlg = hashAlg;
+    mIterations = iterations;
+    mSalt = salt;
+  }
+
+  /** @return true if this index was built with the given NSEC3 parameters. */
+  public boolean matches(NSEC3PARAMRecord param)
+  {
+    if (param.getHashAlgorithm() != mHashAlg || param.getIterations() != mIterations)
+    {
+      return false;
+    }
+    byte[] salt = param.getSalt();
+    if (salt == null || salt.length == 0) return mSalt == null || mSalt.length == 0;
+    return java.util.Arrays.equals(salt, mSalt);
+  }
+
+  public void put(byte[] hash, String name)
+  {
+    mNames.put(ByteBuffer.wrap(hash), name);
+  }
+
+  /** @return the name for the hash, or null if it isn't known. */
+  public String get(byte[] hash)
+  {
+    return mNames.get(ByteBuffer.wrap(hash));
+  }
+
+  /**
+   * @return the name for the hashed (first) label of an NSEC3 owner name, or
+   *         null if it isn't known.
+   */
+  public String get(String hashLabel)
+  {
+    byte[] hash = mBase32.fromString(hashLabel);
+    if (hash == null) return null;
+    return get(hash);
+  }
+
+  /** Add the name for the hashed (first) label of an NSEC3 owner name. */
+  public void put(String hashLabel, String name)
+  {
+    byte[] hash = mBase32.fromString(hashLabel);
+    if (hash != null) put(hash, name);
+  }
+
+  public int size()
+  {
+    return mNames.size();
+  }
+
+  /** Write the index to a file, with the names in lower case. */
+  public void write(File f) throws IOException
+  {
+    PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(f), 64 * 1024));
+    try
+    {
+      out.println(HEADER + " " + mHashAlg + " " + mIterations + " "
+          + (mSalt == null || mSalt.length == 0 ? "-" : base16.toString(mSalt)));
+      for (Map.Entry<ByteBuffer, String> e : mNames.entrySet())
+      {
+        out.println(mBase32.toString(e.getKey().array()) + " " + e.getValue().toLowerCase());
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  /**
+   * Read an index from a file.
+   *
+   * @throws IOException
+   *           if the file can't be read or isn't an NSEC3 index.
+   */
+  public static NSEC3Index read(File f) throws IOException
+  {
+    BufferedReader in = new BufferedReader(new FileReader(f), 64 * 1024);
+    try
+    {
+      String line = in.readLine();
+      if (line == null || !line.startsWith(HEADER))
+      {
+        throw new IOException(f + " is not an NSEC3 index file");
+      }
+      String[] params = line.substring(HEADER.length()).trim().split("\\s+");
+      if (params.length != 3) throw new IOException(f + ": bad NSEC3 index header");
+
+      NSEC3Index index = null;
+      try
+      {
+        byte[] salt = params[2].equals("-") ? null : base16.fromString(params[2]);
+        index = new NSEC3Index(Integer.parseInt(params[0]), Integer.parseInt(params[1]), salt);
+      }
+      catch (NumberFormatException e)
+      {
+        throw new IOException(f + ": bad NSEC3 index header");
+      }
+
+      while ((line = in.readLine()) != null)
+      {
+        int sp = line.indexOf(' ');
+        if (sp <= 0) continue;
+        byte[] hash = index.mBase32.fromString(line.substring(0, sp));
+        if (hash == null) continue;
+        index.put(hash, line.substring(sp + 1));
+      }
+      return index;
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+}
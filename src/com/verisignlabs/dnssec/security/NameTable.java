@@ -0,0 +1,215 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+
+/**
+ * This class interns DNS names, so that equal names (owner names of the RRsets
+ * at a node, RRSIG signer names, etc.) share a single {@link Name} object, and
+ * caches the canonical (lowercased) wire form of each interned name. Since
+ * {@link Name#equals(Object)} checks identity first, comparing interned names
+ * is cheap.
+ *
+ * Names are only shared when they match exactly, including case, so interning
+ * never changes the presentation form of a zone. The table is thread-safe.
+ *
+ * A table only ever grows, so it should live no longer than the zone it was
+ * filled from: read a zone with
+ * {@link ZoneUtils#readZoneFile(String, Name, NameTable)}, hand the same table
+ * to the signer or verifier working on that zone, and drop it along with the
+ * zone.
+ */
+public class NameTable
+{
+  /** The interned form of a name and its canonical wire format. */
+  private static class Entry
+  {
+    public Name   name;
+    public byte[] canonical;
+    /** The exact wire format, if different from the canonical form. */
+    public byte[] wire;
+    /** The lowercased form of the name. */
+    public volatile Name lower;
+
+    public Entry(Name name)
+    {
+      this.name = name;
+      this.canonical = name.toWireCanonical();
+      byte[] w = name.toWire();
+      this.wire = Arrays.equals(w, canonical) ? null : w;
+      if (this.wire == null) this.lower = name;
+    }
+
+    public boolean sameCase(Name n)
+    {
+      if (n == name) return true;
+      return Arrays.equals(n.toWire(), wire != null ? wire : canonical);
+    }
+  }
+
+  private ConcurrentHashMap<Name, Entry> mEntries = new ConcurrentHashMap<Name, Entry>();
+
+  /**
+   * @return the shared instance of the name, adding it to the table if
+   *         necessary.
+   */
+  public Name intern(Name n)
+  {
+    if (n == null) return null;
+
+    Entry e = mEntries.get(n);
+    if (e == null)
+    {
+      Entry ne = new Entry(n);
+      e = mEntries.putIfAbsent(n, ne);
+      if (e == null) return n;
+    }
+
+    // Equal names that differ in case are left alone.
+    return e.sameCase(n) ? e.name : n;
+  }
+
+  /**
+   * @return the record, or a copy of it, with its owner name (and signer
+   *         name, for RRSIGs) interned.
+   */
+  public Record intern(Record r)
+  {
+    Name owner = intern(r.getName());
+    if (owner != r.getName()) r = r.withName(owner);
+
+    if (r instanceof RRSIGRecord)
+    {
+      RRSIGRecord sig = (RRSIGRecord) r;
+      Name signer = intern(sig.getSigner());
+      if (signer != sig.getSigner())
+      {
+        RRSIGRecord nsig = new RRSIGRecord(sig.getName(), sig.getDClass(), sig.getTTL(),
+                                           sig.getTypeCovered(), sig.getAlgorithm(),
+                                           sig.getOrigTTL(), sig.getExpire(),
+                                           sig.getTimeSigned(), sig.getFootprint(),
+                                           signer, sig.getSignature());
+        // The constructor recomputes the labels field, so only use the copy
+        // if it still matches.
+        if (nsig.getLabels() == sig.getLabels()) r = nsig;
+      }
+    }
+    return r;
+  }
+
+  /** Intern the names of every record in the list, in place. */
+  public void internAll(List<Record> records)
+  {
+    for (ListIterator<Record> i = records.listIterator(); i.hasNext();)
+    {
+      Record r = i.next();
+      Record ir = intern(r);
+      if (ir != r) i.set(ir);
+    }
+  }
+
+  /**
+   * @return the canonical wire form of the name. This is cached for names in
+   *         the table, and calculated for other names. The returned array must
+   *         not be modified.
+   */
+  public byte[] toWireCanonical(Name n)
+  {
+    Entry e = mEntries.get(n);
+    if (e != null) return e.canonical;
+    return n.toWireCanonical();
+  }
+
+  /**
+   * @return the lowercased (canonical) form of the name, shared with the
+   *         table when possible.
+   */
+  public Name toCanonical(Name n)
+  {
+    Entry e = mEntries.get(n);
+    if (e == null)
+    {
+      intern(n);
+      e = mEntries.get(n);
+    }
+    Name lower = e.lower;
+    if (lower == null)
+    {
+      try
+      {
+        lower = new Name(e.canonical);
+      }
+      catch (IOException ex)
+      {
+        // the canonical form of a valid name is always valid.
+        throw new IllegalStateException(ex);
+      }
+      e.lower = lower;
+    }
+    return lower;
+  }
+
+  /**
+   * @return the canonical wire form of the name, using the table's cached
+   *         copy if there is a table. The returned array must not be
+   *         modified.
+   */
+  public static byte[] toWireCanonical(NameTable names, Name n)
+  {
+    return names != null ? names.toWireCanonical(n) : n.toWireCanonical();
+  }
+
+  /**
+   * @return the lowercased (canonical) form of the name, shared with the table
+   *         if there is a table.
+   */
+  public static Name toCanonical(NameTable names, Name n)
+  {
+    return names != null ? names.toCanonical(n) : n.canonicalize();
+  }
+
+  /**
+   * @return the record with its names interned in the table, or the record
+   *         itself if there is no table.
+   */
+  public static Record intern(NameTable names, Record r)
+  {
+    return names != null ? names.intern(r) : r;
+  }
+
+  /** @return the number of distinct names in the table. */
+  public int size()
+  {
+    return mEntries.size();
+  }
+
+  /** Empty the table. */
+  public void clear()
+  {
+    mEntries.clear();
+  }
+}
@@ -0,0 +1,178 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This is a gzip output stream that compresses in parallel, in the manner of
+ * pigz. The data is cut into fixed size blocks, each block is compressed on
+ * a thread pool into a complete gzip member, and the members are written to
+ * the underlying stream in order. A sequence of gzip members is itself a
+ * valid gzip file, readable by gunzip and {@link java.util.zip.GZIPInputStream}.
+ */
+public class ParallelGzipOutputStream extends OutputStream
+{
+  public static final int      DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  private OutputStream         mOut;
+  private ExecutorService      mPool;
+  private LinkedList<Future<byte[]>> mPending = new LinkedList<Future<byte[]>>();
+  private int                  mMaxPending;
+  private int                  mBlockSize;
+  private byte[]               mBlock;
+  private int                  mLen     = 0;
+  private boolean              mWroteMember = false;
+  private boolean              mClosed  = false;
+
+  public ParallelGzipOutputStream(OutputStream out)
+  {
+    this(out, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param out
+   *          the stream to write the compressed data to.
+   * @param threads
+   *          the number of compression threads.
+   * @param blockSize
+   *          the amount of uncompressed data in each gzip member.
+   */
+  public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize)
+  {
+    mOut = out;
+    threads = Math.max(1, threads);
+    mPool = Executors.newFixedThreadPool(threads);
+    // Limit the amount of data waiting to be written.
+    mMaxPending = threads * 2;
+    mBlockSize = blockSize;
+    mBlock = new byte[blockSize];
+  }
+
+  private static byte[] compress(byte[] data, int len) throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(len / 3 + 64);
+    GZIPOutputStream gz = new GZIPOutputStream(bos, 64 * 1024);
+    gz.write(data, 0, len);
+    gz.finish();
+    gz.close();
+    return bos.toByteArray();
+  }
+
+  private void writeMember() throws IOException
+  {
+    Future<byte[]> f = mPending.removeFirst();
+    try
+    {
+      mOut.write(f.get());
+      mWroteMember = true;
+    }
+    catch (InterruptedException e)
+    {
+      throw new IOException("interrupted while compressing");
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException("error compressing: " + cause);
+    }
+  }
+
+  private void submitBlock() throws IOException
+  {
+    if (mLen == 0) return;
+
+    final byte[] data = mBlock;
+    final int len = mLen;
+    mBlock = new byte[mBlockSize];
+    mLen = 0;
+
+    mPending.add(mPool.submit(new Callable<byte[]>()
+    {
+      public byte[] call() throws IOException
+      {
+        return compress(data, len);
+      }
+    }));
+
+    while (mPending.size() > mMaxPending)
+    {
+      writeMember();
+    }
+  }
+
+  public void write(int b) throws IOException
+  {
+    if (mLen == mBlockSize) submitBlock();
+    mBlock[mLen++] = (byte) b;
+  }
+
+  public void write(byte[] b, int off, int len) throws IOException
+  {
+    while (len > 0)
+    {
+      if (mLen == mBlockSize) submitBlock();
+      int n = Math.min(len, mBlockSize - mLen);
+      System.arraycopy(b, off, mBlock, mLen, n);
+      mLen += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Compress and write out everything written so far. Note that this ends
+   * the current gzip member, so frequent flushing will hurt compression.
+   */
+  public void flush() throws IOException
+  {
+    submitBlock();
+    while (!mPending.isEmpty())
+    {
+      writeMember();
+    }
+    mOut.flush();
+  }
+
+  public void close() throws IOException
+  {
+    if (mClosed) return;
+    mClosed = true;
+    try
+    {
+      flush();
+      // An empty gzip file is still expected to contain a member.
+      if (!mWroteMember) mOut.write(compress(mBlock, 0));
+    }
+    finally
+    {
+      mPool.shutdownNow();
+      mOut.close();
+    }
+  }
+}
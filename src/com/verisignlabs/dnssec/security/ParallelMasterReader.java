@@ -0,0 +1,488 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Master;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.TTL;
+import org.xbill.DNS.TextParseException;
+
+/**
+ * This class reads large master (zone) files by memory mapping them, splitting
+ * them into chunks at safe record boundaries, and parsing the chunks in
+ * parallel. Each chunk is parsed with DNSjava's {@link Master}, started with
+ * the $ORIGIN and $TTL in effect at the chunk boundary, so the records (and
+ * their order) are identical to reading the file serially.
+ *
+ * A boundary is only placed at the start of a line that begins with an
+ * explicit owner name, outside of any parentheses or quoted string, and
+ * either after a $TTL directive has been seen or where the line gives its TTL
+ * explicitly (as in the zones this package writes, which have no $TTL). If
+ * there is no $TTL and the SOA gives no TTL, chunks start with the SOA minimum
+ * as the default TTL, as DNSjava does. Files that use $INCLUDE or $GENERATE, or
+ * that contain non-IN class records, are read serially.
+ *
+ * Names are interned in the given {@link NameTable}, if any, as they are
+ * parsed.
+ */
+public class ParallelMasterReader
+{
+  /** Files smaller than this are just read serially. */
+  public static final long DEFAULT_THRESHOLD = 16L * 1024 * 1024;
+
+  private static final long MIN_CHUNK_SIZE = 1024L * 1024;
+  /** Chunks are mapped whole, so they must stay well under 2GB. */
+  private static final long MAX_CHUNK_SIZE = 256L * 1024 * 1024;
+  private static final int  SCAN_WINDOW    = 64 * 1024 * 1024;
+
+  private int       mThreads;
+  private long      mThreshold;
+  private NameTable mNames;
+
+  private Logger  log = Logger.getLogger(this.getClass().toString());
+
+  /** Where a chunk starts, and the parsing state in effect there. */
+  private static class Chunk
+  {
+    public long start;
+    public long end;
+    public Name origin;
+    public long ttl;
+
+    public Chunk(long start, Name origin, long ttl)
+    {
+      this.start = start;
+      this.origin = origin;
+      this.ttl = ttl;
+    }
+  }
+
+  public ParallelMasterReader()
+  {
+    this(Runtime.getRuntime().availableProcessors(), DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * @param threads
+   *          the number of parsing threads to use.
+   * @param threshold
+   *          files smaller than this (in bytes) are read serially.
+   */
+  public ParallelMasterReader(int threads, long threshold)
+  {
+    this(threads, threshold, null);
+  }
+
+  /**
+   * @param threads
+   *          the number of parsing threads to use.
+   * @param threshold
+   *          files smaller than this (in bytes) are read serially.
+   * @param names
+   *          the table to intern owner and signer names in (may be null).
+   */
+  public ParallelMasterReader(int threads, long threshold, NameTable names)
+  {
+    mThreads = Math.max(1, threads);
+    mThreshold = threshold;
+    mNames = names;
+  }
+
+  /**
+   * Read a master file.
+   *
+   * @param zonefile
+   *          the path of the file.
+   * @param origin
+   *          the initial origin (may be null).
+   * @return the records, in file order.
+   * @throws IOException
+   *           if the file couldn't be read or parsed.
+   */
+  public List<Record> readZoneFile(String zonefile, Name origin) throws IOException
+  {
+    File f = new File(zonefile);
+
+    List<Chunk> chunks = null;
+    if (mThreads > 1 && f.length() >= mThreshold)
+    {
+      chunks = findChunks(f, origin);
+    }
+
+    if (chunks == null || chunks.size() < 2)
+    {
+      return readSerially(zonefile, origin);
+    }
+
+    log.fine("parsing " + zonefile + " in " + chunks.size() + " chunks");
+
+    List<Record> records = parseChunks(f, chunks);
+
+    // Records without an explicit class inherit the class of the previous
+    // record, which the chunked parse cannot know. So if there is anything
+    // but IN in the zone, start over.
+    for (Record r : records)
+    {
+      if (r.getDClass() != DClass.IN)
+      {
+        log.fine("non-IN records found, re-reading " + zonefile + " serially");
+        return readSerially(zonefile, origin);
+      }
+    }
+
+    return records;
+  }
+
+  private List<Record> readSerially(String zonefile, Name origin) throws IOException
+  {
+    ArrayList<Record> records = new ArrayList<Record>();
+    Master m = new Master(zonefile, origin);
+    Record r = null;
+
+    while ((r = m.nextRecord()) != null)
+    {
+      records.add(NameTable.intern(mNames, r));
+    }
+
+    return records;
+  }
+
+  private List<Record> parseChunks(File f, List<Chunk> chunks) throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(f, "r");
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(mThreads, chunks.size()));
+    try
+    {
+      final FileChannel channel = raf.getChannel();
+      List<Future<List<Record>>> results = new ArrayList<Future<List<Record>>>(chunks.size());
+
+      for (final Chunk c : chunks)
+      {
+        results.add(pool.submit(new Callable<List<Record>>()
+        {
+          public List<Record> call() throws IOException
+          {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, c.start,
+                                               c.end - c.start);
+            Master m = new Master(new ByteBufferInputStream(buf), c.origin, c.ttl);
+            List<Record> res = new ArrayList<Record>();
+            Record r = null;
+            while ((r = m.nextRecord()) != null)
+            {
+              res.add(NameTable.intern(mNames, r));
+            }
+            return res;
+          }
+        }));
+      }
+
+      int total = 0;
+      List<List<Record>> parts = new ArrayList<List<Record>>(results.size());
+      for (Future<List<Record>> fut : results)
+      {
+        List<Record> part = fut.get();
+        total += part.size();
+        parts.add(part);
+      }
+
+      ArrayList<Record> records = new ArrayList<Record>(total);
+      for (List<Record> part : parts)
+      {
+        records.addAll(part);
+      }
+      return records;
+    }
+    catch (InterruptedException e)
+    {
+      throw new IOException("interrupted while parsing " + f);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException("error parsing " + f + ": " + cause);
+    }
+    finally
+    {
+      pool.shutdownNow();
+      raf.close();
+    }
+  }
+
+  /**
+   * @return true if the (start of the) record line gives a TTL, so parsing can
+   *         start there without knowing the previous record's TTL.
+   */
+  private static boolean hasExplicitTTL(String line)
+  {
+    String[] tokens = line.trim().split("\\s+");
+    if (tokens.length < 3) return false;
+    // the TTL and class may come in either order, and only a TTL starts with
+    // a digit.
+    if (Character.isDigit(tokens[1].charAt(0))) return true;
+    return DClass.value(tokens[1]) >= 0 && Character.isDigit(tokens[2].charAt(0));
+  }
+
+  /**
+   * @return the minimum TTL of the SOA record that starts the file, or -1 if
+   *         the file doesn't start with one.
+   */
+  private static long soaMinimum(File f, Name origin) throws IOException
+  {
+    FileInputStream in = new FileInputStream(f);
+    try
+    {
+      Record r = new Master(in, origin).nextRecord();
+      if (r instanceof SOARecord) return ((SOARecord) r).getMinimum();
+      return -1;
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /**
+   * Scan the file for chunk boundaries.
+   *
+   * @return the list of chunks, or null if the file can't be safely split.
+   */
+  private List<Chunk> findChunks(File f, Name origin) throws IOException
+  {
+    long length = f.length();
+    long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                              Math.max(MIN_CHUNK_SIZE, length / (mThreads * 4)));
+
+    List<Chunk> chunks = new ArrayList<Chunk>();
+    chunks.add(new Chunk(0, origin, -1));
+
+    Name curOrigin = origin;
+    long curTTL = -1;
+    long nextSplit = chunkSize;
+
+    int parens = 0;
+    boolean inQuote = false;
+    boolean inComment = false;
+    boolean escaped = false;
+    boolean atLineStart = true;
+    StringBuilder directive = null;
+    // A possible boundary, when there is no $TTL: the start of the line.
+    StringBuilder candidate = null;
+    long candidateStart = 0;
+    // The first record line, until we know whether it gives a TTL.
+    StringBuilder firstLine = null;
+    boolean seenFirst = false;
+    boolean soaDefaultTTL = false;
+
+    RandomAccessFile raf = new RandomAccessFile(f, "r");
+    try
+    {
+      FileChannel channel = raf.getChannel();
+      long pos = 0;
+      while (pos < length)
+      {
+        int winSize = (int) Math.min(SCAN_WINDOW, length - pos);
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, winSize);
+
+        for (int i = 0; i < winSize; i++, pos++)
+        {
+          int b = buf.get(i) & 0xFF;
+
+          if (directive != null)
+          {
+            if (b != '\n')
+            {
+              directive.append((char) b);
+              continue;
+            }
+            // Process the directive line.
+            String[] tokens = directive.toString().split("[\\s;]+");
+            directive = null;
+            String d = tokens[0].toUpperCase();
+            if (d.equals("$INCLUDE") || d.equals("$GENERATE")) return null;
+            if (tokens.length < 2) return null;
+            try
+            {
+              if (d.equals("$ORIGIN")) curOrigin = Name.fromString(tokens[1], curOrigin);
+              if (d.equals("$TTL")) curTTL = TTL.parseTTL(tokens[1]);
+            }
+            catch (TextParseException e)
+            {
+              return null;
+            }
+            catch (NumberFormatException e)
+            {
+              return null;
+            }
+            atLineStart = true;
+            continue;
+          }
+
+          if (atLineStart)
+          {
+            atLineStart = false;
+            if (parens == 0 && !inQuote)
+            {
+              if (b == '$')
+              {
+                directive = new StringBuilder();
+                directive.append((char) b);
+                continue;
+              }
+              if (!seenFirst && b != ' ' && b != '\t' && b != '\n' && b != '\r' && b != ';')
+              {
+                seenFirst = true;
+                firstLine = new StringBuilder();
+              }
+              // A safe boundary: an explicit owner name, and a known TTL.
+              if (pos >= nextSplit && b != ' ' && b != '\t' && b != '\n' && b != '\r'
+                  && b != ';')
+              {
+                if (curTTL >= 0)
+                {
+                  chunks.get(chunks.size() - 1).end = pos;
+                  chunks.add(new Chunk(pos, curOrigin, curTTL));
+                  nextSplit = pos + chunkSize;
+                }
+                else
+                {
+                  // Without a $TTL, it depends on the rest of the line.
+                  candidate = new StringBuilder();
+                  candidateStart = pos;
+                }
+              }
+            }
+          }
+
+          if (candidate != null)
+          {
+            if (b == '\n' || b == ';' || candidate.length() >= 256)
+            {
+              if (hasExplicitTTL(candidate.toString()))
+              {
+                chunks.get(chunks.size() - 1).end = candidateStart;
+                chunks.add(new Chunk(candidateStart, curOrigin, -1));
+                nextSplit = candidateStart + chunkSize;
+              }
+              candidate = null;
+            }
+            else
+            {
+              candidate.append((char) b);
+            }
+          }
+
+          if (firstLine != null)
+          {
+            if (b == '\n' || b == ';' || firstLine.length() >= 256)
+            {
+              // With no $TTL, DNSjava takes the default TTL from the SOA
+              // minimum if the SOA doesn't give one.
+              soaDefaultTTL = curTTL < 0 && !hasExplicitTTL(firstLine.toString());
+              firstLine = null;
+            }
+            else
+            {
+              firstLine.append((char) b);
+            }
+          }
+
+          if (inComment)
+          {
+            if (b == '\n')
+            {
+              inComment = false;
+              atLineStart = true;
+            }
+            continue;
+          }
+
+          if (escaped)
+          {
+            escaped = false;
+            continue;
+          }
+
+          switch (b)
+          {
+            case '\\':
+              escaped = true;
+              break;
+            case '"':
+              inQuote = !inQuote;
+              break;
+            case ';':
+              if (!inQuote) inComment = true;
+              break;
+            case '(':
+              if (!inQuote) parens++;
+              break;
+            case ')':
+              if (!inQuote && parens > 0) parens--;
+              break;
+            case '\n':
+              atLineStart = true;
+              break;
+          }
+        }
+      }
+    }
+    finally
+    {
+      raf.close();
+    }
+
+    chunks.get(chunks.size() - 1).end = length;
+
+    if (soaDefaultTTL && chunks.size() > 1)
+    {
+      long minimum = soaMinimum(f, origin);
+      if (minimum < 0) return null;
+      for (Chunk c : chunks.subList(1, chunks.size()))
+      {
+        if (c.ttl < 0) c.ttl = minimum;
+      }
+    }
+
+    // A chunk can only outgrow the limit if no boundary was found for a long
+    // stretch; such a file is read serially.
+    for (Chunk c : chunks)
+    {
+      if (c.end - c.start > Integer.MAX_VALUE) return null;
+    }
+    return chunks;
+  }
+}
@@ -183,6 +183,12 @@ public class ProtoNSEC3
     return owner;
   }
 
+  /** @return the name that was hashed to get the owner, if known. */
+  public Name getOriginalOwner()
+  {
+    return originalOwner;
+  }
+
   public byte[] getSalt()
   {
     return salt;
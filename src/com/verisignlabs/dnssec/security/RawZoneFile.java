@@ -0,0 +1,334 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+
+/**
+ * This class reads and writes zones in BIND 9's "raw" master file format
+ * (as written by "named-compilezone -F raw"). The format is a fixed header:
+ *
+ * <pre>
+ *   format (u32, 2 = raw), version (u32), dump time (u32)
+ *   version 1 only: flags (u32), source serial (u32), last xfrin (u32)
+ * </pre>
+ *
+ * followed by a sequence of rdatasets:
+ *
+ * <pre>
+ *   total length (u32), class (u16), type (u16), covered type (u16),
+ *   TTL (u32), RR count (u32), owner name length (u16), owner name (wire),
+ *   then for each RR: RDATA length (u16), RDATA (uncompressed wire)
+ * </pre>
+ *
+ * All values are in network byte order.
+ */
+public class RawZoneFile
+{
+  /** BIND's dns_masterformat_raw. */
+  public static final int FORMAT_RAW = 2;
+  public static final int VERSION    = 1;
+
+  private static final int RDATASET_HEADER_LENGTH = 18;
+
+  /** This class reads the records of a raw zone file, in order. */
+  public static class Reader
+  {
+    private DataInputStream mIn;
+
+    private Name            mName;
+    private int             mClass;
+    private int             mType;
+    private long            mTTL;
+    private int             mRemaining = 0;
+
+    /** Read a raw zone file from a stream, positioned at the start. */
+    public Reader(InputStream in) throws IOException
+    {
+      mIn = new DataInputStream(in);
+
+      if (mIn.readInt() != FORMAT_RAW) throw new IOException("not a raw zone file");
+      int version = mIn.readInt();
+      if (version < 0 || version > VERSION)
+      {
+        throw new IOException("unsupported raw zone file version " + version);
+      }
+      mIn.readInt(); // dump time
+      if (version > 0)
+      {
+        mIn.readInt(); // flags
+        mIn.readInt(); // source serial
+        mIn.readInt(); // last xfrin
+      }
+    }
+
+    /** Start reading the next rdataset. Returns false at the end of file. */
+    private boolean nextRdataset() throws IOException
+    {
+      int first = mIn.read();
+      if (first < 0) return false;
+
+      long totallen = ((long) first << 24) | (mIn.readUnsignedByte() << 16)
+          | (mIn.readUnsignedByte() << 8) | mIn.readUnsignedByte();
+      if (totallen < RDATASET_HEADER_LENGTH)
+      {
+        throw new IOException("malformed raw zone file: bad rdataset length");
+      }
+      mClass = mIn.readUnsignedShort();
+      mType = mIn.readUnsignedShort();
+      mIn.readUnsignedShort(); // covered type, implied by the RRSIG RDATA
+      mTTL = mIn.readInt() & 0xFFFFFFFFL;
+      mRemaining = mIn.readInt();
+      if (mRemaining < 0)
+      {
+        throw new IOException("malformed raw zone file: bad RR count");
+      }
+
+      int namelen = mIn.readUnsignedShort();
+      if (namelen == 0 || namelen > 255)
+      {
+        throw new IOException("malformed raw zone file: bad owner name");
+      }
+      byte[] name = new byte[namelen];
+      mIn.readFully(name);
+      mName = new Name(name);
+      return true;
+    }
+
+    /** @return the next record, or null at the end of the file. */
+    public Record nextRecord() throws IOException
+    {
+      try
+      {
+        while (mRemaining == 0)
+        {
+          if (!nextRdataset()) return null;
+        }
+
+        int rdlength = mIn.readUnsignedShort();
+        byte[] rdata = new byte[rdlength];
+        mIn.readFully(rdata);
+        mRemaining--;
+
+        return Record.newRecord(mName, mType, mClass, mTTL, rdlength, rdata);
+      }
+      catch (EOFException e)
+      {
+        throw new IOException("truncated raw zone file");
+      }
+    }
+
+    /** @return all of the (remaining) records. */
+    public List<Record> readRecords() throws IOException
+    {
+      ArrayList<Record> records = new ArrayList<Record>();
+      Record r = null;
+      while ((r = nextRecord()) != null)
+      {
+        records.add(r);
+      }
+      return records;
+    }
+
+    public void close() throws IOException
+    {
+      mIn.close();
+    }
+  }
+
+  /**
+   * @return true if the stream starts with a raw zone file header. The stream
+   *         must support mark/reset, and is left at its start.
+   */
+  public static boolean isRawZone(InputStream in) throws IOException
+  {
+    in.mark(8);
+    try
+    {
+      DataInputStream din = new DataInputStream(in);
+      int format = din.readInt();
+      int version = din.readInt();
+      return format == FORMAT_RAW && version >= 0 && version <= VERSION;
+    }
+    catch (EOFException e)
+    {
+      return false;
+    }
+    finally
+    {
+      in.reset();
+    }
+  }
+
+  /** @return true if the file exists and is a raw zone file. */
+  public static boolean isRawZone(File f) throws IOException
+  {
+    if (!f.isFile() || f.length() < 12) return false;
+    InputStream in = new BufferedInputStream(new FileInputStream(f), 8);
+    try
+    {
+      return isRawZone(in);
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /** Read all of the records from a raw zone file. */
+  public static List<Record> readRawZone(File f) throws IOException
+  {
+    Reader r = new Reader(new BufferedInputStream(new FileInputStream(f), 1024 * 1024));
+    try
+    {
+      return r.readRecords();
+    }
+    finally
+    {
+      r.close();
+    }
+  }
+
+  private static int coveredType(Record r)
+  {
+    if (r instanceof RRSIGRecord) return ((RRSIGRecord) r).getTypeCovered();
+    return 0;
+  }
+
+  /**
+   * This class writes a raw zone file a record at a time. Consecutive records
+   * with the same owner, class, type, covered type and TTL are written as one
+   * rdataset, so the records should be in zone (sorted) order for the most
+   * compact output. Only the current rdataset is held in memory.
+   */
+  public static class Writer
+  {
+    private ChannelOutput mOut;
+    private Record        mFirst;
+    private int           mCovers;
+    private List<byte[]>  mWires = new ArrayList<byte[]>();
+
+    /**
+     * Start a raw zone file, writing its header.
+     *
+     * @param channel
+     *          where to write the zone. It is not closed.
+     */
+    public Writer(WritableByteChannel channel) throws IOException
+    {
+      mOut = new ChannelOutput(channel);
+
+      mOut.u32(FORMAT_RAW);
+      mOut.u32(VERSION);
+      mOut.u32(System.currentTimeMillis() / 1000);
+      mOut.u32(0); // flags
+      mOut.u32(0); // source serial
+      mOut.u32(0); // last xfrin
+    }
+
+    public void write(Record r) throws IOException
+    {
+      if (mFirst != null
+          && (r.getType() != mFirst.getType() || r.getDClass() != mFirst.getDClass()
+              || r.getTTL() != mFirst.getTTL() || coveredType(r) != mCovers
+              || !r.getName().equals(mFirst.getName())))
+      {
+        writeRdataset();
+      }
+      if (mFirst == null)
+      {
+        mFirst = r;
+        mCovers = coveredType(r);
+      }
+      mWires.add(r.toWire(Section.ANSWER));
+    }
+
+    private void writeRdataset() throws IOException
+    {
+      // Each wire record is the (uncompressed) owner name, 10 bytes of type,
+      // class, TTL and RDATA length, then the RDATA.
+      byte[] nameWire = mFirst.getName().toWire();
+      int rdataOffset = nameWire.length + 10;
+      long totallen = RDATASET_HEADER_LENGTH + 2 + nameWire.length;
+      for (byte[] w : mWires)
+      {
+        totallen += 2 + w.length - rdataOffset;
+      }
+
+      mOut.u32(totallen);
+      mOut.u16(mFirst.getDClass());
+      mOut.u16(mFirst.getType());
+      mOut.u16(mCovers);
+      mOut.u32(mFirst.getTTL());
+      mOut.u32(mWires.size());
+      mOut.u16(nameWire.length);
+      mOut.bytes(nameWire);
+      for (byte[] w : mWires)
+      {
+        mOut.u16(w.length - rdataOffset);
+        mOut.bytes(w, rdataOffset, w.length - rdataOffset);
+      }
+
+      mFirst = null;
+      mWires.clear();
+    }
+
+    /** Write out the last rdataset, and flush the output. */
+    public void flush() throws IOException
+    {
+      if (mFirst != null) writeRdataset();
+      mOut.flush();
+    }
+  }
+
+  /**
+   * Write a list of records in raw format. Consecutive records with the same
+   * owner, class, type, covered type and TTL are written as one rdataset, so
+   * the records should be in zone (sorted) order for the most compact
+   * output.
+   *
+   * @param records
+   *          the records to write.
+   * @param channel
+   *          where to write the zone. It is not closed.
+   */
+  public static void writeRawZone(List<Record> records, WritableByteChannel channel)
+      throws IOException
+  {
+    Writer out = new Writer(channel);
+    for (Record r : records)
+    {
+      out.write(r);
+    }
+    out.flush();
+  }
+}
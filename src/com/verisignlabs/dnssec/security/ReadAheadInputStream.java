@@ -0,0 +1,176 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class reads an input stream on a background thread, a block at a
+ * time, so that producing the data (for instance, decompressing it) overlaps
+ * with consuming it (for instance, parsing it).
+ */
+public class ReadAheadInputStream extends InputStream
+{
+  private static final int    BLOCK_SIZE = 256 * 1024;
+  private static final byte[] EOF        = new byte[0];
+
+  private InputStream           mIn;
+  private BlockingQueue<byte[]> mQueue;
+  private Thread                mReader;
+  private volatile Throwable    mError;
+  private byte[]                mCurrent = null;
+  private int                   mPos     = 0;
+  private boolean               mEOF     = false;
+
+  /**
+   * @param in
+   *          the stream to read ahead of.
+   * @param blocks
+   *          the maximum number of blocks to buffer.
+   */
+  public ReadAheadInputStream(InputStream in, int blocks)
+  {
+    mIn = in;
+    mQueue = new ArrayBlockingQueue<byte[]>(Math.max(1, blocks));
+    mReader = new Thread(new Runnable()
+    {
+      public void run()
+      {
+        readAhead();
+      }
+    }, "read-ahead");
+    mReader.setDaemon(true);
+    mReader.start();
+  }
+
+  public ReadAheadInputStream(InputStream in)
+  {
+    this(in, 16);
+  }
+
+  private void readAhead()
+  {
+    boolean closed = false;
+    try
+    {
+      while (true)
+      {
+        byte[] buf = new byte[BLOCK_SIZE];
+        int len = 0;
+        while (len < buf.length)
+        {
+          int n = mIn.read(buf, len, buf.length - len);
+          if (n < 0) break;
+          len += n;
+        }
+        if (len == 0) break;
+        mQueue.put(len == buf.length ? buf : Arrays.copyOf(buf, len));
+        if (len < buf.length) break;
+      }
+    }
+    catch (InterruptedException e)
+    {
+      // closed early: no one is waiting for the rest.
+      closed = true;
+    }
+    catch (Throwable t)
+    {
+      // anything else (a corrupt gzip stream, running out of memory) is
+      // passed on to the reader.
+      mError = t;
+    }
+    finally
+    {
+      // always end the stream, so that the reader never waits forever.
+      if (!closed)
+      {
+        try
+        {
+          mQueue.put(EOF);
+        }
+        catch (InterruptedException e)
+        {
+          // closed early.
+        }
+      }
+    }
+  }
+
+  /** @return false at the end of the stream. */
+  private boolean nextBlock() throws IOException
+  {
+    if (mEOF) return false;
+    try
+    {
+      mCurrent = mQueue.take();
+      mPos = 0;
+    }
+    catch (InterruptedException e)
+    {
+      throw new IOException("interrupted while reading");
+    }
+    if (mCurrent == EOF)
+    {
+      mEOF = true;
+      Throwable t = mError;
+      if (t instanceof IOException) throw (IOException) t;
+      if (t instanceof RuntimeException) throw (RuntimeException) t;
+      if (t instanceof Error) throw (Error) t;
+      if (t != null) throw new IOException("error reading ahead: " + t);
+      return false;
+    }
+    return true;
+  }
+
+  public int read() throws IOException
+  {
+    if (mCurrent == null || mPos == mCurrent.length)
+    {
+      if (!nextBlock()) return -1;
+    }
+    return mCurrent[mPos++] & 0xFF;
+  }
+
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    if (len == 0) return 0;
+    if (mCurrent == null || mPos == mCurrent.length)
+    {
+      if (!nextBlock()) return -1;
+    }
+    int n = Math.min(len, mCurrent.length - mPos);
+    System.arraycopy(mCurrent, mPos, b, off, n);
+    mPos += n;
+    return n;
+  }
+
+  public int available()
+  {
+    return mCurrent == null ? 0 : mCurrent.length - mPos;
+  }
+
+  public void close() throws IOException
+  {
+    mReader.interrupt();
+    mIn.close();
+  }
+}
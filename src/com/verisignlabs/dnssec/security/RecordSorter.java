@@ -0,0 +1,283 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.xbill.DNS.Record;
+
+/**
+ * This class sorts a stream of records that may be too large to hold in
+ * memory. Records are collected into a buffer; each time the buffer fills it
+ * is sorted (in parallel) and written to a temporary file as a
+ * {@link ZoneSnapshot}. The sorted runs are then merged as the records are
+ * read back. The sort is stable.
+ *
+ * Since snapshots store RDATA in canonical form, records that spill to disk
+ * come back with their RDATA canonicalized.
+ */
+public class RecordSorter
+{
+  public static final int    DEFAULT_MAX_RECORDS = 1000000;
+
+  private Comparator<Record> mComparator;
+  private int                mThreads;
+  private int                mMaxRecords;
+  private File               mTempDir;
+
+  private List<Record>       mBuffer;
+  private List<File>         mRuns = new ArrayList<File>();
+  private PriorityQueue<Head> mQueue;
+
+  private Logger             log = Logger.getLogger(this.getClass().toString());
+
+  /** The next record from one of the sorted sources being merged. */
+  private static class Head
+  {
+    public Record              record;
+    public int                 source;
+    public Iterator<Record>    list;
+    public ZoneSnapshot.Reader run;
+
+    public Head(int source, Iterator<Record> list, ZoneSnapshot.Reader run)
+    {
+      this.source = source;
+      this.list = list;
+      this.run = run;
+    }
+
+    /** @return false if the source is exhausted. */
+    public boolean advance() throws IOException
+    {
+      if (run != null)
+      {
+        record = run.nextRecord();
+        if (record == null) run.close();
+      }
+      else
+      {
+        record = list.hasNext() ? list.next() : null;
+      }
+      return record != null;
+    }
+  }
+
+  /** Orders heads by record, then by source, which keeps the merge stable. */
+  private static class HeadComparator implements Comparator<Head>
+  {
+    private Comparator<Record> mComparator;
+
+    public HeadComparator(Comparator<Record> cmp)
+    {
+      mComparator = cmp;
+    }
+
+    public int compare(Head a, Head b)
+    {
+      int res = mComparator.compare(a.record, b.record);
+      if (res != 0) return res;
+      return a.source - b.source;
+    }
+  }
+
+  /**
+   * @param cmp
+   *          the record ordering.
+   * @param threads
+   *          the number of threads to sort with.
+   * @param maxRecords
+   *          the maximum number of records to sort in memory.
+   * @param tempDir
+   *          where to write temporary files (null for the system default).
+   */
+  public RecordSorter(Comparator<Record> cmp, int threads, int maxRecords, File tempDir)
+  {
+    mComparator = cmp;
+    mThreads = Math.max(1, threads);
+    mMaxRecords = Math.max(1, maxRecords);
+    mTempDir = tempDir;
+    mBuffer = new ArrayList<Record>();
+  }
+
+  public void add(Record r) throws IOException
+  {
+    mBuffer.add(r);
+    if (mBuffer.size() >= mMaxRecords) spill();
+  }
+
+  public void addAll(List<Record> records) throws IOException
+  {
+    for (Record r : records)
+    {
+      add(r);
+    }
+  }
+
+  private void spill() throws IOException
+  {
+    List<Record> sorted = sort(mBuffer, mComparator, mThreads);
+    mBuffer = new ArrayList<Record>();
+
+    File f = File.createTempFile("jdnssec-sort", ZoneSnapshot.FILE_SUFFIX, mTempDir);
+    f.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(f);
+    try
+    {
+      ZoneSnapshot.writeSnapshot(sorted, null, out.getChannel());
+    }
+    finally
+    {
+      out.close();
+    }
+    mRuns.add(f);
+    log.fine("wrote sorted run " + mRuns.size() + " (" + sorted.size() + " records) to " + f);
+  }
+
+  /**
+   * Finish adding records, and start merging. After this, call
+   * {@link #nextRecord()} to read the records back in order.
+   */
+  public void finish() throws IOException
+  {
+    List<Record> last = sort(mBuffer, mComparator, mThreads);
+    mBuffer = null;
+
+    mQueue = new PriorityQueue<Head>(mRuns.size() + 1, new HeadComparator(mComparator));
+    for (int i = 0; i < mRuns.size(); i++)
+    {
+      Head h = new Head(i, null, new ZoneSnapshot.Reader(mRuns.get(i)));
+      if (h.advance()) mQueue.add(h);
+    }
+    Head h = new Head(mRuns.size(), last.iterator(), null);
+    if (h.advance()) mQueue.add(h);
+  }
+
+  /** @return the next record in sorted order, or null when done. */
+  public Record nextRecord() throws IOException
+  {
+    Head h = mQueue.poll();
+    if (h == null) return null;
+    Record r = h.record;
+    if (h.advance()) mQueue.add(h);
+    return r;
+  }
+
+  /** @return the number of sorted runs written to temporary files. */
+  public int getRunCount()
+  {
+    return mRuns.size();
+  }
+
+  /** Remove the temporary files. */
+  public void close()
+  {
+    for (File f : mRuns)
+    {
+      f.delete();
+    }
+    mRuns.clear();
+  }
+
+  /**
+   * Sort a list of records in memory, using multiple threads. The list is
+   * split into one part per thread, each part is sorted, and the parts are
+   * merged. Like {@link Collections#sort(List, Comparator)}, the sort is
+   * stable.
+   *
+   * @return a new, sorted list.
+   */
+  public static List<Record> sort(List<Record> records, final Comparator<Record> cmp,
+                                  int threads)
+  {
+    int parts = Math.max(1, Math.min(threads, records.size() / 10000));
+    if (parts == 1)
+    {
+      List<Record> res = new ArrayList<Record>(records);
+      Collections.sort(res, cmp);
+      return res;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(parts);
+    try
+    {
+      int partSize = (records.size() + parts - 1) / parts;
+      List<Future<List<Record>>> futures = new ArrayList<Future<List<Record>>>();
+      for (int i = 0; i < records.size(); i += partSize)
+      {
+        final List<Record> part = new ArrayList<Record>(records.subList(i,
+            Math.min(records.size(), i + partSize)));
+        futures.add(pool.submit(new Callable<List<Record>>()
+        {
+          public List<Record> call()
+          {
+            Collections.sort(part, cmp);
+            return part;
+          }
+        }));
+      }
+
+      PriorityQueue<Head> queue = new PriorityQueue<Head>(futures.size(),
+                                                          new HeadComparator(cmp));
+      for (int i = 0; i < futures.size(); i++)
+      {
+        Head h = new Head(i, futures.get(i).get().iterator(), null);
+        if (h.advance()) queue.add(h);
+      }
+
+      List<Record> res = new ArrayList<Record>(records.size());
+      Head h = null;
+      while ((h = queue.poll()) != null)
+      {
+        res.add(h.record);
+        if (h.advance()) queue.add(h);
+      }
+      return res;
+    }
+    catch (InterruptedException e)
+    {
+      throw new IllegalStateException("interrupted while sorting", e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new IllegalStateException("error while sorting", e.getCause());
+    }
+    catch (IOException e)
+    {
+      // in-memory heads can't throw this.
+      throw new IllegalStateException(e);
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,364 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * This class decides when each of a set of zones needs to be (re-)signed. Each
+ * zone has a deadline, which after signing is the zone's earliest RRSIG
+ * expiration minus a refresh window; zones are kept in a priority queue by
+ * deadline, and a zone is only signed once its deadline has passed. At most a
+ * fixed number of zones are signed at once; when more are due than that, the
+ * ones with the earliest deadlines go first.
+ *
+ * A zone is never signed by two threads at once. If a zone comes due while it
+ * is being signed (because its file changed, say), it is signed again
+ * afterwards.
+ *
+ * @param <Z>
+ *          whatever identifies a zone to the {@link Signer}.
+ */
+public class ResignScheduler<Z>
+{
+  /** Signs zones for the scheduler. */
+  public interface Signer<Z>
+  {
+    /**
+     * Sign the zone.
+     *
+     * @return the earliest RRSIG expiration time in the signed zone, or null
+     *         if the zone doesn't need to be re-signed on a schedule.
+     */
+    Date sign(Z zone) throws Exception;
+  }
+
+  /** A zone in the queue. */
+  private static class Entry<Z> implements Comparable<Entry<Z>>
+  {
+    public Z    zone;
+    public long deadline;
+    public long seq;
+
+    public Entry(Z zone, long deadline, long seq)
+    {
+      this.zone = zone;
+      this.deadline = deadline;
+      this.seq = seq;
+    }
+
+    public int compareTo(Entry<Z> o)
+    {
+      if (deadline != o.deadline) return deadline < o.deadline ? -1 : 1;
+      if (seq != o.seq) return seq < o.seq ? -1 : 1;
+      return 0;
+    }
+  }
+
+  private Signer<Z>               mSigner;
+  private int                     mMaxConcurrent;
+  private long                    mRefreshWindow;
+  private long                    mRetryInterval;
+
+  private PriorityQueue<Entry<Z>> mQueue    = new PriorityQueue<Entry<Z>>();
+  /** The live queue entry for each zone; other entries are stale. */
+  private Map<Z, Entry<Z>>        mEntries  = new HashMap<Z, Entry<Z>>();
+  /** Zones being signed right now. */
+  private Set<Z>                  mRunning  = new HashSet<Z>();
+  /** Zones removed while they were being signed. */
+  private Set<Z>                  mRemoved  = new HashSet<Z>();
+  private long                    mSeq      = 0;
+  private long                    mSigned   = 0;
+  private long                    mFailed   = 0;
+  private boolean                 mShutdown = false;
+
+  private ExecutorService         mWorkers;
+  private Thread                  mDispatcher;
+
+  private Logger                  log       = Logger.getLogger(this.getClass().toString());
+
+  /**
+   * @param signer
+   *          what signs the zones.
+   * @param maxConcurrent
+   *          the maximum number of zones to sign at once.
+   * @param refreshWindow
+   *          how long (in milliseconds) before its earliest RRSIG expires to
+   *          re-sign a zone.
+   * @param retryInterval
+   *          how long (in milliseconds) to wait before trying again when
+   *          signing fails. This is also the minimum time between scheduled
+   *          re-signings of a zone.
+   */
+  public ResignScheduler(Signer<Z> signer, int maxConcurrent, long refreshWindow,
+                         long retryInterval)
+  {
+    mSigner = signer;
+    mMaxConcurrent = Math.max(1, maxConcurrent);
+    mRefreshWindow = refreshWindow;
+    mRetryInterval = Math.max(1, retryInterval);
+    mWorkers = Executors.newFixedThreadPool(mMaxConcurrent);
+  }
+
+  /** @return when a zone with this earliest RRSIG expiration should be signed. */
+  public long refreshDeadline(Date expiration)
+  {
+    return expiration.getTime() - mRefreshWindow;
+  }
+
+  /**
+   * Set the time the zone should be signed at, replacing any earlier (or
+   * later) deadline it had.
+   */
+  public synchronized void schedule(Z zone, long deadline)
+  {
+    Entry<Z> e = new Entry<Z>(zone, deadline, mSeq++);
+    mRemoved.remove(zone);
+    mEntries.put(zone, e);
+    mQueue.add(e);
+    notifyAll();
+  }
+
+  /**
+   * Schedule the zone to be re-signed ahead of its earliest RRSIG expiration
+   * (which is immediately, if that is already within the refresh window).
+   */
+  public void scheduleRefresh(Z zone, Date expiration)
+  {
+    schedule(zone, refreshDeadline(expiration));
+  }
+
+  /** Stop managing the zone (it will still finish signing, if it is). */
+  public synchronized void remove(Z zone)
+  {
+    // the queue entry becomes stale, and is dropped when it reaches the head.
+    mEntries.remove(zone);
+    if (mRunning.contains(zone)) mRemoved.add(zone);
+  }
+
+  /**
+   * @return the zone's current deadline, or -1 if it is not scheduled to be
+   *         signed.
+   */
+  public synchronized long getDeadline(Z zone)
+  {
+    Entry<Z> e = mEntries.get(zone);
+    return e != null ? e.deadline : -1;
+  }
+
+  /** @return the number of zones queued (including those not yet due). */
+  public synchronized int size()
+  {
+    return mEntries.size();
+  }
+
+  /** @return the number of successful signings so far. */
+  public synchronized long getSignedCount()
+  {
+    return mSigned;
+  }
+
+  /** @return the number of failed signings so far. */
+  public synchronized long getFailedCount()
+  {
+    return mFailed;
+  }
+
+  /** Start signing zones as they come due, in a background thread. */
+  public synchronized void start()
+  {
+    if (mDispatcher != null) return;
+    mDispatcher = new Thread("resign-scheduler")
+    {
+      public void run()
+      {
+        try
+        {
+          dispatchLoop();
+        }
+        catch (InterruptedException e)
+        {
+          // shutting down.
+        }
+      }
+    };
+    mDispatcher.setDaemon(true);
+    mDispatcher.start();
+  }
+
+  /**
+   * Wait until no zone is being signed and no zone is due before the given
+   * time. If {@link #start()} hasn't been called, this dispatches the zones
+   * itself.
+   */
+  public synchronized void awaitIdle(long until) throws InterruptedException
+  {
+    while (true)
+    {
+      long wait = mDispatcher == null ? dispatch() : nextWait();
+      Entry<Z> head = head();
+      boolean due = head != null && head.deadline <= until;
+      if (!due && mRunning.isEmpty()) return;
+      wait(wait > 0 ? wait : 1000);
+    }
+  }
+
+  /**
+   * Stop dispatching zones. Signings in progress are allowed to finish, for up
+   * to the given time.
+   */
+  public void shutdown(long timeout) throws InterruptedException
+  {
+    synchronized (this)
+    {
+      mShutdown = true;
+      notifyAll();
+    }
+    mWorkers.shutdown();
+    mWorkers.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  private void dispatchLoop() throws InterruptedException
+  {
+    synchronized (this)
+    {
+      while (!mShutdown)
+      {
+        long wait = dispatch();
+        wait(wait > 0 ? wait : 60000);
+      }
+    }
+  }
+
+  /** @return the live entry at the head of the queue, dropping stale ones. */
+  private Entry<Z> head()
+  {
+    Entry<Z> e;
+    while ((e = mQueue.peek()) != null && mEntries.get(e.zone) != e)
+    {
+      mQueue.poll();
+    }
+    return e;
+  }
+
+  /** @return how long until the head of the queue is due (0 if none). */
+  private long nextWait()
+  {
+    Entry<Z> e = head();
+    if (e == null) return 0;
+    return Math.max(1, e.deadline - System.currentTimeMillis());
+  }
+
+  /**
+   * Start signing the zones that are due, earliest deadline first, as long as
+   * there are free workers.
+   *
+   * @return how long until the next zone is due (0 if there are none).
+   */
+  private synchronized long dispatch()
+  {
+    long now = System.currentTimeMillis();
+    // Zones that are due but already being signed wait for that to finish.
+    List<Entry<Z>> busy = new ArrayList<Entry<Z>>();
+    long wait = 0;
+    Entry<Z> e;
+    while (!mShutdown && (e = head()) != null)
+    {
+      if (e.deadline > now)
+      {
+        wait = e.deadline - now;
+        break;
+      }
+      if (mRunning.size() >= mMaxConcurrent) break;
+
+      mQueue.poll();
+      if (mRunning.contains(e.zone))
+      {
+        busy.add(e);
+        continue;
+      }
+
+      mEntries.remove(e.zone);
+      mRunning.add(e.zone);
+      final Z zone = e.zone;
+      log.fine("signing " + zone + " (" + (now - e.deadline) + "ms after its deadline)");
+      mWorkers.execute(new Runnable()
+      {
+        public void run()
+        {
+          signZone(zone);
+        }
+      });
+    }
+    mQueue.addAll(busy);
+    return wait;
+  }
+
+  private void signZone(Z zone)
+  {
+    Date expiration = null;
+    boolean ok = false;
+    try
+    {
+      expiration = mSigner.sign(zone);
+      ok = true;
+    }
+    catch (Exception e)
+    {
+      log.warning("unable to sign " + zone + ": " + e.getMessage());
+    }
+
+    synchronized (this)
+    {
+      mRunning.remove(zone);
+      if (ok) mSigned++;
+      else mFailed++;
+
+      long now = System.currentTimeMillis();
+      // Unless it was re-queued while we were signing it, decide when to sign
+      // it next.
+      if (mRemoved.remove(zone))
+      {
+        log.fine(zone + " is no longer managed");
+      }
+      else if (!mEntries.containsKey(zone))
+      {
+        if (!ok)
+        {
+          schedule(zone, now + mRetryInterval);
+        }
+        else if (expiration != null)
+        {
+          schedule(zone, Math.max(refreshDeadline(expiration), now + mRetryInterval));
+        }
+      }
+      notifyAll();
+    }
+  }
+}
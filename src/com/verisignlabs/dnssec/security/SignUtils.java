@@ -26,6 +26,11 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 import java.security.interfaces.DSAParams;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.xbill.DNS.*;
@@ -122,7 +127,7 @@ public class SignUtils
    * @return the RDATA portion of the prototype RRSIG record. This forms the
    *         first part of the data to be signed.
    */
-  private static byte[] generatePreSigRdata(RRSIGRecord presig)
+  private static byte[] generatePreSigRdata(RRSIGRecord presig, NameTable names)
   {
     // Generate the binary image;
     DNSOutput image = new DNSOutput();
@@ -141,7 +146,7 @@ public class SignUtils
     image.writeU32(expire_time);
     image.writeU32(start_time);
     image.writeU16(presig.getFootprint());
-    image.writeByteArray(signer.toWireCanonical());
+    image.writeByteArray(NameTable.toWireCanonical(names, signer));
 
     return image.toByteArray();
   }
@@ -160,8 +165,22 @@ public class SignUtils
    * @return the canonical wire line format of the rrset. This is the second
    *         part of data to be signed.
    */
-  @SuppressWarnings("unchecked")
   public static byte[] generateCanonicalRRsetData(RRset rrset, long ttl, int labels)
+  {
+    return generateCanonicalRRsetData(rrset, ttl, labels, null);
+  }
+
+  /**
+   * Calculate the canonical wire line format of the RRset, as
+   * {@link #generateCanonicalRRsetData(RRset, long, int)}.
+   * 
+   * @param names
+   *          the name table of the zone, for its cached canonical names (may
+   *          be null).
+   */
+  @SuppressWarnings("unchecked")
+  public static byte[] generateCanonicalRRsetData(RRset rrset, long ttl, int labels,
+                                                  NameTable names)
   {
     DNSOutput image = new DNSOutput();
 
@@ -176,37 +195,37 @@ public class SignUtils
       // correct for Name()'s conception of label count.
       labels++;
     }
-    boolean wildcardName = false;
     if (n.labels() != labels)
     {
       n = n.wild(n.labels() - labels);
-      wildcardName = true;
       log.fine("Detected wildcard expansion: " + rrset.getName() + " changed to " + n);
     }
 
     // now convert the wire format records in the RRset into a
-    // list of byte arrays.
+    // list of byte arrays. Every record gets the same (canonical) owner name
+    // and TTL, so build the wire format directly from the (cached) canonical
+    // owner name.
+    byte[] name_wire = NameTable.toWireCanonical(names, n);
     ArrayList<byte[]> canonical_rrs = new ArrayList<byte[]>();
     for (Iterator<Record> i = rrset.rrs(); i.hasNext();)
     {
       Record r = i.next();
-      if (r.getTTL() != ttl || wildcardName)
-      {
-        // If necessary, we need to create a new record with a new ttl
-        // or ownername.
-        // In the TTL case, this avoids changing the ttl in the
-        // response.
-        r = Record.newRecord(n, r.getType(), r.getDClass(), ttl, r.rdataToWireCanonical());
-      }
-      byte[] wire_fmt = r.toWireCanonical();
-      canonical_rrs.add(wire_fmt);
+      byte[] rdata = r.rdataToWireCanonical();
+      DNSOutput rr = new DNSOutput(name_wire.length + 10 + rdata.length);
+      rr.writeByteArray(name_wire);
+      rr.writeU16(r.getType());
+      rr.writeU16(r.getDClass());
+      rr.writeU32(ttl);
+      rr.writeU16(rdata.length);
+      rr.writeByteArray(rdata);
+      canonical_rrs.add(rr.toByteArray());
     }
 
     // put the records into the correct ordering.
     // Calculate the offset where the RDATA begins (we have to skip
     // past the length byte)
 
-    int offset = rrset.getName().toWireCanonical().length + 10;
+    int offset = name_wire.length + 10;
     ByteArrayComparator bac = new ByteArrayComparator(offset, false);
 
     Collections.sort(canonical_rrs, bac);
@@ -231,11 +250,25 @@ public class SignUtils
    */
   public static byte[] generateSigData(RRset rrset, RRSIGRecord presig)
       throws IOException
+  {
+    return generateSigData(rrset, presig, null);
+  }
+
+  /**
+   * Generate the data to be signed, as
+   * {@link #generateSigData(RRset, RRSIGRecord)}.
+   * 
+   * @param names
+   *          the name table of the zone, for its cached canonical names (may
+   *          be null).
+   */
+  public static byte[] generateSigData(RRset rrset, RRSIGRecord presig, NameTable names)
+      throws IOException
   {
     byte[] rrset_data = generateCanonicalRRsetData(rrset, presig.getOrigTTL(),
-                                                   presig.getLabels());
+                                                   presig.getLabels(), names);
 
-    return generateSigData(rrset_data, presig);
+    return generateSigData(rrset_data, presig, names);
   }
 
   /**
@@ -253,7 +286,21 @@ public class SignUtils
   public static byte[] generateSigData(byte[] rrset_data, RRSIGRecord presig)
       throws IOException
   {
-    byte[] sig_rdata = generatePreSigRdata(presig);
+    return generateSigData(rrset_data, presig, null);
+  }
+
+  /**
+   * Generate the data to be signed, as
+   * {@link #generateSigData(byte[], RRSIGRecord)}.
+   * 
+   * @param names
+   *          the name table of the zone, for its cached canonical names (may
+   *          be null).
+   */
+  public static byte[] generateSigData(byte[] rrset_data, RRSIGRecord presig,
+                                       NameTable names) throws IOException
+  {
+    byte[] sig_rdata = generatePreSigRdata(presig, names);
 
     ByteArrayOutputStream image = new ByteArrayOutputStream(sig_rdata.length
         + rrset_data.length);
@@ -893,6 +940,26 @@ public class SignUtils
                                           byte[] salt, int iterations, long nsec3param_ttl)
       throws NoSuchAlgorithmException
   {
+    generateNSEC3Records(zonename, records, salt, iterations, nsec3param_ttl, null, null);
+  }
+
+  /**
+   * Generate the NSEC3 records in place, as
+   * {@link #generateNSEC3Records(Name, List, byte[], int, long)}.
+   * 
+   * @param index
+   *          if not null, the original owner name of each NSEC3 record is
+   *          added to this.
+   * @param names
+   *          the name table of the zone, for its cached canonical names (may
+   *          be null).
+   */
+  public static void generateNSEC3Records(Name zonename, List<Record> records,
+                                          byte[] salt, int iterations, long nsec3param_ttl,
+                                          NSEC3Index index, NameTable names)
+      throws NoSuchAlgorithmException
+  {
+    Object ev = DnsSecEvents.begin(DnsSecEvents.NSEC3_HASH);
     List<ProtoNSEC3> proto_nsec3s = new ArrayList<ProtoNSEC3>();
     NodeInfo current_node = null;
     NodeInfo last_node = null;
@@ -947,17 +1014,26 @@ public class SignUtils
       // At this point, r represents the start of a new node.
       // So we move current_node to last_node and generate a new current node.
       // But first, we need to do something with the last node.
-      generateNSEC3ForNode(last_node, zonename, salt, iterations, false, proto_nsec3s);
+      generateNSEC3ForNode(last_node, zonename, salt, iterations, false, proto_nsec3s,
+                         names);
 
       last_node = current_node;
       current_node = new NodeInfo(r, r_sectype);
     }
 
     // process last two nodes.
-    generateNSEC3ForNode(last_node, zonename, salt, iterations, false, proto_nsec3s);
-    generateNSEC3ForNode(current_node, zonename, salt, iterations, false, proto_nsec3s);
+    generateNSEC3ForNode(last_node, zonename, salt, iterations, false, proto_nsec3s,
+                         names);
+    generateNSEC3ForNode(current_node, zonename, salt, iterations, false, proto_nsec3s,
+                         names);
 
-    List<NSEC3Record> nsec3s = finishNSEC3s(proto_nsec3s, nsec3_ttl);
+    if (ev != null)
+    {
+      DnsSecEvents.commit(ev, zonename.toString(), proto_nsec3s.size(), iterations,
+                          salt != null ? salt.length : 0);
+    }
+
+    List<NSEC3Record> nsec3s = finishNSEC3s(proto_nsec3s, nsec3_ttl, index);
 
     records.addAll(nsec3s);
 
@@ -1002,6 +1078,28 @@ public class SignUtils
                                                 int iterations, long nsec3param_ttl)
       throws NoSuchAlgorithmException
   {
+    generateOptOutNSEC3Records(zonename, records, includedNames, salt, iterations,
+                               nsec3param_ttl, null, null);
+  }
+
+  /**
+   * Generate the Opt-Out NSEC3 records in place, as
+   * {@link #generateOptOutNSEC3Records(Name, List, List, byte[], int, long)}.
+   * 
+   * @param index
+   *          if not null, the original owner name of each NSEC3 record is
+   *          added to this.
+   * @param names
+   *          the name table of the zone, for its cached canonical names (may
+   *          be null).
+   */
+  public static void generateOptOutNSEC3Records(Name zonename, List<Record> records,
+                                                List<Name> includedNames, byte[] salt,
+                                                int iterations, long nsec3param_ttl,
+                                                NSEC3Index index, NameTable names)
+      throws NoSuchAlgorithmException
+  {
+    Object ev = DnsSecEvents.begin(DnsSecEvents.NSEC3_HASH);
     List<ProtoNSEC3> proto_nsec3s = new ArrayList<ProtoNSEC3>();
     NodeInfo current_node = null;
     NodeInfo last_node = null;
@@ -1066,7 +1164,8 @@ public class SignUtils
       // At this point, r represents the start of a new node.
       // So we move current_node to last_node and generate a new current node.
       // But first, we need to do something with the last node.
-      generateNSEC3ForNode(last_node, zonename, salt, iterations, true, proto_nsec3s);
+      generateNSEC3ForNode(last_node, zonename, salt, iterations, true, proto_nsec3s,
+                         names);
 
       if (current_node.isSecureNode)
       {
@@ -1081,10 +1180,18 @@ public class SignUtils
     }
 
     // process last two nodes.
-    generateNSEC3ForNode(last_node, zonename, salt, iterations, true, proto_nsec3s);
-    generateNSEC3ForNode(current_node, zonename, salt, iterations, true, proto_nsec3s);
+    generateNSEC3ForNode(last_node, zonename, salt, iterations, true, proto_nsec3s,
+                         names);
+    generateNSEC3ForNode(current_node, zonename, salt, iterations, true, proto_nsec3s,
+                         names);
+
+    if (ev != null)
+    {
+      DnsSecEvents.commit(ev, zonename.toString(), proto_nsec3s.size(), iterations,
+                          salt != null ? salt.length : 0);
+    }
 
-    List<NSEC3Record> nsec3s = finishNSEC3s(proto_nsec3s, nsec3_ttl);
+    List<NSEC3Record> nsec3s = finishNSEC3s(proto_nsec3s, nsec3_ttl, index);
     records.addAll(nsec3s);
 
     NSEC3PARAMRecord nsec3param = new NSEC3PARAMRecord(zonename, DClass.IN,
@@ -1111,10 +1218,13 @@ public class SignUtils
    *          If true, the NSEC3 will have the Opt-Out flag set.
    * @param nsec3s
    *          The current list of NSEC3s -- this will be updated.
+   * @param names
+   *          The name table of the zone (may be null).
    * @throws NoSuchAlgorithmException
    */
   private static void generateNSEC3ForNode(NodeInfo node, Name zonename, byte[] salt,
-                                           int iterations, boolean optIn, List<ProtoNSEC3> nsec3s)
+                                           int iterations, boolean optIn, List<ProtoNSEC3> nsec3s,
+                                           NameTable names)
       throws NoSuchAlgorithmException
   {
     if (node == null) return;
@@ -1135,12 +1245,12 @@ public class SignUtils
       Name n = new Name(node.name, i);
       log.fine("Generating ENT NSEC3 for " + n);
       ProtoNSEC3 nsec3 = generateNSEC3(n, zonename, node.ttl, salt, iterations, optIn,
-                                       null);
+                                       null, names);
       nsec3s.add(nsec3);
     }
 
     ProtoNSEC3 nsec3 = generateNSEC3(node.name, zonename, node.ttl, salt, iterations,
-                                     optIn, node.getTypes());
+                                     optIn, node.getTypes(), names);
     nsec3s.add(nsec3);
   }
 
@@ -1161,15 +1271,18 @@ public class SignUtils
    *          The value of the Opt-Out flag.
    * @param types
    *          The typecodes present at this name.
+   * @param names
+   *          The name table of the zone (may be null).
    * @return A mutable NSEC3 record.
    * 
    * @throws NoSuchAlgorithmException
    */
   private static ProtoNSEC3 generateNSEC3(Name name, Name zonename, long ttl,
                                           byte[] salt, int iterations, boolean optIn,
-                                          int[] types) throws NoSuchAlgorithmException
+                                          int[] types, NameTable names)
+      throws NoSuchAlgorithmException
   {
-    byte[] hash = nsec3hash(name, NSEC3Record.SHA1_DIGEST_ID, iterations, salt);
+    byte[] hash = nsec3hash(name, NSEC3Record.SHA1_DIGEST_ID, iterations, salt, names);
     byte flags = (byte) (optIn ? 0x01 : 0x00);
     
     ProtoNSEC3 r = new ProtoNSEC3(hash, name, zonename, DClass.IN, ttl,
@@ -1190,9 +1303,12 @@ public class SignUtils
    * @param ttl
    *          The TTL to assign to the finished NSEC3 records. In general, this
    *          should match the SOA minimum value for the zone.
+   * @param index
+   *          If not null, the original owner names are added to this.
    * @return The list of {@link org.xbill.DNS.NSEC3Record} objects.
    */
-  private static List<NSEC3Record> finishNSEC3s(List<ProtoNSEC3> nsec3s, long ttl)
+  private static List<NSEC3Record> finishNSEC3s(List<ProtoNSEC3> nsec3s, long ttl,
+                                                NSEC3Index index)
   {
     if (nsec3s == null) return null;
     Collections.sort(nsec3s, new ProtoNSEC3.Comparator());
@@ -1249,6 +1365,10 @@ public class SignUtils
     {
       p.setTTL(ttl);
       res.add(p.getNSEC3Record());
+      if (index != null && p.getOriginalOwner() != null)
+      {
+        index.put(p.getOwner(), p.getOriginalOwner().toString());
+      }
     }
 
     return res;
@@ -1423,23 +1543,54 @@ public class SignUtils
    */
   public static void generateDSRecords(Name zonename, List<Record> records, int digest_alg)
   {
+    generateDSRecords(zonename, records, digest_alg, null);
+  }
 
-    for (ListIterator<Record> i = records.listIterator(); i.hasNext();)
+  /**
+   * Convert the DNSKEY records at delegation points into DS records, as
+   * {@link #generateDSRecords(Name, List, int)}.
+   * 
+   * @param names
+   *          the name table of the zone, for its cached canonical names (may
+   *          be null).
+   */
+  public static void generateDSRecords(Name zonename, List<Record> records, int digest_alg,
+                                       NameTable names)
+  {
+    // Find the non-zone level DNSKEY records.
+    List<Integer> positions = new ArrayList<Integer>();
+    List<DNSKEYRecord> keys = new ArrayList<DNSKEYRecord>();
+    for (int i = 0; i < records.size(); i++)
     {
-      Record r = i.next();
+      Record r = records.get(i);
       if (r == null) continue; // this should never be true.
 
       Name r_name = r.getName();
       if (r_name == null) continue; // this should never be true.
 
-      // Convert non-zone level KEY records into DS records.
       if (r.getType() == Type.DNSKEY && !r_name.equals(zonename))
       {
-        DSRecord ds = calculateDSRecord((DNSKEYRecord) r, digest_alg, r.getTTL());
-
-        i.set(ds);
+        positions.add(i);
+        keys.add((DNSKEYRecord) r);
       }
     }
+    if (keys.isEmpty()) return;
+
+    // Convert them into DS records.
+    List<DSRecord> dss = null;
+    try
+    {
+      dss = calculateDSRecords(keys, new int[] { digest_alg }, 0,
+                               Runtime.getRuntime().availableProcessors(), names);
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      log.severe(e.toString());
+    }
+    for (int i = 0; i < positions.size(); i++)
+    {
+      records.set(positions.get(i), dss != null ? dss.get(i) : null);
+    }
   }
 
   /**
@@ -1508,41 +1659,165 @@ public class SignUtils
   {
     if (keyrec == null) return null;
 
-    if (ttl <= 0) ttl = keyrec.getTTL();
-
-    DNSOutput os = new DNSOutput();
+    try
+    {
+      List<DSRecord> res = calculateDSRecords(Collections.singletonList(keyrec),
+                                              new int[] { digest_alg }, ttl, 1, null);
+      return res.get(0);
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      log.severe(e.toString());
+      return null;
+    }
+  }
 
-    os.writeByteArray(keyrec.getName().toWireCanonical());
-    os.writeByteArray(keyrec.rdataToWireCanonical());
+  /** @return the JCA name of a DS digest algorithm. */
+  private static String dsDigestName(int digest_alg)
+  {
+    switch (digest_alg)
+    {
+      case DSRecord.SHA1_DIGEST_ID:
+        return "SHA";
+      case DSRecord.SHA256_DIGEST_ID:
+        return "SHA-256";
+      default:
+        throw new IllegalArgumentException("Unknown digest id: " + digest_alg);
+    }
+  }
 
+  /**
+   * Calculate the DS records for a list of DNSKEY records, using the given
+   * digests, reusing one MessageDigest per digest algorithm (and thread).
+   */
+  private static List<DSRecord> calculateDSRecords(List<DNSKEYRecord> keys,
+                                                   int[] digest_algs, long ttl,
+                                                   NameTable names)
+      throws NoSuchAlgorithmException
+  {
+    DnsKeyAlgorithm algs = DnsKeyAlgorithm.getInstance();
+    MessageDigest[] mds = new MessageDigest[digest_algs.length];
     try
     {
-      byte[] digest;
-      MessageDigest md;
+      for (int j = 0; j < digest_algs.length; j++)
+      {
+        mds[j] = algs.borrowDigest(dsDigestName(digest_algs[j]));
+      }
+
+      List<DSRecord> res = new ArrayList<DSRecord>(keys.size() * digest_algs.length);
+      for (DNSKEYRecord keyrec : keys)
+      {
+        byte[] owner = NameTable.toWireCanonical(names, keyrec.getName());
+        byte[] rdata = keyrec.rdataToWireCanonical();
+        long ds_ttl = ttl > 0 ? ttl : keyrec.getTTL();
+
+        for (int j = 0; j < digest_algs.length; j++)
+        {
+          mds[j].update(owner);
+          mds[j].update(rdata);
+          byte[] digest = mds[j].digest();
 
-      switch (digest_alg)
+          res.add(new DSRecord(keyrec.getName(), keyrec.getDClass(), ds_ttl,
+                               keyrec.getFootprint(), keyrec.getAlgorithm(), digest_algs[j],
+                               digest));
+        }
+      }
+      return res;
+    }
+    finally
+    {
+      for (int j = 0; j < mds.length; j++)
       {
-        case DSRecord.SHA1_DIGEST_ID:
-          md = MessageDigest.getInstance("SHA");
-          digest = md.digest(os.toByteArray());
-          break;
-        case DSRecord.SHA256_DIGEST_ID:
-          md = MessageDigest.getInstance("SHA-256");
-          digest = md.digest(os.toByteArray());
-          break;
-        default:
-          throw new IllegalArgumentException("Unknown digest id: " + digest_alg);
+        algs.releaseDigest(mds[j]);
       }
+    }
+  }
+
+  /**
+   * Given a list of DNSKEY records, generate the DS records for them, for each
+   * of the given digest algorithms. Large lists are split between threads.
+   * 
+   * @param keys
+   *          the DNSKEY records.
+   * @param digest_algs
+   *          the digest algorithms (SHA-1, SHA-256, etc.).
+   * @param ttl
+   *          the desired TTL for the generated DS records. If zero, or
+   *          negative, each DNSKEY RR's TTL will be used.
+   * @param threads
+   *          the maximum number of threads to use.
+   * @return the DS records, in key order, with one DS for each digest
+   *         algorithm (in the given order) for each key.
+   * @throws NoSuchAlgorithmException
+   *           if a digest algorithm is not supported.
+   */
+  public static List<DSRecord> calculateDSRecords(List<DNSKEYRecord> keys,
+                                                  final int[] digest_algs, final long ttl,
+                                                  int threads)
+      throws NoSuchAlgorithmException
+  {
+    return calculateDSRecords(keys, digest_algs, ttl, threads, null);
+  }
+
+  /**
+   * Generate the DS records for a list of DNSKEY records, as
+   * {@link #calculateDSRecords(List, int[], long, int)}.
+   * 
+   * @param names
+   *          the name table of the zone the keys came from, for its cached
+   *          canonical names (may be null).
+   */
+  public static List<DSRecord> calculateDSRecords(List<DNSKEYRecord> keys,
+                                                  final int[] digest_algs, final long ttl,
+                                                  int threads, final NameTable names)
+      throws NoSuchAlgorithmException
+  {
+    for (int j = 0; j < digest_algs.length; j++)
+    {
+      // fail early on unknown digests.
+      dsDigestName(digest_algs[j]);
+    }
 
-      return new DSRecord(keyrec.getName(), keyrec.getDClass(), ttl,
-                          keyrec.getFootprint(), keyrec.getAlgorithm(), digest_alg,
-                          digest);
+    int parts = Math.max(1, Math.min(threads, keys.size() / 1000));
+    if (parts == 1) return calculateDSRecords(keys, digest_algs, ttl, names);
+
+    ExecutorService pool = Executors.newFixedThreadPool(parts);
+    try
+    {
+      int partSize = (keys.size() + parts - 1) / parts;
+      List<Future<List<DSRecord>>> futures = new ArrayList<Future<List<DSRecord>>>();
+      for (int i = 0; i < keys.size(); i += partSize)
+      {
+        final List<DNSKEYRecord> part = keys.subList(i, Math.min(keys.size(), i + partSize));
+        futures.add(pool.submit(new Callable<List<DSRecord>>()
+        {
+          public List<DSRecord> call() throws NoSuchAlgorithmException
+          {
+            return calculateDSRecords(part, digest_algs, ttl, names);
+          }
+        }));
+      }
 
+      List<DSRecord> res = new ArrayList<DSRecord>(keys.size() * digest_algs.length);
+      for (Future<List<DSRecord>> f : futures)
+      {
+        res.addAll(f.get());
+      }
+      return res;
     }
-    catch (NoSuchAlgorithmException e)
+    catch (InterruptedException e)
     {
-      log.severe(e.toString());
-      return null;
+      throw new IllegalStateException("interrupted while calculating DS records", e);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof NoSuchAlgorithmException) throw (NoSuchAlgorithmException) cause;
+      throw new IllegalStateException("error calculating DS records", cause);
+    }
+    finally
+    {
+      pool.shutdownNow();
     }
   }
 
@@ -1564,35 +1839,52 @@ public class SignUtils
   public static byte[] nsec3hash(Name n, int hash_algorithm, int iterations, byte[] salt)
       throws NoSuchAlgorithmException
   {
-    MessageDigest md;
+    return nsec3hash(n, hash_algorithm, iterations, salt, null);
+  }
+
+  /**
+   * Calculate an NSEC3 hash, as {@link #nsec3hash(Name, int, int, byte[])}.
+   * 
+   * @param names
+   *          the name table of the zone, for its cached canonical names (may
+   *          be null).
+   */
+  public static byte[] nsec3hash(Name n, int hash_algorithm, int iterations, byte[] salt,
+                                 NameTable names) throws NoSuchAlgorithmException
+  {
+    String digest_name;
 
     switch (hash_algorithm)
     {
       case NSEC3Record.SHA1_DIGEST_ID:
-        md = MessageDigest.getInstance("SHA1");
+        digest_name = "SHA1";
         break;
       default:
         throw new NoSuchAlgorithmException("Unknown NSEC3 algorithm identifier: "
             + hash_algorithm);
     }
 
-    // Construct our wire form.
-    byte[] wire_name = n.toWireCanonical();
-    byte[] res = wire_name; // for the first iteration.
-    for (int i = 0; i <= iterations; i++)
+    DnsKeyAlgorithm algs = DnsKeyAlgorithm.getInstance();
+    MessageDigest md = algs.borrowDigest(digest_name);
+    try
     {
-      // Concatenate the salt, if it exists.
-      if (salt != null)
+      // Construct our wire form.
+      byte[] wire_name = NameTable.toWireCanonical(names, n);
+      byte[] res = wire_name; // for the first iteration.
+      for (int i = 0; i <= iterations; i++)
       {
-        byte[] concat = new byte[res.length + salt.length];
-        System.arraycopy(res, 0, concat, 0, res.length);
-        System.arraycopy(salt, 0, concat, res.length, salt.length);
-        res = concat;
+        md.update(res);
+        // Append the salt, if it exists.
+        if (salt != null) md.update(salt);
+        res = md.digest();
       }
-      res = md.digest(res);
-    }
 
-    return res;
+      return res;
+    }
+    finally
+    {
+      algs.releaseDigest(md);
+    }
   }
 
 }
@@ -151,7 +151,7 @@ public class TypeMap
     // write out the resulting binary bitmap.
     for (int i = 0; i < map.length; i++)
     {
-      out.writeU8(map[i]);
+      out.writeU8(map[i] & 0xFF);
     }
   }
 
@@ -0,0 +1,218 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class holds the digests of (RRset, RRSIG, DNSKEY) combinations that
+ * have already been cryptographically verified. Since the data digested
+ * includes the RRSIG inception and expiration times, a signature that has been
+ * refreshed will not match. The cache only skips the cryptographic step: the
+ * signature validity window is still checked against the current time.
+ *
+ * The cache can be saved to and loaded from a file, so that successive
+ * verification runs over mostly unchanged zones only do the cryptography for
+ * new or changed signatures. When saved, only the entries that were used or
+ * added since the cache was loaded are written out, so stale entries expire
+ * naturally.
+ */
+public class VerificationCache
+{
+  private static final int    MAGIC       = 0x4a445643; // "JDVC"
+  private static final int    VERSION     = 1;
+  private static final int    DIGEST_LEN  = 32;
+
+  /** A wrapper to give byte arrays value semantics. */
+  private static class Digest
+  {
+    private byte[] mBytes;
+    private int    mHash;
+
+    public Digest(byte[] bytes)
+    {
+      mBytes = bytes;
+      mHash = Arrays.hashCode(bytes);
+    }
+
+    public int hashCode()
+    {
+      return mHash;
+    }
+
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof Digest)) return false;
+      return Arrays.equals(mBytes, ((Digest) o).mBytes);
+    }
+  }
+
+  private Set<Digest>   mEntries;
+  private Set<Digest>   mUsed;
+  private int           mHits   = 0;
+  private int           mMisses = 0;
+
+  public VerificationCache()
+  {
+    mEntries = new HashSet<Digest>();
+    mUsed = new HashSet<Digest>();
+  }
+
+  /**
+   * Calculate the cache key for a signature.
+   *
+   * @param sigData
+   *          the signed data (the RRSIG RDATA minus the signature, followed by
+   *          the canonical RRset).
+   * @param signature
+   *          the signature itself.
+   * @param keyRdata
+   *          the RDATA of the DNSKEY used to verify the signature.
+   */
+  public byte[] digest(byte[] sigData, byte[] signature, byte[] keyRdata)
+  {
+    DnsKeyAlgorithm algs = DnsKeyAlgorithm.getInstance();
+    MessageDigest md = null;
+    try
+    {
+      md = algs.borrowDigest("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      // SHA-256 is required of every Java platform.
+      throw new IllegalStateException(e);
+    }
+    try
+    {
+      md.update(sigData);
+      md.update(signature);
+      md.update(keyRdata);
+      return md.digest();
+    }
+    finally
+    {
+      algs.releaseDigest(md);
+    }
+  }
+
+  /** @return true if the given signature digest has already been verified. */
+  public synchronized boolean contains(byte[] digest)
+  {
+    Digest d = new Digest(digest);
+    if (mEntries.contains(d))
+    {
+      mUsed.add(d);
+      mHits++;
+      return true;
+    }
+    mMisses++;
+    return false;
+  }
+
+  /** Record that the signature with the given digest has been verified. */
+  public synchronized void add(byte[] digest)
+  {
+    Digest d = new Digest(digest);
+    mEntries.add(d);
+    mUsed.add(d);
+  }
+
+  /** @return the number of signatures found in the cache. */
+  public int getHits()
+  {
+    return mHits;
+  }
+
+  /** @return the number of signatures not found in the cache. */
+  public int getMisses()
+  {
+    return mMisses;
+  }
+
+  /**
+   * Load the cache from a file. A missing file is treated as an empty cache.
+   *
+   * @throws IOException
+   *           if the file is present but can't be read or isn't a cache file.
+   */
+  public synchronized void load(File f) throws IOException
+  {
+    if (!f.exists()) return;
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+    try
+    {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+      {
+        throw new IOException(f + " is not a verification cache file");
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++)
+      {
+        byte[] d = new byte[DIGEST_LEN];
+        in.readFully(d);
+        mEntries.add(new Digest(d));
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /**
+   * Write the entries that were used or added since loading to a file.
+   */
+  public synchronized void save(File f) throws IOException
+  {
+    File tmp = new File(f.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try
+    {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(mUsed.size());
+      for (Digest d : mUsed)
+      {
+        out.write(d.mBytes);
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+
+    if (!tmp.renameTo(f))
+    {
+      f.delete();
+      if (!tmp.renameTo(f)) throw new IOException("unable to rename " + tmp + " to " + f);
+    }
+  }
+}
@@ -0,0 +1,178 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.xbill.DNS.Master;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+/**
+ * This class reads the records of a zone one at a time, without holding the
+ * whole zone in memory. The input may be a text zone file, a
+ * {@link ZoneSnapshot}, or a BIND raw format file ({@link RawZoneFile}), any of
+ * them optionally gzip compressed. Compressed input is decompressed on a
+ * separate thread. Names may be interned in a {@link NameTable}; by default
+ * they are not, so that streaming a large zone doesn't keep all of its names.
+ */
+public class ZoneFileReader
+{
+  private static final int    BUFFER_SIZE = 64 * 1024;
+
+  private InputStream         mIn;
+  private boolean             mCloseInput;
+  private Master              mMaster;
+  private ZoneSnapshot.Reader mSnapshot;
+  private RawZoneFile.Reader  mRaw;
+  private NameTable           mNames;
+
+  /**
+   * @param zonefile
+   *          the path of the zone file, or "-" for stdin.
+   * @param origin
+   *          the initial origin for text zone files (may be null).
+   */
+  public ZoneFileReader(String zonefile, Name origin) throws IOException
+  {
+    this(zonefile, origin, null);
+  }
+
+  /**
+   * @param zonefile
+   *          the path of the zone file, or "-" for stdin.
+   * @param origin
+   *          the initial origin for text zone files (may be null).
+   * @param names
+   *          the table to intern owner and signer names in (may be null).
+   */
+  public ZoneFileReader(String zonefile, Name origin, NameTable names) throws IOException
+  {
+    mNames = names;
+    if (zonefile.equals("-"))
+    {
+      init(System.in, origin);
+      // Leave stdin open.
+      mCloseInput = false;
+    }
+    else
+    {
+      init(new FileInputStream(zonefile), origin);
+    }
+  }
+
+  /**
+   * @param in
+   *          the stream to read. It is closed by {@link #close()}.
+   * @param origin
+   *          the initial origin for text zone files (may be null).
+   */
+  public ZoneFileReader(InputStream in, Name origin) throws IOException
+  {
+    init(in, origin);
+  }
+
+  private void init(InputStream in, Name origin) throws IOException
+  {
+    mCloseInput = true;
+    InputStream bin = new BufferedInputStream(in, BUFFER_SIZE);
+    if (isGzip(bin))
+    {
+      bin = new BufferedInputStream(new ReadAheadInputStream(new GZIPInputStream(bin,
+                                                                                 BUFFER_SIZE)),
+                                    BUFFER_SIZE);
+    }
+    mIn = bin;
+
+    if (ZoneSnapshot.isSnapshot(bin))
+    {
+      mSnapshot = new ZoneSnapshot.Reader(bin);
+    }
+    else if (RawZoneFile.isRawZone(bin))
+    {
+      mRaw = new RawZoneFile.Reader(bin);
+    }
+    else
+    {
+      mMaster = new Master(bin, origin);
+    }
+  }
+
+  /** @return the next record, or null at the end of the zone. */
+  public Record nextRecord() throws IOException
+  {
+    Record r = null;
+    if (mSnapshot != null)
+    {
+      r = mSnapshot.nextRecord();
+    }
+    else if (mRaw != null)
+    {
+      r = mRaw.nextRecord();
+    }
+    else
+    {
+      r = mMaster.nextRecord();
+    }
+
+    if (r == null) return null;
+    return NameTable.intern(mNames, r);
+  }
+
+  public void close() throws IOException
+  {
+    if (mCloseInput) mIn.close();
+  }
+
+  /**
+   * @return true if the stream starts with the gzip magic number. The stream
+   *         must support mark/reset, and is left at its start.
+   */
+  static boolean isGzip(InputStream in) throws IOException
+  {
+    in.mark(2);
+    try
+    {
+      return in.read() == 0x1f && in.read() == 0x8b;
+    }
+    finally
+    {
+      in.reset();
+    }
+  }
+
+  /** @return true if the file exists and is gzip compressed. */
+  static boolean isGzip(File f) throws IOException
+  {
+    if (!f.isFile()) return false;
+    InputStream in = new BufferedInputStream(new FileInputStream(f), 2);
+    try
+    {
+      return isGzip(in);
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+}
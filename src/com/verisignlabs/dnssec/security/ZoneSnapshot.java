@@ -0,0 +1,439 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+/**
+ * This class reads and writes zones in a compact binary "snapshot" format,
+ * meant for handing zones between the jdnssec tools without re-parsing zone
+ * file text. The layout is:
+ *
+ * <pre>
+ *   header:   magic "JZS1", version (u16), flags (u16), zone name (wire),
+ *             record count (u32), name count (u32), block count (u32),
+ *             records per block (u32)
+ *   names:    for each owner name: parent name index (varint), label (wire)
+ *   blocks:   for each record: owner name index (varint), type (u16),
+ *             class (u16), TTL (u32), RDATA length (varint), RDATA
+ *   index:    file offset of each block (u64)
+ *   trailer:  offset of the index (u64), magic
+ * </pre>
+ *
+ * Owner names are stored once, each as a single label plus a reference to its
+ * (previously stored) parent, so the shared suffixes of a zone are only stored
+ * once. Index 0 is always the root. RDATA is stored in canonical (RFC 4034)
+ * wire format. A snapshot can be read as a stream from start to finish, or
+ * memory mapped and read starting at any block via the index.
+ */
+public class ZoneSnapshot
+{
+  /** Zone files with this suffix are written as snapshots. */
+  public static final String FILE_SUFFIX      = ".jzs";
+
+  public static final int    MAGIC            = 0x4a5a5331; // "JZS1"
+  public static final int    VERSION          = 1;
+
+  private static final int   RECORDS_PER_BLOCK = 4096;
+  private static final int   TRAILER_LENGTH    = 12;
+
+  /**
+   * This class reads the records of a snapshot in order. When constructed
+   * from a file, the file is memory mapped (if small enough) and the reader
+   * can start at any block.
+   */
+  public static class Reader
+  {
+    private DataInputStream mIn;
+    private ByteBuffer      mMapped;
+    private Name            mZoneName;
+    private Name[]          mNames;
+    private int             mRecordCount;
+    private int             mBlockCount;
+    private int             mBlockSize;
+    private int             mRemaining;
+
+    /** Read a snapshot from a stream, positioned at the start. */
+    public Reader(InputStream in) throws IOException
+    {
+      mIn = new DataInputStream(in);
+      readHeader();
+    }
+
+    /** Read a snapshot file, memory mapping it if possible. */
+    public Reader(File f) throws IOException
+    {
+      long length = f.length();
+      if (length <= Integer.MAX_VALUE)
+      {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try
+        {
+          mMapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        finally
+        {
+          // The mapping remains valid after the file is closed.
+          raf.close();
+        }
+        mIn = new DataInputStream(new ByteBufferInputStream(mMapped.duplicate()));
+      }
+      else
+      {
+        mIn = new DataInputStream(new BufferedInputStream(new FileInputStream(f),
+                                                          1024 * 1024));
+      }
+      readHeader();
+    }
+
+    private int readVarint() throws IOException
+    {
+      int v = 0;
+      for (int shift = 0; shift < 35; shift += 7)
+      {
+        int b = mIn.readUnsignedByte();
+        v |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) return v;
+      }
+      throw new IOException("malformed snapshot: bad varint");
+    }
+
+    private byte[] readWireName() throws IOException
+    {
+      byte[] buf = new byte[255];
+      int pos = 0;
+      while (true)
+      {
+        int len = mIn.readUnsignedByte();
+        if (len > 63 || pos + len + 1 > buf.length)
+        {
+          throw new IOException("malformed snapshot: bad name");
+        }
+        buf[pos++] = (byte) len;
+        if (len == 0) break;
+        mIn.readFully(buf, pos, len);
+        pos += len;
+      }
+      byte[] res = new byte[pos];
+      System.arraycopy(buf, 0, res, 0, pos);
+      return res;
+    }
+
+    private void readHeader() throws IOException
+    {
+      if (mIn.readInt() != MAGIC) throw new IOException("not a zone snapshot");
+      int version = mIn.readUnsignedShort();
+      if (version != VERSION)
+      {
+        throw new IOException("unsupported zone snapshot version " + version);
+      }
+      mIn.readUnsignedShort(); // flags, currently unused
+
+      mZoneName = new Name(readWireName());
+      mRecordCount = mIn.readInt();
+      int nameCount = mIn.readInt();
+      mBlockCount = mIn.readInt();
+      mBlockSize = mIn.readInt();
+      if (mRecordCount < 0 || nameCount < 0 || mBlockSize <= 0)
+      {
+        throw new IOException("malformed snapshot header");
+      }
+
+      mNames = new Name[nameCount + 1];
+      byte[][] wires = new byte[nameCount + 1][];
+      mNames[0] = Name.root;
+      wires[0] = new byte[] { 0 };
+      for (int i = 1; i <= nameCount; i++)
+      {
+        int parent = readVarint();
+        int len = mIn.readUnsignedByte();
+        if (parent >= i || len == 0 || len > 63)
+        {
+          throw new IOException("malformed snapshot: bad name table entry " + i);
+        }
+        byte[] pw = wires[parent];
+        if (pw.length + len + 1 > 255)
+        {
+          throw new IOException("malformed snapshot: name too long");
+        }
+        byte[] w = new byte[pw.length + len + 1];
+        w[0] = (byte) len;
+        mIn.readFully(w, 1, len);
+        System.arraycopy(pw, 0, w, len + 1, pw.length);
+        wires[i] = w;
+        mNames[i] = new Name(w);
+      }
+
+      mRemaining = mRecordCount;
+    }
+
+    /** @return the zone name stored in the header. */
+    public Name getZoneName()
+    {
+      return mZoneName;
+    }
+
+    /** @return the total number of records in the snapshot. */
+    public int getRecordCount()
+    {
+      return mRecordCount;
+    }
+
+    /** @return the number of blocks in the snapshot. */
+    public int getBlockCount()
+    {
+      return mBlockCount;
+    }
+
+    /**
+     * Position the reader at the start of the given block. This is only
+     * possible for memory mapped snapshot files.
+     */
+    public void seekBlock(int block) throws IOException
+    {
+      if (mMapped == null)
+      {
+        throw new IOException("snapshot is not memory mapped");
+      }
+      if (block < 0 || block >= mBlockCount)
+      {
+        throw new IOException("no such snapshot block: " + block);
+      }
+
+      int limit = mMapped.limit();
+      if (limit < TRAILER_LENGTH || mMapped.getInt(limit - 4) != MAGIC)
+      {
+        throw new IOException("malformed snapshot: bad trailer");
+      }
+      long indexOffset = mMapped.getLong(limit - TRAILER_LENGTH);
+      long blockOffset = mMapped.getLong((int) indexOffset + block * 8);
+
+      ByteBuffer buf = mMapped.duplicate();
+      buf.position((int) blockOffset);
+      mIn = new DataInputStream(new ByteBufferInputStream(buf));
+      mRemaining = mRecordCount - block * mBlockSize;
+    }
+
+    /** @return the next record, or null at the end of the records. */
+    public Record nextRecord() throws IOException
+    {
+      if (mRemaining <= 0) return null;
+
+      try
+      {
+        int nameIndex = readVarint();
+        if (nameIndex >= mNames.length)
+        {
+          throw new IOException("malformed snapshot: bad owner name index");
+        }
+        int type = mIn.readUnsignedShort();
+        int dclass = mIn.readUnsignedShort();
+        long ttl = mIn.readInt() & 0xFFFFFFFFL;
+        int rdlength = readVarint();
+        if (rdlength > 0xFFFF)
+        {
+          throw new IOException("malformed snapshot: bad rdata length");
+        }
+        byte[] rdata = new byte[rdlength];
+        mIn.readFully(rdata);
+
+        mRemaining--;
+        return Record.newRecord(mNames[nameIndex], type, dclass, ttl, rdlength, rdata);
+      }
+      catch (EOFException e)
+      {
+        throw new IOException("truncated zone snapshot");
+      }
+    }
+
+    /** @return all of the (remaining) records. */
+    public List<Record> readRecords() throws IOException
+    {
+      ArrayList<Record> records = new ArrayList<Record>(Math.max(0, mRemaining));
+      Record r = null;
+      while ((r = nextRecord()) != null)
+      {
+        records.add(r);
+      }
+      return records;
+    }
+
+    public void close() throws IOException
+    {
+      mIn.close();
+    }
+  }
+
+  /**
+   * @return true if the stream starts with the snapshot magic number. The
+   *         stream must support mark/reset, and is left at its start.
+   */
+  public static boolean isSnapshot(InputStream in) throws IOException
+  {
+    in.mark(4);
+    try
+    {
+      int magic = 0;
+      for (int i = 0; i < 4; i++)
+      {
+        int b = in.read();
+        if (b < 0) return false;
+        magic = (magic << 8) | b;
+      }
+      return magic == MAGIC;
+    }
+    finally
+    {
+      in.reset();
+    }
+  }
+
+  /** @return true if the file exists and is a zone snapshot. */
+  public static boolean isSnapshot(File f) throws IOException
+  {
+    if (!f.isFile() || f.length() < 4) return false;
+    InputStream in = new BufferedInputStream(new FileInputStream(f), 4);
+    try
+    {
+      return isSnapshot(in);
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /** Read all of the records from a snapshot file. */
+  public static List<Record> readSnapshot(File f) throws IOException
+  {
+    Reader r = new Reader(f);
+    try
+    {
+      return r.readRecords();
+    }
+    finally
+    {
+      r.close();
+    }
+  }
+
+  /**
+   * Assign the name (and its ancestors) an index in the name table.
+   *
+   * @return the index of the name.
+   */
+  private static int internName(Name n, HashMap<String, Integer> index,
+                                List<Name> names, List<Integer> parents)
+  {
+    if (n.labels() <= 1) return 0;
+
+    String key = n.toString();
+    Integer i = index.get(key);
+    if (i != null) return i.intValue();
+
+    int parent = internName(new Name(n, 1), index, names, parents);
+    names.add(n);
+    parents.add(Integer.valueOf(parent));
+    int res = names.size();
+    index.put(key, Integer.valueOf(res));
+    return res;
+  }
+
+  /**
+   * Write a list of records as a snapshot.
+   *
+   * @param records
+   *          the records to write, in the order they should be read back.
+   * @param zonename
+   *          the zone name to record in the header (may be null).
+   * @param channel
+   *          where to write the snapshot. It is not closed.
+   */
+  public static void writeSnapshot(List<Record> records, Name zonename,
+                                   WritableByteChannel channel) throws IOException
+  {
+    // Build the name table, and the name index of each record.
+    HashMap<String, Integer> nameIndex = new HashMap<String, Integer>();
+    List<Name> names = new ArrayList<Name>();
+    List<Integer> parents = new ArrayList<Integer>();
+    int[] owners = new int[records.size()];
+    for (int i = 0; i < owners.length; i++)
+    {
+      owners[i] = internName(records.get(i).getName(), nameIndex, names, parents);
+    }
+
+    ChannelOutput out = new ChannelOutput(channel);
+
+    int blockCount = (records.size() + RECORDS_PER_BLOCK - 1) / RECORDS_PER_BLOCK;
+
+    out.u32(MAGIC);
+    out.u16(VERSION);
+    out.u16(0);
+    out.bytes((zonename == null ? Name.root : zonename).toWire());
+    out.u32(records.size());
+    out.u32(names.size());
+    out.u32(blockCount);
+    out.u32(RECORDS_PER_BLOCK);
+
+    for (int i = 0; i < names.size(); i++)
+    {
+      out.varint(parents.get(i).intValue());
+      out.bytes(names.get(i).getLabel(0));
+    }
+
+    long[] blockOffsets = new long[blockCount];
+    for (int i = 0; i < owners.length; i++)
+    {
+      if (i % RECORDS_PER_BLOCK == 0) blockOffsets[i / RECORDS_PER_BLOCK] = out.position();
+
+      Record r = records.get(i);
+      byte[] rdata = r.rdataToWireCanonical();
+      out.varint(owners[i]);
+      out.u16(r.getType());
+      out.u16(r.getDClass());
+      out.u32(r.getTTL());
+      out.varint(rdata.length);
+      out.bytes(rdata);
+    }
+
+    long indexOffset = out.position();
+    for (int i = 0; i < blockCount; i++)
+    {
+      out.u64(blockOffsets[i]);
+    }
+    out.u64(indexOffset);
+    out.u32(MAGIC);
+    out.flush();
+  }
+}
@@ -19,15 +19,17 @@
 
 package com.verisignlabs.dnssec.security;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import org.xbill.DNS.Master;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.RRset;
 import org.xbill.DNS.Record;
@@ -44,8 +46,21 @@ import org.xbill.DNS.Type;
 
 public class ZoneUtils
 {
+  /** Zone file formats. */
+  public static final int FORMAT_TEXT     = 0;
+  public static final int FORMAT_RAW      = 1;
+  public static final int FORMAT_SNAPSHOT = 2;
+
+  /** Files with this suffix are written gzip compressed. */
+  public static final String GZIP_SUFFIX = ".gz";
+
   /**
-   * Load a zone file.
+   * Load a zone file. Zone snapshots (see {@link ZoneSnapshot}) and BIND raw
+   * format zone files (see {@link RawZoneFile}) are recognized and read
+   * directly. Large text zone files are read using a
+   * {@link ParallelMasterReader}. Gzip compressed files (of any of these
+   * formats) are decompressed on a separate thread while they are parsed.
+   * Equal owner and signer names share one {@link Name} object.
    * 
    * @param zonefile
    *          the filename/path of the zonefile to read.
@@ -58,27 +73,68 @@ public class ZoneUtils
    */
   public static List<Record> readZoneFile(String zonefile, Name origin) throws IOException
   {
-    ArrayList<Record> records = new ArrayList<Record>();
-    Master m;
-    if (zonefile.equals("-"))
+    return readZoneFile(zonefile, origin, new NameTable());
+  }
+
+  /**
+   * Load a zone file, as {@link #readZoneFile(String, Name)}, interning the
+   * owner and signer names in the given table.
+   * 
+   * @param names
+   *          the table for the names of this zone, which can then be given to
+   *          the signer or verifier (may be null, for no interning).
+   */
+  public static List<Record> readZoneFile(String zonefile, Name origin, NameTable names)
+      throws IOException
+  {
+    Object ev = DnsSecEvents.begin(DnsSecEvents.ZONE_READ);
+    List<Record> records = readZone(zonefile, origin, names);
+    if (ev != null) DnsSecEvents.commit(ev, zonefile, records.size());
+    return records;
+  }
+
+  private static List<Record> readZone(String zonefile, Name origin, NameTable names)
+      throws IOException
+  {
+    if (!zonefile.equals("-"))
     {
-      m = new Master(System.in);
+      File f = new File(zonefile);
+      if (!ZoneFileReader.isGzip(f))
+      {
+        if (ZoneSnapshot.isSnapshot(f)) return intern(ZoneSnapshot.readSnapshot(f), names);
+        if (RawZoneFile.isRawZone(f)) return intern(RawZoneFile.readRawZone(f), names);
+
+        // Large files are split up and parsed in parallel.
+        return new ParallelMasterReader(Runtime.getRuntime().availableProcessors(),
+                                        ParallelMasterReader.DEFAULT_THRESHOLD, names)
+            .readZoneFile(zonefile, origin);
+      }
     }
-    else
+
+    ArrayList<Record> records = new ArrayList<Record>();
+    ZoneFileReader in = new ZoneFileReader(zonefile, origin, names);
+    try
     {
-      m = new Master(zonefile, origin);
+      Record r = null;
+      while ((r = in.nextRecord()) != null)
+      {
+        records.add(r);
+      }
     }
-
-    Record r = null;
-
-    while ((r = m.nextRecord()) != null)
+    finally
     {
-      records.add(r);
+      in.close();
     }
 
     return records;
   }
 
+  private static List<Record> intern(List<Record> records, NameTable names)
+  {
+    if (names != null) names.internAll(records);
+    return records;
+  }
+
   /**
    * Write the records out into a zone file.
    * 
@@ -87,26 +143,146 @@ public class ZoneUtils
    *          forming a zone.
    * @param zonefile
    *          the file to write to. If null or equal to "-", System.out is used.
+   *          If it ends with {@link ZoneSnapshot#FILE_SUFFIX} (optionally
+   *          followed by {@link #GZIP_SUFFIX}), the zone is written as a binary
+   *          snapshot.
    */
   public static void writeZoneFile(List<Record> records, String zonefile) throws IOException
   {
-    PrintWriter out = null;
+    writeZoneFile(records, zonefile, guessZoneFormat(zonefile));
+  }
+
+  /**
+   * Determine the format to write a zone file in from its name:
+   * {@link #FORMAT_SNAPSHOT} if it ends with {@link ZoneSnapshot#FILE_SUFFIX}
+   * (optionally followed by {@link #GZIP_SUFFIX}), otherwise
+   * {@link #FORMAT_TEXT}.
+   */
+  public static int guessZoneFormat(String zonefile)
+  {
+    String name = zonefile;
+    if (name == null) return FORMAT_TEXT;
+    if (name.endsWith(GZIP_SUFFIX))
+    {
+      name = name.substring(0, name.length() - GZIP_SUFFIX.length());
+    }
+    return name.endsWith(ZoneSnapshot.FILE_SUFFIX) ? FORMAT_SNAPSHOT : FORMAT_TEXT;
+  }
 
+  /**
+   * Write the records out into a zone file in the given format.
+   * 
+   * @param records
+   *          a {@link java.util.List} of {@link org.xbill.DNS.Record} objects
+   *          forming a zone.
+   * @param zonefile
+   *          the file to write to. If null or equal to "-", System.out is used.
+   *          If it ends with {@link #GZIP_SUFFIX}, the output is gzip
+   *          compressed (in parallel).
+   * @param format
+   *          one of {@link #FORMAT_TEXT}, {@link #FORMAT_RAW}, or
+   *          {@link #FORMAT_SNAPSHOT}.
+   */
+  public static void writeZoneFile(List<Record> records, String zonefile, int format)
+      throws IOException
+  {
+    writeZoneFile(records, zonefile, format, null);
+  }
+
+  /**
+   * Write the records out into a zone file in the given format, as
+   * {@link #writeZoneFile(List, String, int)}.
+   * 
+   * @param nsec3Names
+   *          the original owner names of the NSEC3 records, for the comments
+   *          in text output (may be null).
+   */
+  public static void writeZoneFile(List<Record> records, String zonefile, int format,
+                                   NSEC3Index nsec3Names) throws IOException
+  {
+    Object ev = DnsSecEvents.begin(DnsSecEvents.ZONE_WRITE);
+    WritableByteChannel out = openZoneOutput(zonefile);
+    try
+    {
+      writeZone(records, out, format, nsec3Names);
+    }
+    finally
+    {
+      out.close();
+    }
+    if (ev != null)
+    {
+      DnsSecEvents.commit(ev, zonefile != null ? zonefile : "-", records.size(), format);
+    }
+  }
+
+  /**
+   * Open a zone file for writing.
+   * 
+   * @param zonefile
+   *          the file to write to. If null or equal to "-", System.out is used
+   *          (and closing the channel just flushes it). If it ends with
+   *          {@link #GZIP_SUFFIX}, the output is gzip compressed (in parallel).
+   * @return a channel to write the zone to.
+   */
+  public static WritableByteChannel openZoneOutput(String zonefile) throws IOException
+  {
     if (zonefile == null || zonefile.equals("-"))
     {
-      out = new PrintWriter(System.out);
+      return Channels.newChannel(new FilterOutputStream(System.out)
+      {
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+          out.write(b, off, len);
+        }
+
+        public void close() throws IOException
+        {
+          flush();
+        }
+      });
     }
-    else
+
+    FileOutputStream fos = new FileOutputStream(zonefile);
+    if (zonefile.endsWith(GZIP_SUFFIX))
     {
-      out = new PrintWriter(new BufferedWriter(new FileWriter(zonefile)));
+      return Channels.newChannel(new ParallelGzipOutputStream(new BufferedOutputStream(fos,
+                                                                                       64 * 1024)));
     }
+    return fos.getChannel();
+  }
 
-    for (Record r : records)
+  private static void writeZone(List<Record> records, WritableByteChannel channel,
+                                int format, NSEC3Index nsec3Names) throws IOException
+  {
+    switch (format)
     {
-      out.println(r);
+      case FORMAT_RAW:
+        RawZoneFile.writeRawZone(records, channel);
+        break;
+      case FORMAT_SNAPSHOT:
+        ZoneSnapshot.writeSnapshot(records, findZoneName(records), channel);
+        break;
+      default:
+        ZoneWriter out = new ZoneWriter(channel, Runtime.getRuntime().availableProcessors());
+        out.setNSEC3Names(nsec3Names);
+        out.write(records);
+        out.flush();
     }
+  }
 
-    out.close();
+  /**
+   * Convert a zone file format name ("text", "raw", or "snapshot") into one of
+   * the FORMAT_ constants.
+   * 
+   * @return the format, or -1 if the name isn't recognized.
+   */
+  public static int parseZoneFormat(String name)
+  {
+    if (name.equalsIgnoreCase("text")) return FORMAT_TEXT;
+    if (name.equalsIgnoreCase("raw")) return FORMAT_RAW;
+    if (name.equalsIgnoreCase("snapshot")) return FORMAT_SNAPSHOT;
+    return -1;
   }
 
   /**
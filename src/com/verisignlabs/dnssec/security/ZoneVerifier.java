@@ -27,6 +27,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -65,7 +66,18 @@ public class ZoneVerifier
   private NSEC3PARAMRecord              mNSEC3params;
   private boolean                       mIgnoreDuplicateRRs;
 
+  // Sampling mode state. A sample rate of 1.0 means verify everything.
+  private double                        mSampleRate      = 1.0;
+  private int                           mSampleCount     = 0;
+  private long                          mSampleSeed      = 0;
+  private Random                        mRandom;
+  private double                        mActiveSampleRate;
+  private int                           mVerifiedRRsets  = 0;
+  private int                           mSampledRRsets   = 0;
+  private int                           mSkippedRRsets   = 0;
+
   private DnsSecVerifier                mVerifier;
+  private DnsSecStats                   mStats;
   private base32                        mBase32;
   private ByteArrayComparator           mBAcmp;
 
@@ -117,11 +129,110 @@ public class ZoneVerifier
     return mVerifier;
   }
 
+  /**
+   * Collect performance statistics (per phase times, signatures verified per
+   * key, and so on) into these, or stop collecting them if null.
+   */
+  public void setStats(DnsSecStats stats)
+  {
+    mStats = stats;
+    mVerifier.setStats(stats);
+  }
+
+  public DnsSecStats getStats()
+  {
+    return mStats;
+  }
+
+  /** Use the zone's name table for canonical owner names, or none if null. */
+  public void setNameTable(NameTable names)
+  {
+    mVerifier.setNameTable(names);
+  }
+
   public void setIgnoreDuplicateRRs(boolean value)
   {
     mIgnoreDuplicateRRs = value;
   }
 
+  /**
+   * Only cryptographically verify a random fraction of the RRsets in the zone.
+   * Zone apex RRsets are always verified, and the NSEC/NSEC3 chain structure
+   * and type maps are always checked.
+   * 
+   * @param rate
+   *          the fraction of RRsets to verify, between 0.0 and 1.0.
+   */
+  public void setSampleRate(double rate)
+  {
+    if (rate < 0.0) rate = 0.0;
+    if (rate > 1.0) rate = 1.0;
+    mSampleRate = rate;
+  }
+
+  /**
+   * Only cryptographically verify (approximately) this many randomly chosen
+   * RRsets, plus the zone apex RRsets. This overrides the sample rate.
+   */
+  public void setSampleCount(int count)
+  {
+    mSampleCount = count;
+  }
+
+  /** Set the random seed used to choose the sample, for reproducible runs. */
+  public void setSampleSeed(long seed)
+  {
+    mSampleSeed = seed;
+  }
+
+  /** @return the number of RRsets that were cryptographically verified. */
+  public int getVerifiedRRsetCount()
+  {
+    return mVerifiedRRsets;
+  }
+
+  /** @return the number of RRsets that were not sampled for verification. */
+  public int getSkippedRRsetCount()
+  {
+    return mSkippedRRsets;
+  }
+
+  /**
+   * Given that the sampled RRsets all verified, calculate an upper bound on
+   * the fraction of RRsets in the zone with bad signatures. Only the RRsets
+   * that were chosen at random count towards the sample; the apex RRsets,
+   * which are always verified, do not.
+   * 
+   * @param confidence
+   *          the confidence level, e.g., 0.95.
+   * @return the upper bound, 0.0 if every RRset was verified.
+   */
+  public double getSampleFailureBound(double confidence)
+  {
+    if (mSkippedRRsets == 0) return 0.0;
+    if (mSampledRRsets == 0) return 1.0;
+    // With zero failures in n independent trials, the probability that the
+    // failure rate is above p is (1 - p)^n.
+    return 1.0 - Math.pow(1.0 - confidence, 1.0 / mSampledRRsets);
+  }
+
+  private boolean isSampling()
+  {
+    return mSampleCount > 0 || mSampleRate < 1.0;
+  }
+
+  /**
+   * Decide if this RRset should be cryptographically verified.
+   */
+  private boolean shouldVerify(RRset rrset)
+  {
+    if (mRandom == null) return true;
+    // Always verify the zone apex, which includes the DNSKEY RRset.
+    if (rrset.getName().equals(mZoneName)) return true;
+
+    return mRandom.nextDouble() < mActiveSampleRate;
+  }
+
   private static String key(Name n, int type)
   {
     return n.toString() + ':' + type;
@@ -394,6 +505,20 @@ public class ZoneVerifier
   @SuppressWarnings("unchecked")
   private int processRRset(RRset rrset)
   {
+    if (!shouldVerify(rrset))
+    {
+      mSkippedRRsets++;
+      // Still insist that the RRset is signed.
+      if (rrset.sigs().hasNext()) return 0;
+
+      log.warning("RRset " + rrset.getName() + "/" + Type.string(rrset.getType())
+          + " is not signed.");
+      return 1;
+    }
+    mVerifiedRRsets++;
+    if (mRandom != null && !rrset.getName().equals(mZoneName)) mSampledRRsets++;
+    if (mStats != null) mStats.addRRsets(1);
+
     List<String> reasons = new ArrayList<String>();
     boolean result = false;
 
@@ -524,6 +649,7 @@ public class ZoneVerifier
   {
     // calculate the NSEC3 RR name
     byte[] hash = mNSEC3params.hashName(n);
+    if (mStats != null) mStats.addHashes(mNSEC3params.getIterations() + 1L);
 
     String hashstr = mBase32.toString(hash);
     Name hashname = new Name(hashstr, mZoneName);
@@ -750,10 +876,31 @@ public class ZoneVerifier
   public int verifyZone(List<Record> records) throws NoSuchAlgorithmException, TextParseException
   {
     int errors = 0;
+    DnsSecStats stats = mStats;
+    long t = System.nanoTime();
 
     errors += calculateNodes(records);
+    if (stats != null) t = stats.endPhase("index", t);
+
+    mVerifiedRRsets = 0;
+    mSampledRRsets = 0;
+    mSkippedRRsets = 0;
+    mRandom = null;
+    if (isSampling())
+    {
+      mRandom = new Random(mSampleSeed);
+      mActiveSampleRate = mSampleRate;
+      if (mSampleCount > 0)
+      {
+        int total = mRRsetMap.size();
+        if (mNSECMap != null) total += mNSECMap.size();
+        if (mNSEC3Map != null) total += mNSEC3Map.size();
+        mActiveSampleRate = Math.min(1.0, (double) mSampleCount / Math.max(total, 1));
+      }
+    }
 
     errors += processNodes();
+    if (stats != null) t = stats.endPhase("verify-nodes", t);
 
     if (mDNSSECType == DNSSECType.NSEC)
     {
@@ -763,6 +910,11 @@ public class ZoneVerifier
     {
       errors += processNSEC3Chain();
     }
+    if (stats != null)
+    {
+      stats.endPhase("verify-chain", t);
+      stats.addZone();
+    }
 
     if (errors > 0)
     {
@@ -773,6 +925,12 @@ public class ZoneVerifier
       log.info("Zone " + mZoneName + " verified with 0 errors");
     }
 
+    if (mRandom != null)
+    {
+      log.info("Sampled " + mVerifiedRRsets + " RRsets, skipped " + mSkippedRRsets
+          + " RRsets (seed " + mSampleSeed + ")");
+    }
+
     return errors;
   }
 }
@@ -0,0 +1,574 @@
+// Copyright (C) 2026 VeriSign, Inc.
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+// USA
+
+package com.verisignlabs.dnssec.security;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NSEC3Record;
+import org.xbill.DNS.NSECRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Options;
+import org.xbill.DNS.RRSIGRecord;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Type;
+
+/**
+ * This class writes records in presentation (zone file) format. It produces
+ * exactly the same text as {@link org.xbill.DNS.Record#toString()}, but
+ * formats directly into a large reusable byte buffer, has its own base64,
+ * base32 and type map encoders for the records that dominate a signed zone
+ * (RRSIG, NSEC, and NSEC3), and caches the text form of repeated owner and
+ * signer names. Output is written through a {@link WritableByteChannel}.
+ *
+ * When one of the DNSjava formatting options ("multiline", "BINDTTL", or
+ * "noPrintIN") is set, every record is formatted by DNSjava itself. NSEC3
+ * records are only formatted here when their original owner names are known
+ * (see {@link #setNSEC3Names(NSEC3Index)}).
+ */
+public class ZoneWriter
+{
+  private static final int    DEFAULT_BUFFER_SIZE = 1024 * 1024;
+  private static final int    PARALLEL_CHUNK      = 16384;
+
+  private static final byte[] BASE64 =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+  private static final byte[] BASE32HEX = "0123456789ABCDEFGHIJKLMNOPQRSTUV".getBytes();
+  private static final byte[] HEX       = "0123456789ABCDEF".getBytes();
+  private static final byte[] NEWLINE   = System.getProperty("line.separator").getBytes();
+  private static final Charset CHARSET  = Charset.defaultCharset();
+
+  private WritableByteChannel mChannel;
+  private int                 mThreads;
+  private Formatter           mFormatter;
+  private NSEC3Index          mNSEC3Names;
+
+  /**
+   * This does the actual formatting into a growable byte array. Each thread
+   * needs its own, as it caches names and type strings.
+   */
+  private static class Formatter
+  {
+    private byte[]   mBuf;
+    private int      mLen;
+    private boolean  mFast;
+
+    private Name     mLastOwner;
+    private byte[]   mLastOwnerText;
+    private Name     mLastName;
+    private byte[]   mLastNameText;
+    private byte[][] mTypeText = new byte[256][];
+
+    private NSEC3Index mNSEC3Names;
+
+    public Formatter(int size, NSEC3Index nsec3Names)
+    {
+      mNSEC3Names = nsec3Names;
+      mBuf = new byte[size];
+      mLen = 0;
+      mFast = !Options.check("multiline") && !Options.check("BINDTTL")
+          && !Options.check("noPrintIN");
+    }
+
+    private void ensure(int n)
+    {
+      if (mLen + n <= mBuf.length) return;
+      byte[] nb = new byte[Math.max(mBuf.length * 2, mLen + n)];
+      System.arraycopy(mBuf, 0, nb, 0, mLen);
+      mBuf = nb;
+    }
+
+    private void put(byte b)
+    {
+      ensure(1);
+      mBuf[mLen++] = b;
+    }
+
+    private void put(byte[] b)
+    {
+      ensure(b.length);
+      System.arraycopy(b, 0, mBuf, mLen, b.length);
+      mLen += b.length;
+    }
+
+    private void put(String s)
+    {
+      int n = s.length();
+      ensure(n);
+      for (int i = 0; i < n; i++)
+      {
+        char c = s.charAt(i);
+        if (c >= 0x80)
+        {
+          // Not plain ASCII, so let the charset deal with it.
+          put(s.substring(i).getBytes(CHARSET));
+          return;
+        }
+        mBuf[mLen++] = (byte) c;
+      }
+    }
+
+    private void putLong(long v)
+    {
+      if (v < 0)
+      {
+        put('-');
+        v = -v;
+      }
+      if (v < 10)
+      {
+        put((byte) ('0' + v));
+        return;
+      }
+      ensure(20);
+      int start = mLen;
+      while (v > 0)
+      {
+        mBuf[mLen++] = (byte) ('0' + (v % 10));
+        v /= 10;
+      }
+      // reverse the digits in place.
+      for (int i = start, j = mLen - 1; i < j; i++, j--)
+      {
+        byte t = mBuf[i];
+        mBuf[i] = mBuf[j];
+        mBuf[j] = t;
+      }
+    }
+
+    private void put(char c)
+    {
+      put((byte) c);
+    }
+
+    private void putDigits(int v, int width)
+    {
+      ensure(width);
+      for (int i = width - 1; i >= 0; i--)
+      {
+        mBuf[mLen + i] = (byte) ('0' + (v % 10));
+        v /= 10;
+      }
+      mLen += width;
+    }
+
+    private byte[] ownerText(Name n)
+    {
+      if (n != mLastOwner && !n.equals(mLastOwner))
+      {
+        mLastOwner = n;
+        mLastOwnerText = n.toString().getBytes(CHARSET);
+      }
+      return mLastOwnerText;
+    }
+
+    private byte[] nameText(Name n)
+    {
+      if (n != mLastName && !n.equals(mLastName))
+      {
+        mLastName = n;
+        mLastNameText = n.toString().getBytes(CHARSET);
+      }
+      return mLastNameText;
+    }
+
+    private void putType(int type)
+    {
+      if (type < 0 || type >= mTypeText.length)
+      {
+        put(Type.string(type));
+        return;
+      }
+      if (mTypeText[type] == null) mTypeText[type] = Type.string(type).getBytes(CHARSET);
+      put(mTypeText[type]);
+    }
+
+    private void putTypes(int[] types)
+    {
+      for (int i = 0; i < types.length; i++)
+      {
+        put(' ');
+        putType(types[i]);
+      }
+    }
+
+    private void putBase64(byte[] data)
+    {
+      ensure(((data.length + 2) / 3) * 4);
+      int i = 0;
+      for (; i + 2 < data.length; i += 3)
+      {
+        int v = ((data[i] & 0xFF) << 16) | ((data[i + 1] & 0xFF) << 8) | (data[i + 2] & 0xFF);
+        mBuf[mLen++] = BASE64[(v >>> 18) & 0x3F];
+        mBuf[mLen++] = BASE64[(v >>> 12) & 0x3F];
+        mBuf[mLen++] = BASE64[(v >>> 6) & 0x3F];
+        mBuf[mLen++] = BASE64[v & 0x3F];
+      }
+      int rem = data.length - i;
+      if (rem == 1)
+      {
+        int v = (data[i] & 0xFF) << 16;
+        mBuf[mLen++] = BASE64[(v >>> 18) & 0x3F];
+        mBuf[mLen++] = BASE64[(v >>> 12) & 0x3F];
+        mBuf[mLen++] = '=';
+        mBuf[mLen++] = '=';
+      }
+      else if (rem == 2)
+      {
+        int v = ((data[i] & 0xFF) << 16) | ((data[i + 1] & 0xFF) << 8);
+        mBuf[mLen++] = BASE64[(v >>> 18) & 0x3F];
+        mBuf[mLen++] = BASE64[(v >>> 12) & 0x3F];
+        mBuf[mLen++] = BASE64[(v >>> 6) & 0x3F];
+        mBuf[mLen++] = '=';
+      }
+    }
+
+    /** Base32hex, without padding, as used for NSEC3 hashes. */
+    private void putBase32Hex(byte[] data)
+    {
+      ensure((data.length * 8 + 4) / 5);
+      long acc = 0;
+      int bits = 0;
+      for (int i = 0; i < data.length; i++)
+      {
+        acc = (acc << 8) | (data[i] & 0xFF);
+        bits += 8;
+        while (bits >= 5)
+        {
+          bits -= 5;
+          mBuf[mLen++] = BASE32HEX[(int) (acc >>> bits) & 0x1F];
+        }
+      }
+      if (bits > 0)
+      {
+        mBuf[mLen++] = BASE32HEX[(int) (acc << (5 - bits)) & 0x1F];
+      }
+    }
+
+    private void putHex(byte[] data)
+    {
+      ensure(data.length * 2);
+      for (int i = 0; i < data.length; i++)
+      {
+        mBuf[mLen++] = HEX[(data[i] >>> 4) & 0x0F];
+        mBuf[mLen++] = HEX[data[i] & 0x0F];
+      }
+    }
+
+    /** Format a time as YYYYMMDDHHmmSS in UTC. */
+    private void putTime(long millis)
+    {
+      long secs = millis / 1000L;
+      long days = secs / 86400L;
+      int sod = (int) (secs - days * 86400L);
+
+      // Convert days since the epoch to a civil date.
+      long z = days + 719468;
+      long era = z / 146097;
+      int doe = (int) (z - era * 146097);
+      int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+      int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+      int mp = (5 * doy + 2) / 153;
+      int day = doy - (153 * mp + 2) / 5 + 1;
+      int month = mp < 10 ? mp + 3 : mp - 9;
+      long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+      putDigits((int) year, 4);
+      putDigits(month, 2);
+      putDigits(day, 2);
+      putDigits(sod / 3600, 2);
+      putDigits((sod / 60) % 60, 2);
+      putDigits(sod % 60, 2);
+    }
+
+    public void format(Record r)
+    {
+      if (!mFast)
+      {
+        put(r.toString());
+        put(NEWLINE);
+        return;
+      }
+
+      int type = r.getType();
+      String comment = null;
+      if (type == Type.NSEC3)
+      {
+        // The original owner name comment DNSjava may print isn't
+        // accessible, so it has to come from the names we were given.
+        if (mNSEC3Names != null) comment = mNSEC3Names.get(r.getName().getLabelString(0));
+        if (comment == null)
+        {
+          put(r.toString());
+          put(NEWLINE);
+          return;
+        }
+      }
+
+      // The common prefix: owner name, TTL, class, and type.
+      byte[] owner = ownerText(r.getName());
+      put(owner);
+      if (owner.length < 8) put('\t');
+      if (owner.length < 16) put('\t');
+      put('\t');
+      putLong(r.getTTL());
+      put('\t');
+      put(DClass.string(r.getDClass()));
+      put('\t');
+      putType(type);
+
+      switch (type)
+      {
+        case Type.RRSIG:
+        {
+          RRSIGRecord sig = (RRSIGRecord) r;
+          put('\t');
+          putType(sig.getTypeCovered());
+          put(' ');
+          putLong(sig.getAlgorithm());
+          put(' ');
+          putLong(sig.getLabels());
+          put(' ');
+          putLong(sig.getOrigTTL());
+          put(' ');
+          putTime(sig.getExpire().getTime());
+          put(' ');
+          putTime(sig.getTimeSigned().getTime());
+          put(' ');
+          putLong(sig.getFootprint());
+          put(' ');
+          put(nameText(sig.getSigner()));
+          put(' ');
+          putBase64(sig.getSignature());
+          break;
+        }
+        case Type.NSEC:
+        {
+          NSECRecord nsec = (NSECRecord) r;
+          put('\t');
+          put(nameText(nsec.getNext()));
+          putTypes(nsec.getTypes());
+          break;
+        }
+        case Type.NSEC3:
+        {
+          NSEC3Record nsec3 = (NSEC3Record) r;
+          put('\t');
+          putLong(nsec3.getHashAlgorithm());
+          put(' ');
+          putLong(nsec3.getFlags());
+          put(' ');
+          putLong(nsec3.getIterations());
+          put(' ');
+          byte[] salt = nsec3.getSalt();
+          if (salt == null)
+          {
+            put('-');
+          }
+          else
+          {
+            putHex(salt);
+          }
+          put(' ');
+          putBase32Hex(nsec3.getNext());
+          putTypes(nsec3.getTypes());
+          if (comment != null)
+          {
+            put(" ; ");
+            put(comment);
+          }
+          break;
+        }
+        default:
+        {
+          String rdata = r.rdataToString();
+          if (rdata.length() > 0)
+          {
+            put('\t');
+            put(rdata);
+          }
+        }
+      }
+      put(NEWLINE);
+    }
+
+    public int length()
+    {
+      return mLen;
+    }
+
+    public void reset()
+    {
+      mLen = 0;
+    }
+
+    public byte[] toByteArray()
+    {
+      byte[] res = new byte[mLen];
+      System.arraycopy(mBuf, 0, res, 0, mLen);
+      return res;
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException
+    {
+      ByteBuffer bb = ByteBuffer.wrap(mBuf, 0, mLen);
+      while (bb.hasRemaining())
+      {
+        channel.write(bb);
+      }
+      mLen = 0;
+    }
+  }
+
+  /**
+   * @param channel
+   *          where to write the records.
+   */
+  public ZoneWriter(WritableByteChannel channel)
+  {
+    this(channel, 1);
+  }
+
+  /**
+   * @param channel
+   *          where to write the records.
+   * @param threads
+   *          if greater than one, large lists of records are formatted in
+   *          parallel (and still written in order).
+   */
+  public ZoneWriter(WritableByteChannel channel, int threads)
+  {
+    mChannel = channel;
+    mThreads = Math.max(1, threads);
+    mFormatter = new Formatter(DEFAULT_BUFFER_SIZE, null);
+  }
+
+  /**
+   * Write NSEC3 records with the original owner names from this index as
+   * their comments. NSEC3 records whose names aren't in it (or all of them,
+   * if there is no index) are formatted by DNSjava, which prints the comment
+   * the record was created with, if any.
+   */
+  public void setNSEC3Names(NSEC3Index names)
+  {
+    mNSEC3Names = names;
+    mFormatter.mNSEC3Names = names;
+  }
+
+  /** Write a single record. */
+  public void write(Record r) throws IOException
+  {
+    mFormatter.format(r);
+    if (mFormatter.length() >= DEFAULT_BUFFER_SIZE) mFormatter.writeTo(mChannel);
+  }
+
+  /** Write a list of records, in order. */
+  public void write(List<Record> records) throws IOException
+  {
+    if (mThreads < 2 || records.size() < 2 * PARALLEL_CHUNK)
+    {
+      for (Record r : records)
+      {
+        write(r);
+      }
+      return;
+    }
+
+    flush();
+
+    ExecutorService pool = Executors.newFixedThreadPool(mThreads);
+    try
+    {
+      // Only a few chunks are formatted ahead of the one being written, so
+      // the text of the whole zone is never held at once.
+      LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+      int maxPending = mThreads * 2;
+      for (int i = 0; i < records.size(); i += PARALLEL_CHUNK)
+      {
+        final List<Record> part = records.subList(i, Math.min(records.size(), i
+            + PARALLEL_CHUNK));
+        pending.add(pool.submit(new Callable<byte[]>()
+        {
+          public byte[] call()
+          {
+            Formatter f = new Formatter(PARALLEL_CHUNK * 128, mNSEC3Names);
+            for (Record r : part)
+            {
+              f.format(r);
+            }
+            return f.toByteArray();
+          }
+        }));
+        while (pending.size() > maxPending)
+        {
+          writeChunk(pending.removeFirst());
+        }
+      }
+
+      while (!pending.isEmpty())
+      {
+        writeChunk(pending.removeFirst());
+      }
+    }
+    catch (InterruptedException e)
+    {
+      throw new IOException("interrupted while writing zone");
+    }
+    catch (ExecutionException e)
+    {
+      throw new IOException("error formatting zone: " + e.getCause());
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+  }
+
+  private void writeChunk(Future<byte[]> chunk) throws InterruptedException,
+      ExecutionException, IOException
+  {
+    ByteBuffer bb = ByteBuffer.wrap(chunk.get());
+    while (bb.hasRemaining())
+    {
+      mChannel.write(bb);
+    }
+  }
+
+  /** Write out anything that is buffered. */
+  public void flush() throws IOException
+  {
+    mFormatter.writeTo(mChannel);
+  }
+
+  /** Flush and close the underlying channel. */
+  public void close() throws IOException
+  {
+    flush();
+    mChannel.close();
+  }
+}